@@ -0,0 +1,31 @@
+package com.example.feeloscope;
+
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+
+import com.example.feeloscope.services.DetectorProfile;
+import com.example.feeloscope.services.DetectorRegistry;
+import com.example.feeloscope.services.cache.DetectionCache;
+import com.example.feeloscope.services.history.HistoryLog;
+
+public class FeelOScopeApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // The live camera starts on the fast profile and drops to track-only while faces are stable,
+        // gallery and video analysis use the accurate one.
+        DetectorRegistry.getInstance().warmUp(DetectorProfile.TRACK_ONLY, DetectorProfile.FAST,
+                DetectorProfile.ACCURATE);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            DetectorRegistry.getInstance().releaseIdle();
+            DetectionCache.getInstance(this).trimMemory();
+            HistoryLog.getInstance(this).flush();
+        }
+    }
+}
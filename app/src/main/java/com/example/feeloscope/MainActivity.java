@@ -3,10 +3,17 @@ package com.example.feeloscope;
 import android.content.res.Configuration;
 import android.os.Bundle;
 import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
+import android.widget.SeekBar;
+import android.widget.TextView;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.StringRes;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.app.AppCompatDelegate;
+import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.drawerlayout.widget.DrawerLayout;
 import androidx.navigation.NavController;
 import androidx.navigation.Navigation;
@@ -14,6 +21,9 @@ import androidx.navigation.ui.AppBarConfiguration;
 import androidx.navigation.ui.NavigationUI;
 
 import com.example.feeloscope.databinding.ActivityMainBinding;
+import com.example.feeloscope.databinding.DialogFaceStateSettingsBinding;
+import com.example.feeloscope.services.FaceStateClassifier;
+import com.example.feeloscope.services.FaceStateSettings;
 import com.google.android.material.navigation.NavigationView;
 
 public class MainActivity extends AppCompatActivity {
@@ -24,6 +34,9 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // Starts CameraX's initialization now, so it overlaps with inflating the views; the live
+        // fragment then gets the same, usually finished, provider.
+        ProcessCameraProvider.getInstance(this);
 
         binding = ActivityMainBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
@@ -46,7 +59,8 @@ public class MainActivity extends AppCompatActivity {
                 .build();
         NavController navController = Navigation.findNavController(this, R.id.nav_host_fragment_content_main);
         NavigationUI.setupActionBarWithNavController(this, navController, mAppBarConfiguration);
-        NavigationUI.setupWithNavController(navigationView, navController);
+        // The drawer is closed at launch; wiring its menu can wait until after the first frame.
+        navigationView.post(() -> NavigationUI.setupWithNavController(navigationView, navController));
     }
 
     @Override
@@ -56,6 +70,15 @@ public class MainActivity extends AppCompatActivity {
         return true;
     }
 
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == R.id.action_settings) {
+            showFaceStateSettings();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
     @Override
     public boolean onSupportNavigateUp() {
         NavController navController = Navigation.findNavController(this, R.id.nav_host_fragment_content_main);
@@ -92,4 +115,52 @@ public class MainActivity extends AppCompatActivity {
             binding.appBarMain.fab.setImageResource(R.drawable.ic_moon);
         }
     }
+
+    /**
+     * Lets the user tune the smiling and eyes-open thresholds (K-01). The live camera picks up
+     * saved values right away.
+     */
+    private void showFaceStateSettings() {
+        FaceStateSettings settings = new FaceStateSettings(this);
+        DialogFaceStateSettingsBinding dialogBinding = DialogFaceStateSettingsBinding.inflate(getLayoutInflater());
+        bindThreshold(dialogBinding.smilingThreshold, dialogBinding.smilingThresholdLabel,
+                R.string.settings_smiling_threshold, settings.getSmilingThreshold());
+        bindThreshold(dialogBinding.eyesOpenThreshold, dialogBinding.eyesOpenThresholdLabel,
+                R.string.settings_eyes_open_threshold, settings.getEyesOpenThreshold());
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.settings_title)
+                .setView(dialogBinding.getRoot())
+                .setPositiveButton(R.string.settings_save, (dialog, which) -> settings.setThresholds(
+                        thresholdAt(dialogBinding.smilingThreshold.getProgress()),
+                        thresholdAt(dialogBinding.eyesOpenThreshold.getProgress())))
+                .setNeutralButton(R.string.settings_reset, (dialog, which) -> settings.setThresholds(
+                        FaceStateClassifier.DEFAULT_THRESHOLD, FaceStateClassifier.DEFAULT_THRESHOLD))
+                .setNegativeButton(R.string.settings_cancel, null)
+                .show();
+    }
+
+    private void bindThreshold(@NonNull SeekBar seekBar, @NonNull TextView label, @StringRes int labelRes,
+                               float threshold) {
+        seekBar.setMax(Math.round((FaceStateSettings.MAX_THRESHOLD - FaceStateSettings.MIN_THRESHOLD) * 100));
+        seekBar.setProgress(Math.round((threshold - FaceStateSettings.MIN_THRESHOLD) * 100));
+        label.setText(getString(labelRes, Math.round(threshold * 100)));
+        seekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar bar, int progress, boolean fromUser) {
+                label.setText(getString(labelRes, Math.round(thresholdAt(progress) * 100)));
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar bar) {
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar bar) {
+            }
+        });
+    }
+
+    private static float thresholdAt(int progress) {
+        return FaceStateSettings.MIN_THRESHOLD + progress / 100f;
+    }
 }
@@ -0,0 +1,110 @@
+package com.example.feeloscope.services;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Picks the detector profile for the live camera path from a rolling p95 of detection latency.
+ * <p>
+ * The profile steps down as soon as the p95 of a full window exceeds the frame budget and only
+ * steps back up after several consecutive windows stay well below it, so it does not flap
+ * around the budget. The window is cleared after every switch to measure the new profile.
+ */
+public class AdaptiveProfileController {
+    public static final int DEFAULT_WINDOW_SIZE = 30;
+    public static final float DEFAULT_UPGRADE_RATIO = 0.6f;
+    public static final int DEFAULT_UPGRADE_STREAK = 3;
+
+    private final long frameBudgetNanos;
+    private final long upgradeThresholdNanos;
+    private final int upgradeStreak;
+    private final DetectorProfile fastest;
+    private final DetectorProfile mostAccurate;
+    private final long[] samples;
+    private final long[] sortScratch;
+
+    private int sampleCount;
+    private int nextSample;
+    private int windowsBelowThreshold;
+    private volatile DetectorProfile currentProfile;
+
+    public AdaptiveProfileController(long frameBudgetMillis) {
+        this(frameBudgetMillis, DetectorProfile.FAST, DetectorProfile.ACCURATE, DEFAULT_WINDOW_SIZE,
+                DEFAULT_UPGRADE_RATIO, DEFAULT_UPGRADE_STREAK);
+    }
+
+    public AdaptiveProfileController(long frameBudgetMillis,
+                                     @NonNull DetectorProfile fastest,
+                                     @NonNull DetectorProfile mostAccurate,
+                                     int windowSize,
+                                     float upgradeRatio,
+                                     int upgradeStreak) {
+        if (frameBudgetMillis <= 0 || windowSize <= 0 || upgradeStreak <= 0) {
+            throw new IllegalArgumentException("Budget, window size and upgrade streak must be positive.");
+        }
+        if (fastest.compareTo(mostAccurate) > 0) {
+            throw new IllegalArgumentException("Fastest profile must not be more accurate than " + mostAccurate);
+        }
+        this.frameBudgetNanos = frameBudgetMillis * 1_000_000L;
+        this.upgradeThresholdNanos = (long) (frameBudgetNanos * upgradeRatio);
+        this.upgradeStreak = upgradeStreak;
+        this.fastest = fastest;
+        this.mostAccurate = mostAccurate;
+        this.samples = new long[windowSize];
+        this.sortScratch = new long[windowSize];
+        // Start cheap: the first windows prove whether the device has headroom for more.
+        this.currentProfile = fastest;
+    }
+
+    @NonNull
+    public DetectorProfile getCurrentProfile() {
+        return currentProfile;
+    }
+
+    /**
+     * Records the latency of one detection and returns the profile to use for the next frame.
+     */
+    @NonNull
+    public synchronized DetectorProfile recordLatency(@NonNull DetectorProfile profile, long latencyNanos) {
+        if (profile != currentProfile) {
+            // Late result from before the last switch; it says nothing about the current profile.
+            return currentProfile;
+        }
+        samples[nextSample] = latencyNanos;
+        nextSample = (nextSample + 1) % samples.length;
+        if (sampleCount < samples.length) {
+            sampleCount++;
+        }
+        if (sampleCount < samples.length || nextSample != 0) {
+            return currentProfile;
+        }
+
+        long p95 = percentile95();
+        if (p95 > frameBudgetNanos && currentProfile != fastest) {
+            switchTo(currentProfile.faster());
+        } else if (p95 < upgradeThresholdNanos && currentProfile != mostAccurate) {
+            windowsBelowThreshold++;
+            if (windowsBelowThreshold >= upgradeStreak) {
+                switchTo(currentProfile.moreAccurate());
+            }
+        } else {
+            windowsBelowThreshold = 0;
+        }
+        return currentProfile;
+    }
+
+    private long percentile95() {
+        System.arraycopy(samples, 0, sortScratch, 0, samples.length);
+        Arrays.sort(sortScratch);
+        int index = (int) Math.ceil(samples.length * 0.95) - 1;
+        return sortScratch[Math.max(0, index)];
+    }
+
+    private void switchTo(@NonNull DetectorProfile profile) {
+        currentProfile = profile;
+        sampleCount = 0;
+        nextSample = 0;
+        windowsBelowThreshold = 0;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.feeloscope.services;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Immutable summary of one detector run. The per-face data is a private copy of the frame
+ * the helper filled in, so it may be kept and read from any thread.
+ */
+public final class DetectionResult {
+    public static final float DEFAULT_PROBABILITY_THRESHOLD = FaceStateClassifier.DEFAULT_THRESHOLD;
+
+    private final FaceFrame faces;
+    private final DetectorProfile profile;
+    private final long detectorLatencyNanos;
+    private final int smilingFaceCount;
+    private final int eyesOpenFaceCount;
+
+    public DetectionResult(@NonNull FaceFrame frame, @NonNull DetectorProfile profile, long detectorLatencyNanos) {
+        this.faces = frame.copy();
+        this.profile = profile;
+        this.detectorLatencyNanos = detectorLatencyNanos;
+        this.smilingFaceCount = faces.countSmilingFaces();
+        this.eyesOpenFaceCount = faces.countEyesOpenFaces();
+    }
+
+    /**
+     * Per-face data. The returned frame must not be modified.
+     */
+    @NonNull
+    public FaceFrame getFaces() {
+        return faces;
+    }
+
+    public int getFaceCount() {
+        return faces.getFaceCount();
+    }
+
+    public int getSmilingFaceCount() {
+        return smilingFaceCount;
+    }
+
+    public int getEyesOpenFaceCount() {
+        return eyesOpenFaceCount;
+    }
+
+    @NonNull
+    public DetectorProfile getProfile() {
+        return profile;
+    }
+
+    public long getDetectorLatencyNanos() {
+        return detectorLatencyNanos;
+    }
+}
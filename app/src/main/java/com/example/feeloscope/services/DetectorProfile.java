@@ -0,0 +1,94 @@
+package com.example.feeloscope.services;
+
+import androidx.annotation.NonNull;
+
+import com.google.mlkit.vision.face.FaceDetectorOptions;
+
+/**
+ * Detector option presets, ordered from the cheapest to the most expensive configuration.
+ * Only the presets the live camera starts on enable ML Kit face tracking; the others also serve
+ * unrelated still images, and {@link FaceTracker} matches their faces by overlap instead.
+ */
+public enum DetectorProfile {
+    /**
+     * Only locates and tracks faces, without landmarks or classification. Used by
+     * {@link FaceTracker} for frames in which all faces are stable; not part of the
+     * {@link #faster()}/{@link #moreAccurate()} ladder.
+     */
+    TRACK_ONLY(FaceDetectorOptions.PERFORMANCE_MODE_FAST,
+            FaceDetectorOptions.LANDMARK_MODE_NONE,
+            FaceDetectorOptions.CLASSIFICATION_MODE_NONE,
+            true),
+    FAST(FaceDetectorOptions.PERFORMANCE_MODE_FAST,
+            FaceDetectorOptions.LANDMARK_MODE_NONE,
+            FaceDetectorOptions.CLASSIFICATION_MODE_ALL,
+            true),
+    BALANCED(FaceDetectorOptions.PERFORMANCE_MODE_FAST,
+            FaceDetectorOptions.LANDMARK_MODE_ALL,
+            FaceDetectorOptions.CLASSIFICATION_MODE_ALL,
+            false),
+    /**
+     * Used for gallery, batch and video analysis, where consecutive images are unrelated.
+     */
+    ACCURATE(FaceDetectorOptions.PERFORMANCE_MODE_ACCURATE,
+            FaceDetectorOptions.LANDMARK_MODE_ALL,
+            FaceDetectorOptions.CLASSIFICATION_MODE_ALL,
+            false);
+
+    /**
+     * Bump whenever the presets change, so results cached for the old settings are not reused.
+     */
+    public static final int OPTIONS_VERSION = 3;
+
+    private final int performanceMode;
+    private final int landmarkMode;
+    private final int classificationMode;
+    private final boolean tracking;
+
+    DetectorProfile(int performanceMode, int landmarkMode, int classificationMode, boolean tracking) {
+        this.performanceMode = performanceMode;
+        this.landmarkMode = landmarkMode;
+        this.classificationMode = classificationMode;
+        this.tracking = tracking;
+    }
+
+    @NonNull
+    public FaceDetectorOptions toOptions() {
+        FaceDetectorOptions.Builder builder = new FaceDetectorOptions.Builder()
+                .setPerformanceMode(performanceMode)
+                .setLandmarkMode(landmarkMode)
+                .setClassificationMode(classificationMode);
+        if (tracking) {
+            builder.enableTracking();
+        }
+        return builder.build();
+    }
+
+    public boolean classifies() {
+        return classificationMode == FaceDetectorOptions.CLASSIFICATION_MODE_ALL;
+    }
+
+    @NonNull
+    public DetectorProfile faster() {
+        switch (this) {
+            case ACCURATE:
+                return BALANCED;
+            case BALANCED:
+                return FAST;
+            default:
+                return this;
+        }
+    }
+
+    @NonNull
+    public DetectorProfile moreAccurate() {
+        switch (this) {
+            case TRACK_ONLY:
+                return FAST;
+            case FAST:
+                return BALANCED;
+            default:
+                return ACCURATE;
+        }
+    }
+}
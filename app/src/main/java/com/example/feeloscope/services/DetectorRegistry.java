@@ -0,0 +1,222 @@
+package com.example.feeloscope.services;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+import com.google.mlkit.vision.face.FaceDetection;
+import com.google.mlkit.vision.face.FaceDetector;
+
+import java.io.Closeable;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Application-wide pool of ML Kit face detectors, one per {@link DetectorProfile}.
+ * <p>
+ * Screens acquire a {@link Lease} instead of creating their own detector, so moving between
+ * destinations does not pay for native model initialization again. A detector is closed once
+ * it has had no leases for {@link #IDLE_TIMEOUT_MS}.
+ * <p>
+ * Models are loaded by {@link #warmUp}, off the main thread; {@link #whenReady} tells the UI when
+ * the first frame of a profile will no longer wait for that. Readiness lasts as long as the
+ * detector: once an idle one is closed, its profile has to be warmed up again.
+ */
+public final class DetectorRegistry {
+    private static final String TAG = "DetectorRegistry";
+    public static final long IDLE_TIMEOUT_MS = 60_000L;
+    // Smallest NV21 image that still makes ML Kit load its model.
+    private static final int WARM_UP_SIZE = 32;
+
+    private static DetectorRegistry instance;
+
+    private final EnumMap<DetectorProfile, Entry> entries = new EnumMap<>(DetectorProfile.class);
+    private final EnumMap<DetectorProfile, TaskCompletionSource<Void>> readiness = new EnumMap<>(DetectorProfile.class);
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "detector-registry");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    private DetectorRegistry() {
+    }
+
+    @NonNull
+    public static synchronized DetectorRegistry getInstance() {
+        if (instance == null) {
+            instance = new DetectorRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Creates the detectors for {@code profiles} in the background and runs one tiny image
+     * through each, so the first real frame does not wait for the model to load.
+     */
+    public void warmUp(@NonNull DetectorProfile... profiles) {
+        for (DetectorProfile profile : profiles) {
+            // Created right away, so whenReady does not start a second warm-up meanwhile. Closing
+            // an idle detector keeps a pending source, so callers already waiting on it are completed.
+            readiness(profile);
+            executor.execute(() -> {
+                Lease lease;
+                TaskCompletionSource<Void> ready;
+                // Bound together: until the lease is returned, the detector cannot be closed and
+                // its readiness cannot be replaced.
+                synchronized (this) {
+                    lease = acquire(profile);
+                    ready = readiness(profile);
+                }
+                try {
+                    byte[] blank = new byte[WARM_UP_SIZE * WARM_UP_SIZE * 3 / 2];
+                    Tasks.await(lease.process(InputImage.fromByteArray(
+                            blank, WARM_UP_SIZE, WARM_UP_SIZE, 0, InputImage.IMAGE_FORMAT_NV21)));
+                    Log.d(TAG, "Warmed up detector for profile " + profile + ".");
+                } catch (ExecutionException e) {
+                    Log.w(TAG, "Warm-up of profile " + profile + " failed: " + e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    // A failed warm-up is ready too: the first real frame reports the error.
+                    ready.trySetResult(null);
+                    lease.close();
+                }
+            });
+        }
+    }
+
+    /**
+     * Completes once the model for {@code profile} has been loaded, starting a warm-up if none
+     * is pending. Callers that need the model to stay loaded afterwards must hold a {@link Lease}.
+     */
+    @NonNull
+    public synchronized Task<Void> whenReady(@NonNull DetectorProfile profile) {
+        if (!readiness.containsKey(profile)) {
+            warmUp(profile);
+        }
+        return readiness.get(profile).getTask();
+    }
+
+    @NonNull
+    private synchronized TaskCompletionSource<Void> readiness(@NonNull DetectorProfile profile) {
+        TaskCompletionSource<Void> ready = readiness.get(profile);
+        if (ready == null) {
+            ready = new TaskCompletionSource<>();
+            readiness.put(profile, ready);
+        }
+        return ready;
+    }
+
+    @NonNull
+    public synchronized Lease acquire(@NonNull DetectorProfile profile) {
+        Entry entry = entries.get(profile);
+        if (entry == null) {
+            entry = new Entry(FaceDetection.getClient(profile.toOptions()));
+            entries.put(profile, entry);
+            Log.d(TAG, "FaceDetector created for profile " + profile + ".");
+        }
+        if (entry.pendingRelease != null) {
+            entry.pendingRelease.cancel(false);
+            entry.pendingRelease = null;
+        }
+        entry.references++;
+        return new Lease(profile, entry.detector);
+    }
+
+    private synchronized void release(@NonNull DetectorProfile profile, @NonNull FaceDetector detector) {
+        Entry entry = entries.get(profile);
+        if (entry == null || entry.detector != detector) {
+            return;
+        }
+        entry.references--;
+        if (entry.references == 0) {
+            entry.pendingRelease = executor.schedule(
+                    () -> closeIfIdle(profile, detector), IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void closeIfIdle(@NonNull DetectorProfile profile, @NonNull FaceDetector detector) {
+        Entry entry = entries.get(profile);
+        if (entry == null || entry.detector != detector || entry.references > 0) {
+            return;
+        }
+        entries.remove(profile);
+        entry.detector.close();
+        // A pending source belongs to a warm-up that has yet to run; it will load a new detector.
+        TaskCompletionSource<Void> ready = readiness.get(profile);
+        if (ready != null && ready.getTask().isComplete()) {
+            readiness.remove(profile);
+        }
+        Log.d(TAG, "Closed idle FaceDetector for profile " + profile + ".");
+    }
+
+    /**
+     * Closes every detector that currently has no leases, e.g. when the system is low on memory.
+     */
+    public synchronized void releaseIdle() {
+        for (DetectorProfile profile : DetectorProfile.values()) {
+            Entry entry = entries.get(profile);
+            if (entry != null && entry.references == 0) {
+                if (entry.pendingRelease != null) {
+                    entry.pendingRelease.cancel(false);
+                }
+                closeIfIdle(profile, entry.detector);
+            }
+        }
+    }
+
+    private static final class Entry {
+        final FaceDetector detector;
+        int references;
+        @Nullable
+        ScheduledFuture<?> pendingRelease;
+
+        Entry(@NonNull FaceDetector detector) {
+            this.detector = detector;
+        }
+    }
+
+    /**
+     * Shared use of one detector. The detector itself is owned by the registry; closing the
+     * lease only hands it back. Closing a lease more than once has no effect.
+     */
+    public final class Lease implements Closeable {
+        private final DetectorProfile profile;
+        private final FaceDetector detector;
+        private boolean released;
+
+        private Lease(@NonNull DetectorProfile profile, @NonNull FaceDetector detector) {
+            this.profile = profile;
+            this.detector = detector;
+        }
+
+        @NonNull
+        public DetectorProfile getProfile() {
+            return profile;
+        }
+
+        @NonNull
+        public Task<List<Face>> process(@NonNull InputImage image) {
+            return detector.process(image);
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!released) {
+                released = true;
+                release(profile, detector);
+            }
+        }
+    }
+}
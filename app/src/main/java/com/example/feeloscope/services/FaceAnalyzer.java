@@ -0,0 +1,199 @@
+package com.example.feeloscope.services;
+
+import android.media.Image;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.OptIn;
+import androidx.camera.core.ExperimentalGetImage;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageProxy;
+
+import com.example.feeloscope.services.frame.FrameBuffer;
+import com.example.feeloscope.services.frame.FrameBufferConsumer;
+import com.example.feeloscope.services.frame.FrameBufferPool;
+import com.example.feeloscope.services.frame.Nv21Packer;
+import com.example.feeloscope.services.metrics.PipelineMetrics;
+import com.google.mlkit.vision.common.InputImage;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Feeds CameraX analysis frames into a {@link FaceDetectionHelper}.
+ * <p>
+ * At most one frame is in flight at a time: each {@link ImageProxy} stays open until the
+ * helper's task, detection and post-processing, has finished, so together with {@link ImageAnalysis#STRATEGY_KEEP_ONLY_LATEST}
+ * the camera simply drops frames instead of queueing them while the detector is busy.
+ * <p>
+ * If the helper has a {@link RoiPlanner}, frames between keyframes are cropped to the region
+ * around the last known faces. Crops, and full frames while a {@link FrameBufferConsumer} is
+ * attached, are packed straight from the YUV planes into pooled NV21 buffers, so steady-state
+ * analysis allocates no pixel memory. Without either, the camera image goes to ML Kit as is.
+ * <p>
+ * A {@link FrameScheduler} can skip frames that did not change since the last analyzed one or
+ * that exceed the thermal rate cap; the previous result then simply stays on screen.
+ */
+public class FaceAnalyzer implements ImageAnalysis.Analyzer {
+    private static final String TAG = "FaceAnalyzer";
+    // One frame in the detector plus a couple held by consumers.
+    private static final int MAX_POOLED_FRAMES = 4;
+
+    // Closing an ImageProxy is cheap and thread-safe, so do it on whichever thread completes the task.
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+    private final FaceDetectionHelper faceDetectionHelper;
+    private final AtomicBoolean frameInFlight = new AtomicBoolean(false);
+    private final FrameBufferPool framePool = new FrameBufferPool(MAX_POOLED_FRAMES);
+    private final int[] cropRect = new int[4];
+    private volatile boolean enabled;
+    @Nullable
+    private volatile FrameBufferConsumer frameConsumer;
+    @Nullable
+    private volatile FrameScheduler scheduler;
+
+    public FaceAnalyzer(@NonNull FaceDetectionHelper faceDetectionHelper) {
+        this.faceDetectionHelper = faceDetectionHelper;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Hands every frame that is analyzed in full to {@code consumer}. Cropped frames are not passed on.
+     */
+    public void setFrameConsumer(@Nullable FrameBufferConsumer consumer) {
+        this.frameConsumer = consumer;
+    }
+
+    public void setScheduler(@Nullable FrameScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    @OptIn(markerClass = ExperimentalGetImage.class)
+    public void analyze(@NonNull ImageProxy imageProxy) {
+        PipelineMetrics metrics = faceDetectionHelper.getMetrics();
+        Image mediaImage = imageProxy.getImage();
+        if (!enabled || mediaImage == null) {
+            countAndClose(imageProxy, metrics, PipelineMetrics.Counter.SKIPPED);
+            return;
+        }
+        if (!frameInFlight.compareAndSet(false, true)) {
+            countAndClose(imageProxy, metrics, PipelineMetrics.Counter.DROPPED);
+            return;
+        }
+        PipelineMetrics.Counter skipped = schedule(mediaImage, imageProxy.getImageInfo().getTimestamp());
+        if (skipped != null) {
+            frameInFlight.set(false);
+            countAndClose(imageProxy, metrics, skipped);
+            return;
+        }
+        if (metrics != null) {
+            metrics.record(PipelineMetrics.Stage.CAPTURE_TO_ANALYZE,
+                    sinceCapture(imageProxy.getImageInfo().getTimestamp()));
+        }
+
+        int width = mediaImage.getWidth();
+        int height = mediaImage.getHeight();
+        int rotation = imageProxy.getImageInfo().getRotationDegrees();
+        long timestampNanos = imageProxy.getImageInfo().getTimestamp();
+        RoiPlanner roiPlanner = faceDetectionHelper.getRoiPlanner();
+        FrameBufferConsumer consumer = frameConsumer;
+        FrameBuffer buffer = null;
+        InputImage image;
+        FrameRegion region = null;
+        try {
+            if (roiPlanner != null && roiPlanner.planCrop(width, height, rotation, cropRect)
+                    && (buffer = framePool.acquire(cropRect[2], cropRect[3], rotation, timestampNanos)) != null) {
+                pack(mediaImage, cropRect[0], cropRect[1], cropRect[2], cropRect[3], buffer);
+                image = buffer.toInputImage();
+                region = FrameRegion.crop(cropRect[0], cropRect[1], cropRect[2], cropRect[3],
+                        width, height, rotation);
+            } else if (consumer != null
+                    && (buffer = framePool.acquire(width, height, rotation, timestampNanos)) != null) {
+                pack(mediaImage, 0, 0, width, height, buffer);
+                consumer.onFrameBuffer(buffer);
+                image = buffer.toInputImage();
+            } else {
+                image = InputImage.fromMediaImage(mediaImage, rotation);
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Could not wrap camera frame: " + e.getMessage(), e);
+            release(imageProxy, buffer);
+            return;
+        }
+
+        FrameBuffer detectorBuffer = buffer;
+        faceDetectionHelper.process(image, region)
+                .addOnCompleteListener(DIRECT_EXECUTOR, task -> release(imageProxy, detectorBuffer));
+    }
+
+    /**
+     * Returns the counter for a frame the scheduler skips, or {@code null} if it is to be analyzed.
+     */
+    @Nullable
+    private PipelineMetrics.Counter schedule(@NonNull Image image, long timestampNanos) {
+        FrameScheduler frameScheduler = scheduler;
+        if (frameScheduler == null) {
+            return null;
+        }
+        Image.Plane luma = image.getPlanes()[0];
+        switch (frameScheduler.decide(luma.getBuffer(), luma.getRowStride(), luma.getPixelStride(),
+                image.getWidth(), image.getHeight(), timestampNanos)) {
+            case UNCHANGED:
+                return PipelineMetrics.Counter.UNCHANGED;
+            case THROTTLED:
+                return PipelineMetrics.Counter.THROTTLED;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Packs the rectangle at ({@code left}, {@code top}) of {@code image} into {@code out}.
+     */
+    private static void pack(@NonNull Image image, int left, int top, int width, int height,
+                             @NonNull FrameBuffer out) {
+        Image.Plane[] planes = image.getPlanes();
+        Nv21Packer.pack(planes[0].getBuffer(), planes[0].getRowStride(), planes[0].getPixelStride(),
+                planes[1].getBuffer(), planes[2].getBuffer(), planes[1].getRowStride(), planes[1].getPixelStride(),
+                left, top, width, height, out.getNv21());
+    }
+
+    private static void countAndClose(@NonNull ImageProxy imageProxy, @Nullable PipelineMetrics metrics,
+                                      @NonNull PipelineMetrics.Counter counter) {
+        if (metrics != null) {
+            metrics.increment(counter);
+        }
+        imageProxy.close();
+    }
+
+    /**
+     * Sensor timestamps use either the boot-time or the monotonic clock depending on the device;
+     * measure against whichever of the two the timestamp is close to.
+     */
+    private static long sinceCapture(long timestampNanos) {
+        long sinceBoot = SystemClock.elapsedRealtimeNanos() - timestampNanos;
+        long sinceMonotonic = System.nanoTime() - timestampNanos;
+        if (sinceBoot >= 0 && (sinceMonotonic < 0 || sinceBoot <= sinceMonotonic)) {
+            return sinceBoot;
+        }
+        return sinceMonotonic;
+    }
+
+    private void release(@NonNull ImageProxy imageProxy, @Nullable FrameBuffer buffer) {
+        if (buffer != null) {
+            buffer.release();
+        }
+        imageProxy.close();
+        frameInFlight.set(false);
+    }
+}
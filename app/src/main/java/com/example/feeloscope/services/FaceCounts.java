@@ -0,0 +1,43 @@
+package com.example.feeloscope.services;
+
+import androidx.annotation.NonNull;
+
+import com.google.mlkit.vision.face.Face;
+
+import java.util.List;
+
+/**
+ * Counts faces in raw ML Kit results against {@link DetectionResult#DEFAULT_PROBABILITY_THRESHOLD},
+ * for batch paths that do not go through {@link FaceDetectionHelper}.
+ */
+public final class FaceCounts {
+
+    private FaceCounts() {
+    }
+
+    public static int smiling(@NonNull List<Face> faces) {
+        int count = 0;
+        for (int i = 0, size = faces.size(); i < size; i++) {
+            Float smile = faces.get(i).getSmilingProbability();
+            if (smile != null && smile >= DetectionResult.DEFAULT_PROBABILITY_THRESHOLD) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public static int eyesOpen(@NonNull List<Face> faces) {
+        int count = 0;
+        for (int i = 0, size = faces.size(); i < size; i++) {
+            Face face = faces.get(i);
+            Float leftEye = face.getLeftEyeOpenProbability();
+            Float rightEye = face.getRightEyeOpenProbability();
+            if (leftEye != null && rightEye != null
+                    && leftEye >= DetectionResult.DEFAULT_PROBABILITY_THRESHOLD
+                    && rightEye >= DetectionResult.DEFAULT_PROBABILITY_THRESHOLD) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
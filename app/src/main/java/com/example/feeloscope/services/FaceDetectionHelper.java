@@ -1,109 +1,436 @@
 package com.example.feeloscope.services;
 
 import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import com.example.feeloscope.services.engine.FaceEngine;
+import com.example.feeloscope.services.engine.MlKitFaceEngine;
+import com.example.feeloscope.services.metrics.PipelineMetrics;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.mlkit.vision.common.InputImage;
 import com.google.mlkit.vision.face.Face;
-import com.google.mlkit.vision.face.FaceDetection;
-import com.google.mlkit.vision.face.FaceDetector;
-import com.google.mlkit.vision.face.FaceDetectorOptions;
 import com.google.mlkit.vision.face.FaceLandmark;
 
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class FaceDetectionHelper {
     private static final String TAG = "FaceDetectionHelper";
-    private final FaceDetector faceDetector;
+    private static final int FRAME_POOL_SIZE = 3;
+
+    private static ExecutorService sharedPostProcessExecutor;
+
+    // ML Kit landmark type for each FaceFrame landmark slot.
+    private static final int[] ML_KIT_LANDMARKS = {
+            FaceLandmark.LEFT_EYE,
+            FaceLandmark.RIGHT_EYE,
+            FaceLandmark.NOSE_BASE,
+            FaceLandmark.MOUTH_LEFT,
+            FaceLandmark.MOUTH_RIGHT,
+            FaceLandmark.MOUTH_BOTTOM,
+            FaceLandmark.LEFT_EAR,
+            FaceLandmark.RIGHT_EAR,
+            FaceLandmark.LEFT_CHEEK,
+            FaceLandmark.RIGHT_CHEEK
+    };
+    @Nullable
     private final FaceDetectionListener listener;
+    @Nullable
+    private final FaceDetectionResultListener resultListener;
+    @Nullable
+    private final AdaptiveProfileController profileController;
+    @Nullable
+    private final DetectorProfile fixedProfile;
+    @Nullable
+    private final FaceTracker tracker;
+    private final FaceStateClassifier stateClassifier;
+    @Nullable
+    private final RoiPlanner roiPlanner;
+    @Nullable
+    private final PipelineMetrics metrics;
+    private final Executor postProcessExecutor;
+    private final Executor deliveryExecutor;
+    private final FaceEngine engine;
+    private boolean closed;
+
+    // A small ring of preallocated frames, so a listener may still read the previous one
+    // while the next result is being filled in. Only touched on the post-processing executor.
+    private final FaceFrame[] framePool = new FaceFrame[FRAME_POOL_SIZE];
+    private int nextFrameSlot;
+    private long frameCounter;
+    private volatile FaceDiagnostics diagnostics = FaceDiagnostics.NONE;
 
     public FaceDetectionHelper(FaceDetectionListener listener) {
-        this.listener = listener;
+        this(new Builder().setListener(listener));
+    }
+
+    public FaceDetectionHelper(FaceDetectionListener listener, @NonNull DetectorProfile profile) {
+        this(new Builder().setListener(listener).setProfile(profile));
+    }
+
+    /**
+     * Creates a helper that switches between detector profiles on its own, based on the
+     * latency reported back to {@code profileController}. Meant for the live camera path.
+     */
+    public FaceDetectionHelper(FaceDetectionListener listener, @NonNull AdaptiveProfileController profileController) {
+        this(new Builder().setListener(listener).setAdaptiveProfile(profileController));
+    }
+
+    private FaceDetectionHelper(@NonNull Builder builder) {
+        this.listener = builder.listener;
+        this.resultListener = builder.resultListener;
+        this.profileController = builder.profileController;
+        this.fixedProfile = builder.profileController == null ? builder.profile : null;
+        this.tracker = builder.tracker;
+        this.stateClassifier = builder.stateClassifier != null ? builder.stateClassifier : new FaceStateClassifier();
+        this.roiPlanner = builder.roiPlanner;
+        this.metrics = builder.metrics;
+        this.engine = new MlKitFaceEngine();
+        this.postProcessExecutor = builder.postProcessExecutor != null
+                ? builder.postProcessExecutor : defaultPostProcessExecutor();
+        this.deliveryExecutor = builder.deliveryExecutor != null
+                ? builder.deliveryExecutor : new Handler(Looper.getMainLooper())::post;
+        Log.d(TAG, "FaceDetectionHelper initialized with the " + engine.getName() + " engine and "
+                + (profileController != null ? "adaptive profile switching." : "profile " + fixedProfile + "."));
+    }
 
-        // Configure ML Kit Face Detector (same options as before)
-        FaceDetectorOptions highAccuracyOpts =
-                new FaceDetectorOptions.Builder()
-                        .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_ACCURATE)
-                        .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_ALL)
-                        .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_ALL)
-                        .build();
+    @NonNull
+    private static synchronized Executor defaultPostProcessExecutor() {
+        if (sharedPostProcessExecutor == null) {
+            sharedPostProcessExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "face-postprocess");
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            });
+        }
+        return sharedPostProcessExecutor;
+    }
+
+    /**
+     * The planner that decides which frames may be cropped, or {@code null} if every frame is analyzed in full.
+     */
+    @Nullable
+    public RoiPlanner getRoiPlanner() {
+        return roiPlanner;
+    }
+
+    @Nullable
+    public PipelineMetrics getMetrics() {
+        return metrics;
+    }
+
+    @NonNull
+    public DetectorProfile getCurrentProfile() {
+        return profileController != null ? profileController.getCurrentProfile() : fixedProfile;
+    }
 
-        faceDetector = FaceDetection.getClient(highAccuracyOpts);
-        Log.d(TAG, "FaceDetectionHelper initialized.");
+    /**
+     * Runs the engine on {@code image}. Post-processing runs on the post-processing executor and
+     * listeners are called on the delivery executor; the returned task completes once
+     * post-processing is done, without waiting for delivery.
+     */
+    public Task<List<Face>> process(InputImage image) {
+        return process(image, null);
     }
 
-    public void process(InputImage image) {
-        if (faceDetector == null) {
+    /**
+     * Like {@link #process(InputImage)} for an image cut out of a larger camera frame. Results are
+     * mapped back to the coordinates of the full frame described by {@code region}.
+     */
+    public Task<List<Face>> process(@NonNull InputImage image, @Nullable FrameRegion region) {
+        DetectorProfile profile = tracker != null && tracker.canSkipClassification()
+                ? DetectorProfile.TRACK_ONLY : getCurrentProfile();
+        FaceEngine engine = activeEngine();
+        if (engine == null) {
             Log.e(TAG, "FaceDetector is not initialized.");
-            if (listener != null) {
-                listener.onError(new IllegalStateException("FaceDetector not initialized."));
+            IllegalStateException error = new IllegalStateException("FaceDetector not initialized.");
+            deliverError(error);
+            return Tasks.forException(error);
+        }
+        long startNanos = SystemClock.elapsedRealtimeNanos();
+        // Callers release the image when the task completes, after post-processing.
+        return engine.detect(image, profile).continueWith(postProcessExecutor, task -> {
+            if (!task.isSuccessful()) {
+                Exception e = task.getException() != null
+                        ? task.getException() : new CancellationException("Face detection was cancelled.");
+                onDetectionFailed(profile, startNanos, e);
+                throw e;
             }
-            return;
-        }
-        faceDetector.process(image)
-                .addOnSuccessListener(faces -> {
-                    Log.d(TAG, "Number of faces detected: " + faces.size());
-                    for (Face face : faces) {
-                        Rect bounds = face.getBoundingBox();
-                        Log.d(TAG, "Face bounds: " + bounds.flattenToString());
-
-                        if (face.getTrackingId() != null) {
-                            int id = face.getTrackingId();
-                            Log.d(TAG, "Face tracking ID: " + id);
-                        }
-
-                        float rotY = face.getHeadEulerAngleY(); // Head is rotated to the right rotY degrees
-                        float rotZ = face.getHeadEulerAngleZ(); // Head is tilted sideways rotZ degrees
-                        Log.d(TAG, "Head rotation Y: " + rotY + ", Z: " + rotZ);
-
-                        // If classification was enabled:
-                        if (face.getSmilingProbability() != null) {
-                            float smileProb = face.getSmilingProbability();
-                            Log.d(TAG, "Smiling probability: " + smileProb);
-                        }
-                        if (face.getLeftEyeOpenProbability() != null) {
-                            float leftEyeOpenProb = face.getLeftEyeOpenProbability();
-                            Log.d(TAG, "Left eye open probability: " + leftEyeOpenProb);
-                        }
-                        if (face.getRightEyeOpenProbability() != null) {
-                            float rightEyeOpenProb = face.getRightEyeOpenProbability();
-                            Log.d(TAG, "Right eye open probability: " + rightEyeOpenProb);
-                        }
-
-                        // If landmark detection was enabled:
-                        FaceLandmark leftEar = face.getLandmark(FaceLandmark.LEFT_EAR);
-                        if (leftEar != null) {
-                            Log.d(TAG, "Left ear position: " + leftEar.getPosition().toString());
-                        }
-                        FaceLandmark rightEar = face.getLandmark(FaceLandmark.RIGHT_EAR);
-                        if (rightEar != null) {
-                            Log.d(TAG, "Right ear position: " + rightEar.getPosition().toString());
-                        }
-                        FaceLandmark noseBase = face.getLandmark(FaceLandmark.NOSE_BASE);
-                        if (noseBase != null) {
-                            Log.d(TAG, "Nose base position: " + noseBase.getPosition().toString());
-                        }
-                        // Add more landmark logging as needed...
-                    }
-                    
-                    // Notify the listener after logging the details
-                    if (listener != null) {
-                        listener.onFacesDetected(faces, image);
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Face detection failed: " + e.getMessage(), e);
-                    if (listener != null) {
-                        listener.onError(e);
-                    }
-                });
-    }
-
-    public void close() {
-        if (faceDetector != null) {
-            faceDetector.close();
-            Log.d(TAG, "FaceDetector closed.");
+            List<Face> faces = task.getResult();
+            onFacesDetected(profile, faces, image, region, startNanos);
+            return faces;
+        });
+    }
+
+    private void onFacesDetected(@NonNull DetectorProfile profile, @NonNull List<Face> faces, @NonNull InputImage image,
+                                 @Nullable FrameRegion region, long startNanos) {
+        long postProcessStartNanos = SystemClock.elapsedRealtimeNanos();
+        long latencyNanos = postProcessStartNanos - startNanos;
+        if (profileController != null) {
+            profileController.recordLatency(profile, latencyNanos);
+        }
+        FaceFrame frame = nextFrame();
+        fillFrame(frame, faces, image, region);
+        if (roiPlanner != null) {
+            roiPlanner.onFrame(frame, region != null && region.isCropped());
+        }
+        if (tracker != null) {
+            tracker.update(frame, profile.classifies());
+        }
+        stateClassifier.classify(frame, tracker != null);
+        diagnostics.onFrame(frame);
+        if (listener != null) {
+            listener.onFaceFrame(frame);
+        }
+        DetectionResult result = resultListener != null
+                ? new DetectionResult(frame, profile, latencyNanos) : null;
+        long deliveryStartNanos = SystemClock.elapsedRealtimeNanos();
+        if (metrics != null) {
+            recordFrameMetrics(profile, region, latencyNanos, deliveryStartNanos - postProcessStartNanos);
+        }
+        if (listener != null || result != null) {
+            deliveryExecutor.execute(() -> {
+                if (metrics != null) {
+                    metrics.record(PipelineMetrics.Stage.DELIVERY,
+                            SystemClock.elapsedRealtimeNanos() - deliveryStartNanos);
+                }
+                if (listener != null) {
+                    listener.onFacesDetected(faces, image);
+                }
+                if (result != null) {
+                    resultListener.onDetectionResult(result);
+                }
+            });
+        }
+    }
+
+    private void onDetectionFailed(@NonNull DetectorProfile profile, long startNanos, @NonNull Exception e) {
+        if (profileController != null) {
+            profileController.recordLatency(profile, SystemClock.elapsedRealtimeNanos() - startNanos);
+        }
+        if (roiPlanner != null) {
+            roiPlanner.requestKeyframe();
+        }
+        Log.e(TAG, "Face detection failed: " + e.getMessage(), e);
+        deliverError(e);
+    }
+
+    private void recordFrameMetrics(@NonNull DetectorProfile profile, @Nullable FrameRegion region,
+                                    long detectorNanos, long postProcessNanos) {
+        metrics.recordDetector(profile, detectorNanos);
+        metrics.record(PipelineMetrics.Stage.POST_PROCESS, postProcessNanos);
+        metrics.onFrameAnalyzed();
+        if (region != null && region.isCropped()) {
+            metrics.increment(PipelineMetrics.Counter.CROPPED);
+        }
+        if (!profile.classifies()) {
+            metrics.increment(PipelineMetrics.Counter.TRACK_ONLY);
+        }
+    }
+
+    private void deliverError(@NonNull Exception e) {
+        if (listener != null) {
+            deliveryExecutor.execute(() -> listener.onError(e));
+        }
+        if (resultListener != null) {
+            deliveryExecutor.execute(() -> resultListener.onError(e));
+        }
+    }
+
+    /**
+     * Installs a sink that sees every result, e.g. {@link SampledLogDiagnostics}. Off by default.
+     */
+    public void setDiagnostics(@Nullable FaceDiagnostics diagnostics) {
+        this.diagnostics = diagnostics != null ? diagnostics : FaceDiagnostics.NONE;
+    }
+
+    @NonNull
+    private FaceFrame nextFrame() {
+        FaceFrame frame = framePool[nextFrameSlot];
+        if (frame == null) {
+            frame = new FaceFrame();
+            framePool[nextFrameSlot] = frame;
+        }
+        nextFrameSlot = (nextFrameSlot + 1) % FRAME_POOL_SIZE;
+        return frame;
+    }
+
+    private void fillFrame(@NonNull FaceFrame frame, @NonNull List<Face> faces, @NonNull InputImage image,
+                           @Nullable FrameRegion region) {
+        float offsetX = region != null ? region.getOffsetX() : 0f;
+        float offsetY = region != null ? region.getOffsetY() : 0f;
+        frame.reset(frameCounter++, SystemClock.elapsedRealtimeNanos(),
+                region != null ? region.getFrameWidth() : image.getWidth(),
+                region != null ? region.getFrameHeight() : image.getHeight(),
+                image.getRotationDegrees());
+        for (int i = 0, size = faces.size(); i < size; i++) {
+            Face face = faces.get(i);
+            Rect bounds = face.getBoundingBox();
+            Integer trackingId = face.getTrackingId();
+            Float smiling = face.getSmilingProbability();
+            Float leftEyeOpen = face.getLeftEyeOpenProbability();
+            Float rightEyeOpen = face.getRightEyeOpenProbability();
+            int index = frame.addFace(bounds.left + offsetX, bounds.top + offsetY,
+                    bounds.right + offsetX, bounds.bottom + offsetY,
+                    trackingId != null ? trackingId : FaceFrame.NO_TRACKING_ID,
+                    face.getHeadEulerAngleY(), face.getHeadEulerAngleZ(),
+                    smiling != null ? smiling : FaceFrame.UNKNOWN_PROBABILITY,
+                    leftEyeOpen != null ? leftEyeOpen : FaceFrame.UNKNOWN_PROBABILITY,
+                    rightEyeOpen != null ? rightEyeOpen : FaceFrame.UNKNOWN_PROBABILITY);
+            for (int slot = 0; slot < ML_KIT_LANDMARKS.length; slot++) {
+                FaceLandmark landmark = face.getLandmark(ML_KIT_LANDMARKS[slot]);
+                if (landmark != null) {
+                    frame.setLandmark(index, slot,
+                            landmark.getPosition().x + offsetX, landmark.getPosition().y + offsetY);
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private synchronized FaceEngine activeEngine() {
+        return closed ? null : engine;
+    }
+
+    /**
+     * Forgets all tracks and debounced states, e.g. after the camera switched lenses, and asks for
+     * a full frame next. The detector itself stays loaded. The tracks are dropped on the
+     * post-processing thread, behind any frame still being post-processed.
+     */
+    public void resetTracking() {
+        postProcessExecutor.execute(() -> {
+            if (tracker != null) {
+                tracker.reset();
+            }
+            stateClassifier.reset();
+        });
+        if (roiPlanner != null) {
+            roiPlanner.requestKeyframe();
+        }
+    }
+
+    /**
+     * Closes the engine, which hands all detectors back to the {@link DetectorRegistry}. The
+     * helper cannot be used afterwards.
+     */
+    public synchronized void close() {
+        closed = true;
+        engine.close();
+        Log.d(TAG, "FaceDetector leases released.");
+    }
+
+    public static final class Builder {
+        private FaceDetectionListener listener;
+        private FaceDetectionResultListener resultListener;
+        private DetectorProfile profile = DetectorProfile.ACCURATE;
+        private AdaptiveProfileController profileController;
+        private Executor postProcessExecutor;
+        private Executor deliveryExecutor;
+        private FaceTracker tracker;
+        private FaceStateClassifier stateClassifier;
+        private RoiPlanner roiPlanner;
+        private PipelineMetrics metrics;
+
+        /**
+         * Receives the raw ML Kit faces together with the processed image.
+         */
+        @NonNull
+        public Builder setListener(@Nullable FaceDetectionListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Receives an immutable, precomputed {@link DetectionResult} per processed image.
+         */
+        @NonNull
+        public Builder setResultListener(@Nullable FaceDetectionResultListener resultListener) {
+            this.resultListener = resultListener;
+            return this;
+        }
+
+        @NonNull
+        public Builder setProfile(@NonNull DetectorProfile profile) {
+            this.profile = profile;
+            return this;
+        }
+
+        @NonNull
+        public Builder setAdaptiveProfile(@Nullable AdaptiveProfileController profileController) {
+            this.profileController = profileController;
+            return this;
+        }
+
+        /**
+         * Executor that converts detector output into results. Must run tasks one at a time;
+         * defaults to a background thread shared by all helpers.
+         */
+        @NonNull
+        public Builder setPostProcessExecutor(@Nullable Executor postProcessExecutor) {
+            this.postProcessExecutor = postProcessExecutor;
+            return this;
+        }
+
+        /**
+         * Executor that calls the listeners. Defaults to the main thread.
+         */
+        @NonNull
+        public Builder setDeliveryExecutor(@Nullable Executor deliveryExecutor) {
+            this.deliveryExecutor = deliveryExecutor;
+            return this;
+        }
+
+        /**
+         * Smooths results across frames and lets stable frames skip classification. Meant for
+         * the live camera path; a tracker must not be shared between helpers.
+         */
+        @NonNull
+        public Builder setTracker(@Nullable FaceTracker tracker) {
+            this.tracker = tracker;
+            return this;
+        }
+
+        /**
+         * Decides the smiling and eyes-open states of each face. Defaults to a classifier with the
+         * default thresholds; with a tracker set, states are kept per track with hysteresis.
+         */
+        @NonNull
+        public Builder setStateClassifier(@Nullable FaceStateClassifier stateClassifier) {
+            this.stateClassifier = stateClassifier;
+            return this;
+        }
+
+        /**
+         * Enables region-of-interest mode: between keyframes, {@link FaceAnalyzer} only sends a crop
+         * around the last known faces. A planner must not be shared between helpers.
+         */
+        @NonNull
+        public Builder setRoiPlanner(@Nullable RoiPlanner roiPlanner) {
+            this.roiPlanner = roiPlanner;
+            return this;
+        }
+
+        /**
+         * Records stage timings and frame counters. {@link FaceAnalyzer} reports into the same instance.
+         */
+        @NonNull
+        public Builder setMetrics(@Nullable PipelineMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        @NonNull
+        public FaceDetectionHelper build() {
+            return new FaceDetectionHelper(this);
         }
     }
 }
@@ -1,10 +1,23 @@
 package com.example.feeloscope.services;
 
+import androidx.annotation.NonNull;
+
 import com.google.mlkit.vision.common.InputImage;
 import com.google.mlkit.vision.face.Face;
 import java.util.List;
 
 public interface FaceDetectionListener {
+    /**
+     * Raw detector output.
+     */
     void onFacesDetected(List<Face> faces, InputImage image); // Pass original image for context if needed by UI
     void onError(Exception e);
+
+    /**
+     * Called on the post-processing thread, before {@link #onFacesDetected}, with the same result as
+     * primitive records. The frame is reused by the helper afterwards, so copy it if it is needed
+     * beyond this call.
+     */
+    default void onFaceFrame(@NonNull FaceFrame frame) {
+    }
 }
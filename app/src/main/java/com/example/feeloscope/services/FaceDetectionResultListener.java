@@ -0,0 +1,12 @@
+package com.example.feeloscope.services;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Variant of {@link FaceDetectionListener} that receives a result which was already
+ * post-processed off the main thread instead of the raw ML Kit faces.
+ */
+public interface FaceDetectionResultListener {
+    void onDetectionResult(@NonNull DetectionResult result);
+    void onError(@NonNull Exception e);
+}
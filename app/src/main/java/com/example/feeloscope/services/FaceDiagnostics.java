@@ -0,0 +1,13 @@
+package com.example.feeloscope.services;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Receives every detection result of a {@link FaceDetectionHelper} for debugging purposes.
+ * Implementations run on the detection callback thread and must not hold on to the frame.
+ */
+public interface FaceDiagnostics {
+    FaceDiagnostics NONE = frame -> { };
+
+    void onFrame(@NonNull FaceFrame frame);
+}
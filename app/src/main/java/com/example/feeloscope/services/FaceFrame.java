@@ -0,0 +1,294 @@
+package com.example.feeloscope.services;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Detection results of one frame stored in flat primitive arrays.
+ * <p>
+ * Instances are preallocated and reused by {@link FaceDetectionHelper}; a frame handed to a
+ * listener is only valid for the duration of the callback. Use {@link #copy()} to keep the
+ * data around. Frames can only be written from within this package. Missing values are reported as {@link #UNKNOWN_PROBABILITY},
+ * {@link #NO_TRACKING_ID} or {@link Float#NaN} for landmark coordinates.
+ * <p>
+ * Besides the raw probabilities, each face carries the smiling and eyes-open states decided by
+ * a {@link FaceStateClassifier}, which are {@link #STATE_UNKNOWN} until one has run.
+ */
+public final class FaceFrame {
+    public static final float UNKNOWN_PROBABILITY = -1f;
+    public static final int NO_TRACKING_ID = -1;
+
+    public static final int STATE_UNKNOWN = 0;
+    public static final int STATE_NO = 1;
+    public static final int STATE_YES = 2;
+
+    public static final int LANDMARK_LEFT_EYE = 0;
+    public static final int LANDMARK_RIGHT_EYE = 1;
+    public static final int LANDMARK_NOSE_BASE = 2;
+    public static final int LANDMARK_MOUTH_LEFT = 3;
+    public static final int LANDMARK_MOUTH_RIGHT = 4;
+    public static final int LANDMARK_MOUTH_BOTTOM = 5;
+    public static final int LANDMARK_LEFT_EAR = 6;
+    public static final int LANDMARK_RIGHT_EAR = 7;
+    public static final int LANDMARK_LEFT_CHEEK = 8;
+    public static final int LANDMARK_RIGHT_CHEEK = 9;
+    public static final int LANDMARK_COUNT = 10;
+
+    private static final int DEFAULT_CAPACITY = 4;
+
+    private int capacity;
+    private int faceCount;
+    private long frameIndex;
+    private long timestampNanos;
+    private int imageWidth;
+    private int imageHeight;
+    private int rotationDegrees;
+
+    private float[] bounds;
+    private int[] trackingIds;
+    private float[] headEulerY;
+    private float[] headEulerZ;
+    private float[] smilingProbabilities;
+    private float[] leftEyeOpenProbabilities;
+    private float[] rightEyeOpenProbabilities;
+    private int[] smilingStates;
+    private int[] eyesOpenStates;
+    private float[] landmarks;
+
+    public FaceFrame() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public FaceFrame(int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    private void allocate(int newCapacity) {
+        capacity = newCapacity;
+        bounds = bounds == null ? new float[newCapacity * 4] : Arrays.copyOf(bounds, newCapacity * 4);
+        trackingIds = trackingIds == null ? new int[newCapacity] : Arrays.copyOf(trackingIds, newCapacity);
+        headEulerY = headEulerY == null ? new float[newCapacity] : Arrays.copyOf(headEulerY, newCapacity);
+        headEulerZ = headEulerZ == null ? new float[newCapacity] : Arrays.copyOf(headEulerZ, newCapacity);
+        smilingProbabilities = smilingProbabilities == null
+                ? new float[newCapacity] : Arrays.copyOf(smilingProbabilities, newCapacity);
+        leftEyeOpenProbabilities = leftEyeOpenProbabilities == null
+                ? new float[newCapacity] : Arrays.copyOf(leftEyeOpenProbabilities, newCapacity);
+        rightEyeOpenProbabilities = rightEyeOpenProbabilities == null
+                ? new float[newCapacity] : Arrays.copyOf(rightEyeOpenProbabilities, newCapacity);
+        smilingStates = smilingStates == null ? new int[newCapacity] : Arrays.copyOf(smilingStates, newCapacity);
+        eyesOpenStates = eyesOpenStates == null ? new int[newCapacity] : Arrays.copyOf(eyesOpenStates, newCapacity);
+        landmarks = landmarks == null
+                ? new float[newCapacity * LANDMARK_COUNT * 2]
+                : Arrays.copyOf(landmarks, newCapacity * LANDMARK_COUNT * 2);
+    }
+
+    /**
+     * Clears all faces and stamps the frame with the metadata of a new image.
+     */
+    void reset(long frameIndex, long timestampNanos, int imageWidth, int imageHeight, int rotationDegrees) {
+        this.faceCount = 0;
+        this.frameIndex = frameIndex;
+        this.timestampNanos = timestampNanos;
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.rotationDegrees = rotationDegrees;
+    }
+
+    /**
+     * Appends a face and returns its index. Landmarks start out unset.
+     */
+    int addFace(float left, float top, float right, float bottom, int trackingId,
+                float eulerY, float eulerZ,
+                float smilingProbability, float leftEyeOpenProbability, float rightEyeOpenProbability) {
+        if (faceCount == capacity) {
+            // Only grows when a frame holds more faces than any before it.
+            allocate(capacity * 2);
+        }
+        int index = faceCount++;
+        int boundsOffset = index * 4;
+        bounds[boundsOffset] = left;
+        bounds[boundsOffset + 1] = top;
+        bounds[boundsOffset + 2] = right;
+        bounds[boundsOffset + 3] = bottom;
+        trackingIds[index] = trackingId;
+        headEulerY[index] = eulerY;
+        headEulerZ[index] = eulerZ;
+        smilingProbabilities[index] = smilingProbability;
+        leftEyeOpenProbabilities[index] = leftEyeOpenProbability;
+        rightEyeOpenProbabilities[index] = rightEyeOpenProbability;
+        smilingStates[index] = STATE_UNKNOWN;
+        eyesOpenStates[index] = STATE_UNKNOWN;
+        Arrays.fill(landmarks, landmarkOffset(index, 0), landmarkOffset(index + 1, 0), Float.NaN);
+        return index;
+    }
+
+    void setTrackingId(int faceIndex, int trackingId) {
+        trackingIds[faceIndex] = trackingId;
+    }
+
+    void setProbabilities(int faceIndex, float smilingProbability, float leftEyeOpenProbability,
+                          float rightEyeOpenProbability) {
+        smilingProbabilities[faceIndex] = smilingProbability;
+        leftEyeOpenProbabilities[faceIndex] = leftEyeOpenProbability;
+        rightEyeOpenProbabilities[faceIndex] = rightEyeOpenProbability;
+    }
+
+    void setStates(int faceIndex, int smilingState, int eyesOpenState) {
+        smilingStates[faceIndex] = smilingState;
+        eyesOpenStates[faceIndex] = eyesOpenState;
+    }
+
+    void setLandmark(int faceIndex, int landmark, float x, float y) {
+        int offset = landmarkOffset(faceIndex, landmark);
+        landmarks[offset] = x;
+        landmarks[offset + 1] = y;
+    }
+
+    @NonNull
+    public FaceFrame copy() {
+        FaceFrame copy = new FaceFrame(Math.max(1, faceCount));
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    /**
+     * Replaces the contents of this frame with a copy of {@code other}.
+     */
+    void copyFrom(@NonNull FaceFrame other) {
+        if (capacity < other.faceCount) {
+            allocate(other.capacity);
+        }
+        reset(other.frameIndex, other.timestampNanos, other.imageWidth, other.imageHeight, other.rotationDegrees);
+        int count = other.faceCount;
+        System.arraycopy(other.bounds, 0, bounds, 0, count * 4);
+        System.arraycopy(other.trackingIds, 0, trackingIds, 0, count);
+        System.arraycopy(other.headEulerY, 0, headEulerY, 0, count);
+        System.arraycopy(other.headEulerZ, 0, headEulerZ, 0, count);
+        System.arraycopy(other.smilingProbabilities, 0, smilingProbabilities, 0, count);
+        System.arraycopy(other.leftEyeOpenProbabilities, 0, leftEyeOpenProbabilities, 0, count);
+        System.arraycopy(other.rightEyeOpenProbabilities, 0, rightEyeOpenProbabilities, 0, count);
+        System.arraycopy(other.smilingStates, 0, smilingStates, 0, count);
+        System.arraycopy(other.eyesOpenStates, 0, eyesOpenStates, 0, count);
+        System.arraycopy(other.landmarks, 0, landmarks, 0, count * LANDMARK_COUNT * 2);
+        faceCount = count;
+    }
+
+    private static int landmarkOffset(int faceIndex, int landmark) {
+        return (faceIndex * LANDMARK_COUNT + landmark) * 2;
+    }
+
+    public int getFaceCount() {
+        return faceCount;
+    }
+
+    public long getFrameIndex() {
+        return frameIndex;
+    }
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    public int getRotationDegrees() {
+        return rotationDegrees;
+    }
+
+    public float getLeft(int faceIndex) {
+        return bounds[faceIndex * 4];
+    }
+
+    public float getTop(int faceIndex) {
+        return bounds[faceIndex * 4 + 1];
+    }
+
+    public float getRight(int faceIndex) {
+        return bounds[faceIndex * 4 + 2];
+    }
+
+    public float getBottom(int faceIndex) {
+        return bounds[faceIndex * 4 + 3];
+    }
+
+    public int getTrackingId(int faceIndex) {
+        return trackingIds[faceIndex];
+    }
+
+    public float getHeadEulerAngleY(int faceIndex) {
+        return headEulerY[faceIndex];
+    }
+
+    public float getHeadEulerAngleZ(int faceIndex) {
+        return headEulerZ[faceIndex];
+    }
+
+    public float getSmilingProbability(int faceIndex) {
+        return smilingProbabilities[faceIndex];
+    }
+
+    public float getLeftEyeOpenProbability(int faceIndex) {
+        return leftEyeOpenProbabilities[faceIndex];
+    }
+
+    public float getRightEyeOpenProbability(int faceIndex) {
+        return rightEyeOpenProbabilities[faceIndex];
+    }
+
+    /**
+     * One of {@link #STATE_UNKNOWN}, {@link #STATE_NO} or {@link #STATE_YES}.
+     */
+    public int getSmilingState(int faceIndex) {
+        return smilingStates[faceIndex];
+    }
+
+    /**
+     * {@link #STATE_YES} if both eyes are open. One of {@link #STATE_UNKNOWN}, {@link #STATE_NO} or {@link #STATE_YES}.
+     */
+    public int getEyesOpenState(int faceIndex) {
+        return eyesOpenStates[faceIndex];
+    }
+
+    /**
+     * The number of faces whose smiling state is {@link #STATE_YES}.
+     */
+    public int countSmilingFaces() {
+        return countYes(smilingStates);
+    }
+
+    /**
+     * The number of faces whose eyes-open state is {@link #STATE_YES}.
+     */
+    public int countEyesOpenFaces() {
+        return countYes(eyesOpenStates);
+    }
+
+    private int countYes(@NonNull int[] states) {
+        int count = 0;
+        for (int i = 0; i < faceCount; i++) {
+            if (states[i] == STATE_YES) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public float getLandmarkX(int faceIndex, int landmark) {
+        return landmarks[landmarkOffset(faceIndex, landmark)];
+    }
+
+    public float getLandmarkY(int faceIndex, int landmark) {
+        return landmarks[landmarkOffset(faceIndex, landmark) + 1];
+    }
+
+    public boolean hasLandmark(int faceIndex, int landmark) {
+        return !Float.isNaN(landmarks[landmarkOffset(faceIndex, landmark)]);
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.feeloscope.services;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Turns smile and eye-open probabilities into the states shown to the user.
+ * <p>
+ * A tracked face only changes state once its probability has crossed the threshold by the
+ * hysteresis margin, and only after the new state held for {@code debounceFrames} frames in a row,
+ * so values hovering around the threshold do not make the display flicker. Near 0 and 1 the margin
+ * shrinks to half the distance to the bound, so both states stay reachable. The first decision for
+ * a face is taken right away. Faces without a tracking ID are compared against the plain threshold.
+ * Both eyes count as open when the lower of the two probabilities passes.
+ * <p>
+ * All state lives in primitive arrays with one slot per track, so the cost per face is constant.
+ * Thresholds may be changed from any thread; {@link #classify} must always be called from the same one.
+ */
+public class FaceStateClassifier {
+    public static final float DEFAULT_THRESHOLD = 0.5f;
+    public static final float DEFAULT_HYSTERESIS = 0.1f;
+    public static final int DEFAULT_DEBOUNCE_FRAMES = 3;
+
+    private static final int SMILING = 0;
+    private static final int EYES_OPEN = 1;
+
+    private final float hysteresis;
+    private final int debounceFrames;
+    private final long expiryNanos;
+
+    private volatile float smilingThreshold = DEFAULT_THRESHOLD;
+    private volatile float eyesOpenThreshold = DEFAULT_THRESHOLD;
+
+    private final boolean[] active;
+    private final int[] trackIds;
+    private final long[] lastSeenNanos;
+    // Two entries per track, indexed by SMILING and EYES_OPEN.
+    private final int[] states;
+    private final int[] pendingStates;
+    private final int[] pendingFrames;
+
+    public FaceStateClassifier() {
+        this(FaceTracker.DEFAULT_MAX_TRACKS, DEFAULT_HYSTERESIS, DEFAULT_DEBOUNCE_FRAMES, FaceTracker.DEFAULT_EXPIRY_MS);
+    }
+
+    public FaceStateClassifier(int maxTracks, float hysteresis, int debounceFrames, long expiryMs) {
+        if (maxTracks <= 0 || hysteresis < 0f || hysteresis >= 0.5f || debounceFrames <= 0 || expiryMs <= 0) {
+            throw new IllegalArgumentException("Invalid classifier configuration.");
+        }
+        this.hysteresis = hysteresis;
+        this.debounceFrames = debounceFrames;
+        this.expiryNanos = expiryMs * 1_000_000L;
+        active = new boolean[maxTracks];
+        trackIds = new int[maxTracks];
+        lastSeenNanos = new long[maxTracks];
+        states = new int[maxTracks * 2];
+        pendingStates = new int[maxTracks * 2];
+        pendingFrames = new int[maxTracks * 2];
+    }
+
+    /**
+     * Sets the probabilities above which a face counts as smiling or as having its eyes open.
+     */
+    public void setThresholds(float smilingThreshold, float eyesOpenThreshold) {
+        if (smilingThreshold <= 0f || smilingThreshold >= 1f || eyesOpenThreshold <= 0f || eyesOpenThreshold >= 1f) {
+            throw new IllegalArgumentException("Thresholds must lie between 0 and 1.");
+        }
+        this.smilingThreshold = smilingThreshold;
+        this.eyesOpenThreshold = eyesOpenThreshold;
+    }
+
+    public float getSmilingThreshold() {
+        return smilingThreshold;
+    }
+
+    public float getEyesOpenThreshold() {
+        return eyesOpenThreshold;
+    }
+
+    /**
+     * Writes the states of every face into {@code frame}.
+     *
+     * @param tracked whether the frame's tracking IDs follow the same faces across frames, as
+     *                they do after a {@link FaceTracker}; otherwise each face is judged on its own
+     */
+    public void classify(@NonNull FaceFrame frame, boolean tracked) {
+        long now = frame.getTimestampNanos();
+        float smileThreshold = smilingThreshold;
+        float eyesThreshold = eyesOpenThreshold;
+        if (tracked) {
+            expire(now);
+        }
+        for (int face = 0, count = frame.getFaceCount(); face < count; face++) {
+            float smiling = frame.getSmilingProbability(face);
+            float eyesOpen = Math.min(frame.getLeftEyeOpenProbability(face), frame.getRightEyeOpenProbability(face));
+            int trackingId = frame.getTrackingId(face);
+            int track = tracked && trackingId != FaceFrame.NO_TRACKING_ID ? slotFor(trackingId, now) : -1;
+            if (track < 0) {
+                frame.setStates(face, decide(smiling, smileThreshold), decide(eyesOpen, eyesThreshold));
+            } else {
+                frame.setStates(face, update(track * 2 + SMILING, smiling, smileThreshold),
+                        update(track * 2 + EYES_OPEN, eyesOpen, eyesThreshold));
+            }
+        }
+    }
+
+    public void reset() {
+        for (int track = 0; track < active.length; track++) {
+            active[track] = false;
+        }
+    }
+
+    private static int decide(float probability, float threshold) {
+        if (probability < 0f) {
+            return FaceFrame.STATE_UNKNOWN;
+        }
+        return probability >= threshold ? FaceFrame.STATE_YES : FaceFrame.STATE_NO;
+    }
+
+    private int update(int entry, float probability, float threshold) {
+        int current = states[entry];
+        if (probability < 0f) {
+            // No classification this frame; keep what was shown.
+            return current;
+        }
+        float margin = Math.min(hysteresis, Math.min(threshold, 1f - threshold) / 2f);
+        int candidate;
+        if (current == FaceFrame.STATE_YES) {
+            candidate = probability < threshold - margin ? FaceFrame.STATE_NO : FaceFrame.STATE_YES;
+        } else if (current == FaceFrame.STATE_NO) {
+            candidate = probability >= threshold + margin ? FaceFrame.STATE_YES : FaceFrame.STATE_NO;
+        } else {
+            states[entry] = decide(probability, threshold);
+            pendingFrames[entry] = 0;
+            return states[entry];
+        }
+        if (candidate == current) {
+            pendingFrames[entry] = 0;
+            return current;
+        }
+        if (pendingStates[entry] != candidate) {
+            pendingStates[entry] = candidate;
+            pendingFrames[entry] = 0;
+        }
+        if (++pendingFrames[entry] >= debounceFrames) {
+            states[entry] = candidate;
+            pendingFrames[entry] = 0;
+        }
+        return states[entry];
+    }
+
+    private int slotFor(int trackingId, long now) {
+        int free = -1;
+        int oldest = 0;
+        for (int track = 0; track < active.length; track++) {
+            if (!active[track]) {
+                if (free < 0) {
+                    free = track;
+                }
+            } else if (trackIds[track] == trackingId) {
+                lastSeenNanos[track] = now;
+                return track;
+            } else if (lastSeenNanos[track] < lastSeenNanos[oldest]) {
+                oldest = track;
+            }
+        }
+        int track = free >= 0 ? free : oldest;
+        active[track] = true;
+        trackIds[track] = trackingId;
+        lastSeenNanos[track] = now;
+        for (int entry = track * 2; entry < track * 2 + 2; entry++) {
+            states[entry] = FaceFrame.STATE_UNKNOWN;
+            pendingFrames[entry] = 0;
+        }
+        return track;
+    }
+
+    private void expire(long now) {
+        for (int track = 0; track < active.length; track++) {
+            if (active[track] && now - lastSeenNanos[track] > expiryNanos) {
+                active[track] = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.feeloscope.services;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+
+/**
+ * The user's thresholds for the smiling and eyes-open states, kept in {@link SharedPreferences}.
+ */
+public final class FaceStateSettings {
+    private static final String PREFERENCES_NAME = "face_state";
+    private static final String KEY_SMILING_THRESHOLD = "smiling_threshold";
+    private static final String KEY_EYES_OPEN_THRESHOLD = "eyes_open_threshold";
+
+    public static final float MIN_THRESHOLD = 0.05f;
+    public static final float MAX_THRESHOLD = 0.95f;
+
+    private final SharedPreferences preferences;
+
+    public FaceStateSettings(@NonNull Context context) {
+        this.preferences = context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    public float getSmilingThreshold() {
+        return clamp(preferences.getFloat(KEY_SMILING_THRESHOLD, FaceStateClassifier.DEFAULT_THRESHOLD));
+    }
+
+    public float getEyesOpenThreshold() {
+        return clamp(preferences.getFloat(KEY_EYES_OPEN_THRESHOLD, FaceStateClassifier.DEFAULT_THRESHOLD));
+    }
+
+    public void setThresholds(float smilingThreshold, float eyesOpenThreshold) {
+        preferences.edit()
+                .putFloat(KEY_SMILING_THRESHOLD, clamp(smilingThreshold))
+                .putFloat(KEY_EYES_OPEN_THRESHOLD, clamp(eyesOpenThreshold))
+                .apply();
+    }
+
+    public void applyTo(@NonNull FaceStateClassifier classifier) {
+        classifier.setThresholds(getSmilingThreshold(), getEyesOpenThreshold());
+    }
+
+    /**
+     * Calls {@code listener} whenever the thresholds change. The preferences only hold a weak
+     * reference, so keep the listener referenced while it is registered.
+     */
+    public void registerListener(@NonNull SharedPreferences.OnSharedPreferenceChangeListener listener) {
+        preferences.registerOnSharedPreferenceChangeListener(listener);
+    }
+
+    public void unregisterListener(@NonNull SharedPreferences.OnSharedPreferenceChangeListener listener) {
+        preferences.unregisterOnSharedPreferenceChangeListener(listener);
+    }
+
+    private static float clamp(float threshold) {
+        return Math.max(MIN_THRESHOLD, Math.min(MAX_THRESHOLD, threshold));
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.feeloscope.services;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Follows faces across live frames and smooths their classification.
+ * <p>
+ * Faces are matched to tracks by ML Kit tracking ID, or by overlap with the position predicted
+ * from the track's velocity when the ID is missing or comes from another detector instance. Each
+ * track keeps an exponential moving average of the smile and eye-open probabilities, which is
+ * written back into the frame together with a track ID that stays the same across detector
+ * switches. Tracks that have not been seen for a while expire.
+ * <p>
+ * Once every visible face has been still for a few frames, {@link #canSkipClassification()} lets
+ * the pipeline use {@link DetectorProfile#TRACK_ONLY}. Frames from that detector carry no
+ * probabilities and get the smoothed values of their tracks instead. A full classification still
+ * runs at least every {@code maxClassificationAgeMs}.
+ * <p>
+ * {@link #update} must always be called from the same thread.
+ */
+public class FaceTracker {
+    public static final int DEFAULT_MAX_TRACKS = 8;
+    public static final float DEFAULT_SMOOTHING = 0.3f;
+    public static final long DEFAULT_EXPIRY_MS = 700;
+    public static final int DEFAULT_STABLE_FRAMES = 5;
+    public static final long DEFAULT_MAX_CLASSIFICATION_AGE_MS = 1000;
+
+    private static final float MIN_MATCH_IOU = 0.3f;
+    // A face is still while its center moves less than this many face widths per second
+    // and its probabilities change less than the delta below between classified frames.
+    private static final float MAX_STABLE_SPEED = 0.25f;
+    private static final float MAX_STABLE_PROBABILITY_DELTA = 0.1f;
+
+    private final float smoothing;
+    private final long expiryNanos;
+    private final int stableFramesRequired;
+    private final long maxClassificationAgeNanos;
+
+    private final boolean[] active;
+    private final boolean[] matched;
+    private final int[] trackIds;
+    private final int[] detectorIds;
+    private final long[] lastSeenNanos;
+    // Bounding boxes as left, top, right, bottom per track.
+    private final float[] boxes;
+    private final float[] velocityX;
+    private final float[] velocityY;
+    private final float[] smiling;
+    private final float[] leftEyeOpen;
+    private final float[] rightEyeOpen;
+    private final int[] stableFrames;
+
+    private int nextTrackId = 1;
+    private boolean hasClassified;
+    private long lastClassifiedNanos;
+    private volatile boolean classificationSkippable;
+
+    public FaceTracker() {
+        this(DEFAULT_MAX_TRACKS, DEFAULT_SMOOTHING, DEFAULT_EXPIRY_MS, DEFAULT_STABLE_FRAMES,
+                DEFAULT_MAX_CLASSIFICATION_AGE_MS);
+    }
+
+    /**
+     * @param smoothing weight of the newest sample in the moving averages, between 0 and 1
+     */
+    public FaceTracker(int maxTracks, float smoothing, long expiryMs, int stableFramesRequired,
+                       long maxClassificationAgeMs) {
+        if (maxTracks <= 0 || smoothing <= 0f || smoothing > 1f || expiryMs <= 0) {
+            throw new IllegalArgumentException("Invalid tracker configuration.");
+        }
+        this.smoothing = smoothing;
+        this.expiryNanos = expiryMs * 1_000_000L;
+        this.stableFramesRequired = stableFramesRequired;
+        this.maxClassificationAgeNanos = maxClassificationAgeMs * 1_000_000L;
+        active = new boolean[maxTracks];
+        matched = new boolean[maxTracks];
+        trackIds = new int[maxTracks];
+        detectorIds = new int[maxTracks];
+        lastSeenNanos = new long[maxTracks];
+        boxes = new float[maxTracks * 4];
+        velocityX = new float[maxTracks];
+        velocityY = new float[maxTracks];
+        smiling = new float[maxTracks];
+        leftEyeOpen = new float[maxTracks];
+        rightEyeOpen = new float[maxTracks];
+        stableFrames = new int[maxTracks];
+    }
+
+    /**
+     * Whether the next frame may be detected without classification. Safe to call from any thread.
+     */
+    public boolean canSkipClassification() {
+        return classificationSkippable;
+    }
+
+    /**
+     * Assigns the faces in {@code frame} to tracks and replaces their tracking IDs and
+     * probabilities with the tracked values.
+     *
+     * @param classified whether the detector produced probabilities for this frame
+     */
+    public void update(@NonNull FaceFrame frame, boolean classified) {
+        long now = frame.getTimestampNanos();
+        expire(now);
+        Arrays.fill(matched, false);
+        boolean allStable = frame.getFaceCount() > 0;
+        for (int face = 0, count = frame.getFaceCount(); face < count; face++) {
+            int track = match(frame, face, now);
+            if (track < 0) {
+                allStable = false;
+                track = start(frame, face, now);
+                if (track < 0) {
+                    // More faces than tracks; this one is passed through untouched.
+                    continue;
+                }
+            } else {
+                advance(track, frame, face, now, classified);
+            }
+            matched[track] = true;
+            frame.setTrackingId(face, trackIds[track]);
+            frame.setProbabilities(face, smiling[track], leftEyeOpen[track], rightEyeOpen[track]);
+            if (stableFrames[track] < stableFramesRequired) {
+                allStable = false;
+            }
+        }
+        if (classified) {
+            hasClassified = true;
+            lastClassifiedNanos = now;
+        }
+        classificationSkippable = allStable && hasClassified && now - lastClassifiedNanos < maxClassificationAgeNanos;
+    }
+
+    public int getActiveTrackCount() {
+        int count = 0;
+        for (boolean isActive : active) {
+            if (isActive) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void reset() {
+        Arrays.fill(active, false);
+        hasClassified = false;
+        classificationSkippable = false;
+    }
+
+    private void expire(long now) {
+        for (int track = 0; track < active.length; track++) {
+            if (active[track] && now - lastSeenNanos[track] > expiryNanos) {
+                active[track] = false;
+            }
+        }
+    }
+
+    private int match(@NonNull FaceFrame frame, int face, long now) {
+        int detectorId = frame.getTrackingId(face);
+        int best = -1;
+        float bestIou = MIN_MATCH_IOU;
+        for (int track = 0; track < active.length; track++) {
+            if (!active[track] || matched[track]) {
+                continue;
+            }
+            float iou = predictedIou(track, frame, face, now);
+            // IDs are only unique per detector instance, so an equal ID must also overlap.
+            if (detectorId != FaceFrame.NO_TRACKING_ID && detectorIds[track] == detectorId && iou > 0f) {
+                return track;
+            }
+            if (iou >= bestIou) {
+                bestIou = iou;
+                best = track;
+            }
+        }
+        return best;
+    }
+
+    private float predictedIou(int track, @NonNull FaceFrame frame, int face, long now) {
+        float seconds = (now - lastSeenNanos[track]) / 1e9f;
+        float dx = velocityX[track] * seconds;
+        float dy = velocityY[track] * seconds;
+        int offset = track * 4;
+        float left = Math.max(boxes[offset] + dx, frame.getLeft(face));
+        float top = Math.max(boxes[offset + 1] + dy, frame.getTop(face));
+        float right = Math.min(boxes[offset + 2] + dx, frame.getRight(face));
+        float bottom = Math.min(boxes[offset + 3] + dy, frame.getBottom(face));
+        if (right <= left || bottom <= top) {
+            return 0f;
+        }
+        float intersection = (right - left) * (bottom - top);
+        float trackArea = (boxes[offset + 2] - boxes[offset]) * (boxes[offset + 3] - boxes[offset + 1]);
+        float faceArea = (frame.getRight(face) - frame.getLeft(face)) * (frame.getBottom(face) - frame.getTop(face));
+        return intersection / (trackArea + faceArea - intersection);
+    }
+
+    private int start(@NonNull FaceFrame frame, int face, long now) {
+        int track = -1;
+        for (int candidate = 0; candidate < active.length; candidate++) {
+            if (!active[candidate]) {
+                track = candidate;
+                break;
+            }
+            // Otherwise replace the track that has gone unseen the longest.
+            if (!matched[candidate] && (track < 0 || lastSeenNanos[candidate] < lastSeenNanos[track])) {
+                track = candidate;
+            }
+        }
+        if (track < 0) {
+            return -1;
+        }
+        active[track] = true;
+        trackIds[track] = nextTrackId++;
+        detectorIds[track] = frame.getTrackingId(face);
+        lastSeenNanos[track] = now;
+        storeBox(track, frame, face);
+        velocityX[track] = 0f;
+        velocityY[track] = 0f;
+        smiling[track] = frame.getSmilingProbability(face);
+        leftEyeOpen[track] = frame.getLeftEyeOpenProbability(face);
+        rightEyeOpen[track] = frame.getRightEyeOpenProbability(face);
+        stableFrames[track] = 0;
+        return track;
+    }
+
+    private void advance(int track, @NonNull FaceFrame frame, int face, long now, boolean classified) {
+        int offset = track * 4;
+        float seconds = (now - lastSeenNanos[track]) / 1e9f;
+        if (seconds > 0f) {
+            float previousX = (boxes[offset] + boxes[offset + 2]) * 0.5f;
+            float previousY = (boxes[offset + 1] + boxes[offset + 3]) * 0.5f;
+            float x = (frame.getLeft(face) + frame.getRight(face)) * 0.5f;
+            float y = (frame.getTop(face) + frame.getBottom(face)) * 0.5f;
+            velocityX[track] += smoothing * ((x - previousX) / seconds - velocityX[track]);
+            velocityY[track] += smoothing * ((y - previousY) / seconds - velocityY[track]);
+        }
+        detectorIds[track] = frame.getTrackingId(face);
+        lastSeenNanos[track] = now;
+        storeBox(track, frame, face);
+
+        float change = 0f;
+        if (classified) {
+            change = Math.max(change, smooth(smiling, track, frame.getSmilingProbability(face)));
+            change = Math.max(change, smooth(leftEyeOpen, track, frame.getLeftEyeOpenProbability(face)));
+            change = Math.max(change, smooth(rightEyeOpen, track, frame.getRightEyeOpenProbability(face)));
+        }
+        float width = Math.max(1f, boxes[offset + 2] - boxes[offset]);
+        float speed = (float) Math.hypot(velocityX[track], velocityY[track]) / width;
+        boolean stable = smiling[track] != FaceFrame.UNKNOWN_PROBABILITY
+                && speed < MAX_STABLE_SPEED
+                && change < MAX_STABLE_PROBABILITY_DELTA;
+        stableFrames[track] = stable ? stableFrames[track] + 1 : 0;
+    }
+
+    /**
+     * Folds {@code sample} into {@code averages[track]} and returns how far it was from the old average.
+     */
+    private float smooth(@NonNull float[] averages, int track, float sample) {
+        if (sample == FaceFrame.UNKNOWN_PROBABILITY) {
+            return 0f;
+        }
+        float average = averages[track];
+        if (average == FaceFrame.UNKNOWN_PROBABILITY) {
+            averages[track] = sample;
+            return 1f;
+        }
+        averages[track] = average + smoothing * (sample - average);
+        return Math.abs(sample - average);
+    }
+
+    private void storeBox(int track, @NonNull FaceFrame frame, int face) {
+        int offset = track * 4;
+        boxes[offset] = frame.getLeft(face);
+        boxes[offset + 1] = frame.getTop(face);
+        boxes[offset + 2] = frame.getRight(face);
+        boxes[offset + 3] = frame.getBottom(face);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.feeloscope.services;
+
+/**
+ * Where a detector input lies within the camera frame it was cut from.
+ * <p>
+ * Crops are given in buffer coordinates, while detector results are reported upright, i.e. after
+ * applying the rotation. Since a rotation only flips and swaps axes, mapping a result from the
+ * crop back to the full frame is a plain translation by {@link #getOffsetX()} and
+ * {@link #getOffsetY()}.
+ */
+public final class FrameRegion {
+    private final int frameWidth;
+    private final int frameHeight;
+    private final float offsetX;
+    private final float offsetY;
+    private final boolean cropped;
+
+    private FrameRegion(int frameWidth, int frameHeight, float offsetX, float offsetY, boolean cropped) {
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.cropped = cropped;
+    }
+
+    public static FrameRegion full(int frameWidth, int frameHeight) {
+        return new FrameRegion(frameWidth, frameHeight, 0f, 0f, false);
+    }
+
+    /**
+     * A crop of {@code width} x {@code height} buffer pixels at ({@code left}, {@code top}) of a
+     * {@code frameWidth} x {@code frameHeight} buffer that is displayed rotated by {@code rotationDegrees}.
+     */
+    public static FrameRegion crop(int left, int top, int width, int height,
+                                   int frameWidth, int frameHeight, int rotationDegrees) {
+        float offsetX;
+        float offsetY;
+        switch (rotationDegrees) {
+            case 90:
+                offsetX = frameHeight - top - height;
+                offsetY = left;
+                break;
+            case 180:
+                offsetX = frameWidth - left - width;
+                offsetY = frameHeight - top - height;
+                break;
+            case 270:
+                offsetX = top;
+                offsetY = frameWidth - left - width;
+                break;
+            default:
+                offsetX = left;
+                offsetY = top;
+                break;
+        }
+        return new FrameRegion(frameWidth, frameHeight, offsetX, offsetY, true);
+    }
+
+    /**
+     * Width of the full frame buffer, before rotation.
+     */
+    public int getFrameWidth() {
+        return frameWidth;
+    }
+
+    /**
+     * Height of the full frame buffer, before rotation.
+     */
+    public int getFrameHeight() {
+        return frameHeight;
+    }
+
+    public float getOffsetX() {
+        return offsetX;
+    }
+
+    public float getOffsetY() {
+        return offsetY;
+    }
+
+    public boolean isCropped() {
+        return cropped;
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.feeloscope.services;
+
+import android.os.PowerManager;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decides which live camera frames need to go through the detector at all.
+ * <p>
+ * Each frame's luma plane is reduced to a small thumbnail and compared with the thumbnail of the
+ * last analyzed frame. Frames in which no part of the thumbnail changed noticeably are skipped,
+ * and the previous result stays on screen. A skipped streak never lasts longer than
+ * {@link #DEFAULT_MAX_SKIP_MS}, which is below {@link FaceTracker#DEFAULT_EXPIRY_MS}, so tracks
+ * survive still scenes and the displayed state cannot go stale.
+ * <p>
+ * Independently, the analysis rate is capped according to the device's thermal status.
+ */
+public class FrameScheduler {
+    public static final int THUMBNAIL_WIDTH = 32;
+    public static final int THUMBNAIL_HEIGHT = 24;
+    // Luma levels a thumbnail cell has to change by; well above sensor noise on averaged samples.
+    public static final int DEFAULT_CELL_THRESHOLD = 12;
+    // A single changed cell is usually noise or a flickering light.
+    public static final int DEFAULT_MIN_CHANGED_CELLS = 2;
+    public static final long DEFAULT_MAX_SKIP_MS = 500;
+
+    public enum Decision {
+        ANALYZE,
+        /** The content did not change since the last analyzed frame. */
+        UNCHANGED,
+        /** The frame came sooner than the thermal rate cap allows. */
+        THROTTLED
+    }
+
+    private final int cellThreshold;
+    private final int minChangedCells;
+    private final long maxSkipNanos;
+    private final int[] reference = new int[THUMBNAIL_WIDTH * THUMBNAIL_HEIGHT];
+    private final int[] current = new int[THUMBNAIL_WIDTH * THUMBNAIL_HEIGHT];
+    private volatile boolean hasReference;
+    private long lastAnalyzedNanos;
+    private volatile long minIntervalNanos;
+
+    public FrameScheduler() {
+        this(DEFAULT_CELL_THRESHOLD, DEFAULT_MIN_CHANGED_CELLS, DEFAULT_MAX_SKIP_MS);
+    }
+
+    public FrameScheduler(int cellThreshold, int minChangedCells, long maxSkipMs) {
+        if (cellThreshold <= 0 || minChangedCells <= 0 || maxSkipMs <= 0) {
+            throw new IllegalArgumentException("Thresholds and maximum skip time must be positive.");
+        }
+        this.cellThreshold = cellThreshold;
+        this.minChangedCells = minChangedCells;
+        this.maxSkipNanos = maxSkipMs * 1_000_000L;
+    }
+
+    /**
+     * Caps the analysis rate for a {@link PowerManager} {@code THERMAL_STATUS_*} value. Below
+     * moderate throttling, every frame may be analyzed.
+     */
+    public void setThermalStatus(int status) {
+        minIntervalNanos = 1_000_000_000L / maxRateForThermalStatus(status);
+    }
+
+    /**
+     * Highest analysis rate in frames per second allowed at a thermal status.
+     */
+    static int maxRateForThermalStatus(int status) {
+        if (status >= PowerManager.THERMAL_STATUS_CRITICAL) {
+            return 2;
+        } else if (status == PowerManager.THERMAL_STATUS_SEVERE) {
+            return 5;
+        } else if (status == PowerManager.THERMAL_STATUS_MODERATE) {
+            return 10;
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Looks at the luma plane of a frame and decides whether to analyze it. A frame decided
+     * {@link Decision#ANALYZE} becomes the reference for the following ones.
+     */
+    @NonNull
+    public Decision decide(@NonNull ByteBuffer yPlane, int rowStride, int pixelStride, int width, int height,
+                           long timestampNanos) {
+        long sinceAnalyzed = timestampNanos - lastAnalyzedNanos;
+        if (hasReference && sinceAnalyzed >= 0 && sinceAnalyzed < minIntervalNanos) {
+            return Decision.THROTTLED;
+        }
+        sample(yPlane, rowStride, pixelStride, width, height);
+        if (hasReference && sinceAnalyzed >= 0 && sinceAnalyzed < maxSkipNanos && !changed()) {
+            return Decision.UNCHANGED;
+        }
+        System.arraycopy(current, 0, reference, 0, current.length);
+        hasReference = true;
+        lastAnalyzedNanos = timestampNanos;
+        return Decision.ANALYZE;
+    }
+
+    /**
+     * Makes the next frame be analyzed regardless of its content, e.g. after the camera switched.
+     */
+    public void reset() {
+        hasReference = false;
+    }
+
+    private boolean changed() {
+        int changedCells = 0;
+        for (int i = 0; i < current.length; i++) {
+            if (Math.abs(current[i] - reference[i]) >= cellThreshold && ++changedCells >= minChangedCells) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Averages a 2x2 block at the center of every thumbnail cell, which evens out most sensor noise.
+     */
+    private void sample(@NonNull ByteBuffer yPlane, int rowStride, int pixelStride, int width, int height) {
+        int index = 0;
+        for (int cellY = 0; cellY < THUMBNAIL_HEIGHT; cellY++) {
+            int y = Math.min(height - 2, (2 * cellY + 1) * height / (2 * THUMBNAIL_HEIGHT));
+            int row = y * rowStride;
+            for (int cellX = 0; cellX < THUMBNAIL_WIDTH; cellX++) {
+                int x = Math.min(width - 2, (2 * cellX + 1) * width / (2 * THUMBNAIL_WIDTH));
+                int offset = row + x * pixelStride;
+                current[index++] = ((yPlane.get(offset) & 0xFF) + (yPlane.get(offset + pixelStride) & 0xFF)
+                        + (yPlane.get(offset + rowStride) & 0xFF)
+                        + (yPlane.get(offset + rowStride + pixelStride) & 0xFF)) >> 2;
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.feeloscope.services;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Decides which part of the next camera frame needs to go through the detector.
+ * <p>
+ * After a full-frame keyframe, the following frames are cropped to the padded union of the
+ * faces found last, so the detector only sees a fraction of the pixels. A new keyframe is
+ * requested periodically to pick up faces entering the scene, as soon as a face is lost, and
+ * whenever the crop would cover most of the frame anyway.
+ */
+public class RoiPlanner {
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 10;
+    public static final float DEFAULT_PADDING = 0.5f;
+    public static final float DEFAULT_MAX_CROP_AREA_RATIO = 0.5f;
+    // Below this the detector input gets too small to find a face reliably.
+    private static final int MIN_CROP_SIZE = 96;
+
+    private final int keyframeInterval;
+    private final float padding;
+    private final float maxCropAreaRatio;
+
+    private int framesSinceKeyframe;
+    private int expectedFaceCount;
+    private boolean keyframeRequested = true;
+    // Upright union of the last faces, in full-frame coordinates.
+    private float left;
+    private float top;
+    private float right;
+    private float bottom;
+    private int frameWidth;
+    private int frameHeight;
+    private int rotationDegrees;
+
+    public RoiPlanner() {
+        this(DEFAULT_KEYFRAME_INTERVAL, DEFAULT_PADDING, DEFAULT_MAX_CROP_AREA_RATIO);
+    }
+
+    /**
+     * @param padding margin added around the faces on every side, relative to their union's size
+     */
+    public RoiPlanner(int keyframeInterval, float padding, float maxCropAreaRatio) {
+        if (keyframeInterval <= 0 || padding < 0f || maxCropAreaRatio <= 0f) {
+            throw new IllegalArgumentException("Invalid region planner configuration.");
+        }
+        this.keyframeInterval = keyframeInterval;
+        this.padding = padding;
+        this.maxCropAreaRatio = maxCropAreaRatio;
+    }
+
+    /**
+     * Records the faces found in a frame, with bounds already mapped to full-frame coordinates.
+     */
+    public synchronized void onFrame(@NonNull FaceFrame frame, boolean cropped) {
+        int faceCount = frame.getFaceCount();
+        if (cropped) {
+            framesSinceKeyframe++;
+            if (faceCount < expectedFaceCount) {
+                keyframeRequested = true;
+            }
+        } else {
+            framesSinceKeyframe = 0;
+            expectedFaceCount = faceCount;
+            keyframeRequested = false;
+        }
+        if (faceCount == 0) {
+            keyframeRequested = true;
+            return;
+        }
+        frameWidth = frame.getImageWidth();
+        frameHeight = frame.getImageHeight();
+        rotationDegrees = frame.getRotationDegrees();
+        left = frame.getLeft(0);
+        top = frame.getTop(0);
+        right = frame.getRight(0);
+        bottom = frame.getBottom(0);
+        for (int i = 1; i < faceCount; i++) {
+            left = Math.min(left, frame.getLeft(i));
+            top = Math.min(top, frame.getTop(i));
+            right = Math.max(right, frame.getRight(i));
+            bottom = Math.max(bottom, frame.getBottom(i));
+        }
+    }
+
+    /**
+     * Plans the crop for the next frame. Returns {@code false} when the whole frame should be
+     * analyzed, otherwise fills {@code outRect} with left, top, width and height in buffer
+     * coordinates, all of them even.
+     */
+    public synchronized boolean planCrop(int bufferWidth, int bufferHeight, int rotation, @NonNull int[] outRect) {
+        if (keyframeRequested || framesSinceKeyframe + 1 >= keyframeInterval
+                || bufferWidth != frameWidth || bufferHeight != frameHeight || rotation != rotationDegrees) {
+            return false;
+        }
+        float padX = (right - left) * padding;
+        float padY = (bottom - top) * padding;
+        float uprightLeft = left - padX;
+        float uprightTop = top - padY;
+        float uprightRight = right + padX;
+        float uprightBottom = bottom + padY;
+
+        // Undo the rotation: upright coordinates back to buffer coordinates.
+        float bufferLeft;
+        float bufferTop;
+        float bufferRight;
+        float bufferBottom;
+        switch (rotation) {
+            case 90:
+                bufferLeft = uprightTop;
+                bufferRight = uprightBottom;
+                bufferTop = bufferHeight - uprightRight;
+                bufferBottom = bufferHeight - uprightLeft;
+                break;
+            case 180:
+                bufferLeft = bufferWidth - uprightRight;
+                bufferRight = bufferWidth - uprightLeft;
+                bufferTop = bufferHeight - uprightBottom;
+                bufferBottom = bufferHeight - uprightTop;
+                break;
+            case 270:
+                bufferLeft = bufferWidth - uprightBottom;
+                bufferRight = bufferWidth - uprightTop;
+                bufferTop = uprightLeft;
+                bufferBottom = uprightRight;
+                break;
+            default:
+                bufferLeft = uprightLeft;
+                bufferRight = uprightRight;
+                bufferTop = uprightTop;
+                bufferBottom = uprightBottom;
+                break;
+        }
+
+        int cropLeft = evenFloor(clamp(bufferLeft, bufferWidth));
+        int cropTop = evenFloor(clamp(bufferTop, bufferHeight));
+        int cropRight = Math.min(bufferWidth, evenCeil(clamp(bufferRight, bufferWidth)));
+        int cropBottom = Math.min(bufferHeight, evenCeil(clamp(bufferBottom, bufferHeight)));
+        int width = evenFloor(cropRight - cropLeft);
+        int height = evenFloor(cropBottom - cropTop);
+        if (width < MIN_CROP_SIZE || height < MIN_CROP_SIZE
+                || (float) width * height > maxCropAreaRatio * bufferWidth * bufferHeight) {
+            return false;
+        }
+        outRect[0] = cropLeft;
+        outRect[1] = cropTop;
+        outRect[2] = width;
+        outRect[3] = height;
+        return true;
+    }
+
+    /**
+     * Forces the next frame to be analyzed in full.
+     */
+    public synchronized void requestKeyframe() {
+        keyframeRequested = true;
+    }
+
+    private static float clamp(float value, int max) {
+        return Math.max(0f, Math.min(max, value));
+    }
+
+    private static int evenFloor(float value) {
+        return ((int) Math.floor(value)) & ~1;
+    }
+
+    private static int evenCeil(float value) {
+        int ceil = (int) Math.ceil(value);
+        return (ceil + 1) & ~1;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.feeloscope.services;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Logs the face data of every Nth frame. Skipped frames cost a single counter increment and
+ * the text of logged frames is built in a reused buffer.
+ */
+public class SampledLogDiagnostics implements FaceDiagnostics {
+    private static final String TAG = "FaceDiagnostics";
+
+    private final int sampleEvery;
+    private final StringBuilder line = new StringBuilder(256);
+    private long frameCounter;
+
+    public SampledLogDiagnostics(int sampleEvery) {
+        if (sampleEvery <= 0) {
+            throw new IllegalArgumentException("sampleEvery must be positive: " + sampleEvery);
+        }
+        this.sampleEvery = sampleEvery;
+    }
+
+    @Override
+    public synchronized void onFrame(@NonNull FaceFrame frame) {
+        if (frameCounter++ % sampleEvery != 0) {
+            return;
+        }
+        line.setLength(0);
+        line.append("frame=").append(frame.getFrameIndex())
+                .append(" faces=").append(frame.getFaceCount());
+        Log.d(TAG, line.toString());
+        for (int i = 0; i < frame.getFaceCount(); i++) {
+            line.setLength(0);
+            line.append("  #").append(i)
+                    .append(" id=").append(frame.getTrackingId(i))
+                    .append(" bounds=[").append(frame.getLeft(i)).append(',').append(frame.getTop(i))
+                    .append(',').append(frame.getRight(i)).append(',').append(frame.getBottom(i)).append(']')
+                    .append(" rotY=").append(frame.getHeadEulerAngleY(i))
+                    .append(" rotZ=").append(frame.getHeadEulerAngleZ(i))
+                    .append(" smile=").append(frame.getSmilingProbability(i))
+                    .append(" leftEye=").append(frame.getLeftEyeOpenProbability(i))
+                    .append(" rightEye=").append(frame.getRightEyeOpenProbability(i));
+            Log.d(TAG, line.toString());
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.example.feeloscope.services.cache;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.example.feeloscope.services.DetectorProfile;
+import com.example.feeloscope.services.video.VideoTimeline;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Remembers detection results across app launches, keyed by {@link ContentHasher content hash}
+ * and detector settings.
+ * <p>
+ * Entries are small binary records. Recently used ones stay in memory; all of them are written
+ * to the app's cache directory, which is trimmed least-recently-used first once it grows past its
+ * size limit. The disk index and all file access live on one background thread, and the in-memory
+ * entries have their own lock that is never held during I/O, so {@code put} never waits for the disk.
+ */
+public final class DetectionCache {
+    private static final String TAG = "DetectionCache";
+    private static final String DIRECTORY_NAME = "detection-cache";
+    private static final String FILE_SUFFIX = ".bin";
+    private static final int MAGIC = 0x46534443; // "FSDC"
+    private static final int FORMAT_VERSION = 1;
+    private static final byte TYPE_IMAGE = 1;
+    private static final byte TYPE_VIDEO = 2;
+
+    private static final int DEFAULT_MEMORY_BYTES = 1024 * 1024;
+    private static final long DEFAULT_DISK_BYTES = 8L * 1024 * 1024;
+
+    private static DetectionCache instance;
+
+    private final File directory;
+    private final int maxMemoryBytes;
+    private final long maxDiskBytes;
+    // Single-threaded; the disk index below is only touched from it.
+    private final Executor diskWriter;
+
+    // Both maps are in access order, so iteration starts at the least recently used entry.
+    private final Object memoryLock = new Object();
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private int memoryBytes;
+    private final LinkedHashMap<String, Long> diskSizes = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes;
+    private boolean diskIndexLoaded;
+
+    @NonNull
+    public static synchronized DetectionCache getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new DetectionCache(new File(context.getApplicationContext().getCacheDir(), DIRECTORY_NAME),
+                    DEFAULT_MEMORY_BYTES, DEFAULT_DISK_BYTES, Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "detection-cache");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }));
+        }
+        return instance;
+    }
+
+    @VisibleForTesting
+    DetectionCache(@NonNull File directory, int maxMemoryBytes, long maxDiskBytes, @NonNull Executor diskWriter) {
+        this.directory = directory;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        this.diskWriter = diskWriter;
+    }
+
+    @NonNull
+    public static String imageKey(long contentHash, @NonNull DetectorProfile profile, int maxDimension) {
+        return key(contentHash, "img", profile, maxDimension);
+    }
+
+    @NonNull
+    public static String videoKey(long contentHash, @NonNull DetectorProfile profile, long strideMs,
+                                  int maxFrameDimension) {
+        return key(contentHash, "vid", profile, strideMs + "-" + maxFrameDimension);
+    }
+
+    @NonNull
+    private static String key(long contentHash, @NonNull String kind, @NonNull DetectorProfile profile,
+                              @NonNull Object parameters) {
+        return Long.toHexString(contentHash) + "-" + kind + "-" + profile.name().toLowerCase(Locale.ROOT)
+                + DetectorProfile.OPTIONS_VERSION + "-" + parameters;
+    }
+
+    @WorkerThread
+    @Nullable
+    public ImageSummary getImage(@NonNull String key) {
+        DataInputStream in = open(key, TYPE_IMAGE);
+        if (in == null) {
+            return null;
+        }
+        try {
+            return new ImageSummary(in.readInt(), in.readInt(), in.readInt());
+        } catch (IOException e) {
+            remove(key);
+            return null;
+        }
+    }
+
+    public void putImage(@NonNull String key, @NonNull ImageSummary summary) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(24);
+            DataOutputStream out = header(bytes, TYPE_IMAGE);
+            out.writeInt(summary.getFaceCount());
+            out.writeInt(summary.getSmilingCount());
+            out.writeInt(summary.getEyesOpenCount());
+            put(key, bytes.toByteArray());
+        } catch (IOException e) {
+            Log.w(TAG, "Could not encode image result: " + e.getMessage());
+        }
+    }
+
+    @WorkerThread
+    @Nullable
+    public VideoTimeline getVideo(@NonNull String key) {
+        DataInputStream in = open(key, TYPE_VIDEO);
+        if (in == null) {
+            return null;
+        }
+        try {
+            return VideoTimeline.readFrom(in);
+        } catch (IOException e) {
+            remove(key);
+            return null;
+        }
+    }
+
+    public void putVideo(@NonNull String key, @NonNull VideoTimeline timeline) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + timeline.getSampleCount() * 21);
+            timeline.writeTo(header(bytes, TYPE_VIDEO));
+            put(key, bytes.toByteArray());
+        } catch (IOException e) {
+            Log.w(TAG, "Could not encode video result: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drops the in-memory entries. Entries on disk are kept.
+     */
+    public void trimMemory() {
+        synchronized (memoryLock) {
+            memory.clear();
+            memoryBytes = 0;
+        }
+    }
+
+    @NonNull
+    private static DataOutputStream header(@NonNull ByteArrayOutputStream bytes, byte type) throws IOException {
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        out.writeByte(type);
+        return out;
+    }
+
+    @Nullable
+    private DataInputStream open(@NonNull String key, byte type) {
+        byte[] record = get(key);
+        if (record == null) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        try {
+            if (in.readInt() == MAGIC && in.readByte() == FORMAT_VERSION && in.readByte() == type) {
+                return in;
+            }
+        } catch (IOException ignored) {
+            // Truncated record, dropped below.
+        }
+        remove(key);
+        return null;
+    }
+
+    @WorkerThread
+    @Nullable
+    private byte[] get(@NonNull String key) {
+        byte[] record;
+        synchronized (memoryLock) {
+            record = memory.get(key);
+        }
+        if (record != null) {
+            // Keeps the entry at the back of the disk eviction order as well.
+            diskWriter.execute(() -> {
+                loadDiskIndex();
+                diskSizes.get(key);
+            });
+            return record;
+        }
+        // Queued behind any pending write, so a record put a moment ago is found on disk.
+        FutureTask<byte[]> read = new FutureTask<>(() -> readFromDisk(key));
+        diskWriter.execute(read);
+        try {
+            record = read.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+        if (record != null) {
+            putInMemory(key, record);
+        }
+        return record;
+    }
+
+    private void put(@NonNull String key, @NonNull byte[] record) {
+        putInMemory(key, record);
+        diskWriter.execute(() -> writeToDisk(key, record));
+    }
+
+    private void remove(@NonNull String key) {
+        synchronized (memoryLock) {
+            byte[] previous = memory.remove(key);
+            if (previous != null) {
+                memoryBytes -= previous.length;
+            }
+        }
+        diskWriter.execute(() -> removeFromDisk(key));
+    }
+
+    private void putInMemory(@NonNull String key, @NonNull byte[] record) {
+        if (record.length > maxMemoryBytes) {
+            return;
+        }
+        synchronized (memoryLock) {
+            byte[] previous = memory.put(key, record);
+            memoryBytes += record.length - (previous != null ? previous.length : 0);
+            Iterator<byte[]> eldest = memory.values().iterator();
+            while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+                memoryBytes -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    @WorkerThread
+    @Nullable
+    private byte[] readFromDisk(@NonNull String key) {
+        loadDiskIndex();
+        // Looking the key up also moves it to the back of the disk eviction order.
+        if (diskSizes.get(key) == null) {
+            return null;
+        }
+        File file = fileFor(key);
+        byte[] record;
+        try {
+            record = readFile(file);
+        } catch (IOException e) {
+            removeFromDisk(key);
+            return null;
+        }
+        // Touch the file so the least recently used order survives a restart.
+        file.setLastModified(System.currentTimeMillis());
+        return record;
+    }
+
+    @WorkerThread
+    private void writeToDisk(@NonNull String key, @NonNull byte[] record) {
+        if (record.length > maxDiskBytes) {
+            return;
+        }
+        loadDiskIndex();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Could not create " + directory);
+            return;
+        }
+        // Write to a temporary file first so a crash never leaves a half-written record behind.
+        File temp = new File(directory, key + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(record);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write cache entry: " + e.getMessage());
+            temp.delete();
+            return;
+        }
+        File file = fileFor(key);
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+        Long previous = diskSizes.put(key, (long) record.length);
+        diskBytes += record.length - (previous != null ? previous : 0L);
+        trimDisk();
+    }
+
+    private void trimDisk() {
+        Iterator<Map.Entry<String, Long>> eldest = diskSizes.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            fileFor(entry.getKey()).delete();
+            diskBytes -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    @WorkerThread
+    private void removeFromDisk(@NonNull String key) {
+        Long size = diskSizes.remove(key);
+        if (size != null) {
+            diskBytes -= size;
+        }
+        fileFor(key).delete();
+    }
+
+    private void loadDiskIndex() {
+        if (diskIndexLoaded) {
+            return;
+        }
+        diskIndexLoaded = true;
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(FILE_SUFFIX)) {
+                // Leftover from an interrupted write.
+                file.delete();
+                continue;
+            }
+            diskSizes.put(name.substring(0, name.length() - FILE_SUFFIX.length()), file.length());
+            diskBytes += file.length();
+        }
+        trimDisk();
+    }
+
+    @NonNull
+    private static byte[] readFile(@NonNull File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            byte[] record = new byte[(int) file.length()];
+            in.readFully(record);
+            return record;
+        }
+    }
+
+    @NonNull
+    private File fileFor(@NonNull String key) {
+        return new File(directory, key + FILE_SUFFIX);
+    }
+}
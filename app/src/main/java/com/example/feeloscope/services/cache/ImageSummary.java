@@ -0,0 +1,40 @@
+package com.example.feeloscope.services.cache;
+
+import androidx.annotation.NonNull;
+
+import com.example.feeloscope.services.FaceCounts;
+import com.google.mlkit.vision.face.Face;
+
+import java.util.List;
+
+/**
+ * Cached outcome of analyzing a still image.
+ */
+public final class ImageSummary {
+    private final int faceCount;
+    private final int smilingCount;
+    private final int eyesOpenCount;
+
+    public ImageSummary(int faceCount, int smilingCount, int eyesOpenCount) {
+        this.faceCount = faceCount;
+        this.smilingCount = smilingCount;
+        this.eyesOpenCount = eyesOpenCount;
+    }
+
+    @NonNull
+    public static ImageSummary of(@NonNull List<Face> faces) {
+        return new ImageSummary(faces.size(), FaceCounts.smiling(faces), FaceCounts.eyesOpen(faces));
+    }
+
+    public int getFaceCount() {
+        return faceCount;
+    }
+
+    public int getSmilingCount() {
+        return smilingCount;
+    }
+
+    public int getEyesOpenCount() {
+        return eyesOpenCount;
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.feeloscope.services.camera;
+
+import android.hardware.camera2.CaptureRequest;
+import android.util.Range;
+import android.util.Size;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.OptIn;
+import androidx.camera.camera2.interop.Camera2Interop;
+import androidx.camera.camera2.interop.ExperimentalCamera2Interop;
+import androidx.camera.core.CameraInfo;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.resolutionselector.AspectRatioStrategy;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Picks the analysis stream's size and frame rate. The preview keeps its own, display-sized stream.
+ * <p>
+ * The detector needs a face to cover about {@link #MIN_FACE_PIXELS} pixels to find its landmarks
+ * and classify it reliably, and gains nothing from more. So the analysis stream is the smallest
+ * one whose short side still gives the smallest expected face that many pixels; the expected face
+ * size comes from a {@link ResolutionCalibrator} run, or {@link #DEFAULT_FACE_FRACTION} before one.
+ * <p>
+ * The frame rate is capped at {@link #MAX_FPS}, as analysis keeps up with about half of that
+ * anyway. Down to {@link #MIN_FPS}, auto exposure may lengthen exposures in dim scenes.
+ */
+public final class AnalysisResolutionSelector {
+    public static final int MIN_FACE_PIXELS = 100;
+    // A face at arm's length with the back camera, relative to the frame's short side.
+    public static final float DEFAULT_FACE_FRACTION = 0.2f;
+    public static final int MIN_SHORT_SIDE = 240;
+    public static final int MAX_SHORT_SIDE = 1080;
+    public static final int MAX_FPS = 30;
+    public static final int MIN_FPS = 10;
+
+    private AnalysisResolutionSelector() {
+    }
+
+    /**
+     * The short side at which a face covering {@code faceFraction} of the short side still has
+     * {@link #MIN_FACE_PIXELS} pixels, clamped to {@link #MIN_SHORT_SIDE}..{@link #MAX_SHORT_SIDE}.
+     */
+    public static int requiredShortSide(float faceFraction) {
+        if (!(faceFraction > 0f)) {
+            return MAX_SHORT_SIDE;
+        }
+        int shortSide = (int) Math.ceil(MIN_FACE_PIXELS / faceFraction);
+        return Math.max(MIN_SHORT_SIDE, Math.min(MAX_SHORT_SIDE, shortSide));
+    }
+
+    /**
+     * Orders candidate sizes by preference: those with a short side of at least
+     * {@code minShortSide}, smallest first, then the rest, largest first. Returns indices into the arrays.
+     */
+    @NonNull
+    public static int[] order(@NonNull int[] widths, @NonNull int[] heights, int minShortSide) {
+        int count = widths.length;
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        // Insertion sort; cameras report a few dozen sizes at most.
+        for (int i = 1; i < count; i++) {
+            int candidate = order[i];
+            int j = i - 1;
+            while (j >= 0 && prefer(widths, heights, minShortSide, candidate, order[j])) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = candidate;
+        }
+        return order;
+    }
+
+    private static boolean prefer(int[] widths, int[] heights, int minShortSide, int a, int b) {
+        boolean aFits = Math.min(widths[a], heights[a]) >= minShortSide;
+        boolean bFits = Math.min(widths[b], heights[b]) >= minShortSide;
+        if (aFits != bFits) {
+            return aFits;
+        }
+        long areaA = (long) widths[a] * heights[a];
+        long areaB = (long) widths[b] * heights[b];
+        return aFits ? areaA < areaB : areaA > areaB;
+    }
+
+    /**
+     * Returns the index of the frame-rate range to request, or -1 to leave it to the camera:
+     * the range with the highest upper bound up to {@link #MAX_FPS}, then the lowest lower bound
+     * not below {@link #MIN_FPS}, since longer exposures blur moving faces.
+     */
+    public static int chooseFrameRateRange(@NonNull int[] lowers, @NonNull int[] uppers) {
+        int best = -1;
+        for (int i = 0; i < lowers.length; i++) {
+            if (uppers[i] > MAX_FPS || uppers[i] < MIN_FPS) {
+                continue;
+            }
+            if (best < 0 || uppers[i] > uppers[best]
+                    || uppers[i] == uppers[best] && betterLower(lowers[i], lowers[best])) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static boolean betterLower(int candidate, int current) {
+        if ((candidate >= MIN_FPS) != (current >= MIN_FPS)) {
+            return candidate >= MIN_FPS;
+        }
+        return candidate >= MIN_FPS ? candidate < current : candidate > current;
+    }
+
+    /**
+     * Configures {@code builder} for the smallest 4:3 stream with the given short side, falling
+     * back to other aspect ratios, and for the frame-rate range chosen from {@code cameraInfo}.
+     */
+    @OptIn(markerClass = ExperimentalCamera2Interop.class)
+    public static void configure(@NonNull ImageAnalysis.Builder builder, int minShortSide,
+                                 @Nullable CameraInfo cameraInfo) {
+        builder.setResolutionSelector(new ResolutionSelector.Builder()
+                .setAspectRatioStrategy(AspectRatioStrategy.RATIO_4_3_FALLBACK_AUTO_STRATEGY)
+                .setResolutionFilter((sizes, rotationDegrees) -> {
+                    int[] widths = new int[sizes.size()];
+                    int[] heights = new int[sizes.size()];
+                    for (int i = 0; i < widths.length; i++) {
+                        widths[i] = sizes.get(i).getWidth();
+                        heights[i] = sizes.get(i).getHeight();
+                    }
+                    List<Size> ordered = new ArrayList<>(widths.length);
+                    for (int index : order(widths, heights, minShortSide)) {
+                        ordered.add(sizes.get(index));
+                    }
+                    return ordered;
+                })
+                .build());
+        Range<Integer> frameRate = cameraInfo != null ? chooseFrameRate(cameraInfo.getSupportedFrameRateRanges()) : null;
+        if (frameRate != null) {
+            new Camera2Interop.Extender<>(builder)
+                    .setCaptureRequestOption(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE, frameRate);
+        }
+    }
+
+    @Nullable
+    private static Range<Integer> chooseFrameRate(@NonNull Set<Range<Integer>> supported) {
+        List<Range<Integer>> ranges = new ArrayList<>(supported);
+        int[] lowers = new int[ranges.size()];
+        int[] uppers = new int[ranges.size()];
+        for (int i = 0; i < lowers.length; i++) {
+            lowers[i] = ranges.get(i).getLower();
+            uppers[i] = ranges.get(i).getUpper();
+        }
+        int index = chooseFrameRateRange(lowers, uppers);
+        return index >= 0 ? ranges.get(index) : null;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.feeloscope.services.camera;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.feeloscope.services.FaceFrame;
+
+import java.util.Arrays;
+
+/**
+ * Learns how large faces usually appear on this device, so the analysis stream can be as small as
+ * the {@link AnalysisResolutionSelector} allows.
+ * <p>
+ * The first time a lens is used, the smallest face of each of the first
+ * {@link #CALIBRATION_SAMPLES} frames with faces is recorded, relative to the frame's short side.
+ * A low percentile of those, with some headroom for faces moving away, decides the short side the
+ * stream needs, which is stored per lens and device model. The result is used from the next
+ * binding on, so calibration never makes the running preview stutter. A calibration without faces
+ * stores nothing and simply runs again next time.
+ * <p>
+ * Calibration only sees the faces the stream was large enough to find, so a result is not kept
+ * for good: it expires after {@link #RECALIBRATE_AFTER_SESSIONS} bindings, and a smaller stream
+ * that shows no face in most of its first {@link #MISS_CHECK_FRAMES} frames may be missing distant
+ * ones and is dropped right away. Either way, the next binding is back at the default size and
+ * calibrates again.
+ */
+public final class ResolutionCalibrator {
+    private static final String TAG = "ResolutionCalibrator";
+    private static final String PREFERENCES_NAME = "analysis_resolution";
+    private static final String KEY_DEVICE = "device";
+    private static final String KEY_SHORT_SIDE_PREFIX = "short_side_";
+    private static final String KEY_SESSIONS_PREFIX = "sessions_";
+
+    public static final int CALIBRATION_SAMPLES = 30;
+    // The smallest faces of a session matter, but not the odd tiny false positive.
+    private static final float PERCENTILE = 0.2f;
+    private static final float HEADROOM = 0.8f;
+    public static final int RECALIBRATE_AFTER_SESSIONS = 20;
+    public static final int MISS_CHECK_FRAMES = 300;
+    private static final float MAX_FACELESS_RATIO = 0.9f;
+
+    private final SharedPreferences preferences;
+    private final String device;
+
+    // Guarded by this: bindings come from the main thread, frames from the post-processing thread.
+    private final float[] samples = new float[CALIBRATION_SAMPLES];
+    private int sampleCount;
+    private int calibratingLens = -1;
+    private int checkingLens = -1;
+    private int checkedFrames;
+    private int facelessFrames;
+
+    public ResolutionCalibrator(@NonNull Context context) {
+        this.preferences = context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        this.device = Build.MANUFACTURER + " " + Build.MODEL;
+    }
+
+    /**
+     * The short side the analysis stream should have for {@code lensFacing}, from an earlier
+     * calibration on this device, or from {@link AnalysisResolutionSelector#DEFAULT_FACE_FRACTION}.
+     */
+    public int getMinShortSide(int lensFacing) {
+        int calibrated = isCalibrated(lensFacing)
+                ? preferences.getInt(KEY_SHORT_SIDE_PREFIX + lensFacing, 0) : 0;
+        return calibrated > 0 ? calibrated : defaultShortSide();
+    }
+
+    /**
+     * Starts calibrating {@code lensFacing} unless this device already has a result for it, and
+     * counts the binding towards that result's expiry. Replaces a calibration or check still
+     * running for another lens.
+     */
+    public synchronized void onCameraBound(int lensFacing) {
+        sampleCount = 0;
+        calibratingLens = -1;
+        checkingLens = -1;
+        if (!isCalibrated(lensFacing)) {
+            calibratingLens = lensFacing;
+            return;
+        }
+        // This binding already uses the stored size, so an expired result is only dropped here
+        // and recalibrated from the next, default-sized binding on.
+        int sessions = preferences.getInt(KEY_SESSIONS_PREFIX + lensFacing, 0) + 1;
+        if (sessions >= RECALIBRATE_AFTER_SESSIONS) {
+            invalidate(lensFacing, "expired after " + sessions + " sessions");
+            return;
+        }
+        preferences.edit().putInt(KEY_SESSIONS_PREFIX + lensFacing, sessions).apply();
+        if (getMinShortSide(lensFacing) < defaultShortSide()) {
+            checkingLens = lensFacing;
+            checkedFrames = 0;
+            facelessFrames = 0;
+        }
+    }
+
+    public synchronized void onFrame(@NonNull FaceFrame frame) {
+        if (checkingLens >= 0) {
+            check(frame);
+            return;
+        }
+        if (calibratingLens < 0 || frame.getFaceCount() == 0) {
+            return;
+        }
+        float shortSide = Math.min(frame.getImageWidth(), frame.getImageHeight());
+        if (shortSide <= 0f) {
+            return;
+        }
+        float smallest = Float.MAX_VALUE;
+        for (int face = 0, count = frame.getFaceCount(); face < count; face++) {
+            smallest = Math.min(smallest, frame.getRight(face) - frame.getLeft(face));
+        }
+        samples[sampleCount++] = smallest / shortSide;
+        if (sampleCount == samples.length) {
+            finish();
+        }
+    }
+
+    private void check(@NonNull FaceFrame frame) {
+        checkedFrames++;
+        if (frame.getFaceCount() == 0) {
+            facelessFrames++;
+        }
+        if (checkedFrames < MISS_CHECK_FRAMES) {
+            return;
+        }
+        if (facelessFrames >= MAX_FACELESS_RATIO * checkedFrames) {
+            invalidate(checkingLens, facelessFrames + " of " + checkedFrames + " frames without faces");
+        }
+        checkingLens = -1;
+    }
+
+    private void invalidate(int lensFacing, @NonNull String reason) {
+        preferences.edit()
+                .remove(KEY_SHORT_SIDE_PREFIX + lensFacing)
+                .remove(KEY_SESSIONS_PREFIX + lensFacing)
+                .apply();
+        Log.d(TAG, "Lens " + lensFacing + " calibration dropped: " + reason + ".");
+    }
+
+    private static int defaultShortSide() {
+        return AnalysisResolutionSelector.requiredShortSide(AnalysisResolutionSelector.DEFAULT_FACE_FRACTION);
+    }
+
+    private void finish() {
+        Arrays.sort(samples, 0, sampleCount);
+        float faceFraction = samples[(int) (PERCENTILE * (sampleCount - 1))] * HEADROOM;
+        int shortSide = AnalysisResolutionSelector.requiredShortSide(faceFraction);
+        SharedPreferences.Editor editor = preferences.edit();
+        if (!device.equals(preferences.getString(KEY_DEVICE, null))) {
+            // Restored from another device: its results do not apply here.
+            editor.clear().putString(KEY_DEVICE, device);
+        }
+        editor.putInt(KEY_SHORT_SIDE_PREFIX + calibratingLens, shortSide)
+                .putInt(KEY_SESSIONS_PREFIX + calibratingLens, 0)
+                .apply();
+        Log.d(TAG, "Lens " + calibratingLens + " calibrated: faces cover " + faceFraction
+                + " of the short side, analysis needs " + shortSide + " px.");
+        calibratingLens = -1;
+        sampleCount = 0;
+    }
+
+    private boolean isCalibrated(int lensFacing) {
+        return device.equals(preferences.getString(KEY_DEVICE, null))
+                && preferences.contains(KEY_SHORT_SIDE_PREFIX + lensFacing);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.feeloscope.services.engine;
+
+import androidx.annotation.NonNull;
+
+import com.example.feeloscope.services.DetectorProfile;
+import com.google.android.gms.tasks.Task;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * Backend that finds faces and tells whether they smile and have their eyes open.
+ * <p>
+ * Results are exchanged as ML Kit {@link Face}s, which the
+ * {@link com.example.feeloscope.services.FaceDetectionHelper} turns into frames on its
+ * post-processing thread.
+ */
+public interface FaceEngine extends Closeable {
+
+    /**
+     * Short name for logs.
+     */
+    @NonNull
+    String getName();
+
+    /**
+     * Detects and classifies the faces in {@code image} with the settings of {@code profile}.
+     */
+    @NonNull
+    Task<List<Face>> detect(@NonNull InputImage image, @NonNull DetectorProfile profile);
+
+    /**
+     * Releases the engine's resources. Calls after closing fail.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,69 @@
+package com.example.feeloscope.services.engine;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.feeloscope.services.DetectorProfile;
+import com.example.feeloscope.services.DetectorRegistry;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+
+import java.util.EnumMap;
+import java.util.List;
+
+/**
+ * ML Kit's face detector, leased from the {@link DetectorRegistry}.
+ */
+public class MlKitFaceEngine implements FaceEngine {
+    private final DetectorRegistry detectorRegistry;
+    // Leases are kept per profile so switching back and forth does not reload the model.
+    private final EnumMap<DetectorProfile, DetectorRegistry.Lease> leases = new EnumMap<>(DetectorProfile.class);
+    private boolean closed;
+
+    public MlKitFaceEngine() {
+        this.detectorRegistry = DetectorRegistry.getInstance();
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return "ML Kit";
+    }
+
+    @NonNull
+    @Override
+    public Task<List<Face>> detect(@NonNull InputImage image, @NonNull DetectorProfile profile) {
+        DetectorRegistry.Lease lease = getLease(profile);
+        if (lease == null) {
+            return Tasks.forException(new IllegalStateException("FaceDetector not initialized."));
+        }
+        return lease.process(image);
+    }
+
+    @Nullable
+    private synchronized DetectorRegistry.Lease getLease(@NonNull DetectorProfile profile) {
+        if (closed) {
+            return null;
+        }
+        DetectorRegistry.Lease lease = leases.get(profile);
+        if (lease == null) {
+            lease = detectorRegistry.acquire(profile);
+            leases.put(profile, lease);
+        }
+        return lease;
+    }
+
+    /**
+     * Hands all detectors back to the {@link DetectorRegistry}.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (DetectorRegistry.Lease lease : leases.values()) {
+            lease.close();
+        }
+        leases.clear();
+    }
+}
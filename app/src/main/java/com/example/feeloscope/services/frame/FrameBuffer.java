@@ -0,0 +1,115 @@
+package com.example.feeloscope.services.frame;
+
+import android.graphics.ImageFormat;
+import android.graphics.YuvImage;
+
+import androidx.annotation.NonNull;
+
+import com.google.mlkit.vision.common.InputImage;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A camera frame packed as NV21 into a pooled, reusable array.
+ * <p>
+ * Buffers are reference counted: whoever receives one and wants to keep it past the callback
+ * calls {@link #retain()} and later {@link #release()}. The array goes back to its
+ * {@link FrameBufferPool} once the last reference is released and must not be read afterwards.
+ */
+public final class FrameBuffer {
+    private final FrameBufferPool pool;
+    private final AtomicInteger references = new AtomicInteger();
+    private byte[] data = new byte[0];
+    private ByteBuffer wrapper = ByteBuffer.wrap(data);
+    private int width;
+    private int height;
+    private int rotationDegrees;
+    private long timestampNanos;
+
+    FrameBuffer(@NonNull FrameBufferPool pool) {
+        this.pool = pool;
+    }
+
+    void prepare(int width, int height, int rotationDegrees, long timestampNanos) {
+        int size = Nv21Packer.packedSize(width, height);
+        if (data.length < size) {
+            data = new byte[size];
+            wrapper = ByteBuffer.wrap(data);
+        }
+        this.width = width;
+        this.height = height;
+        this.rotationDegrees = rotationDegrees;
+        this.timestampNanos = timestampNanos;
+        references.set(1);
+    }
+
+    int getCapacity() {
+        return data.length;
+    }
+
+    /**
+     * The NV21 bytes. The array may be longer than {@link #getSize()}; only that prefix is valid.
+     */
+    @NonNull
+    public byte[] getNv21() {
+        return data;
+    }
+
+    public int getSize() {
+        return Nv21Packer.packedSize(width, height);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getRotationDegrees() {
+        return rotationDegrees;
+    }
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /**
+     * Wraps the frame for ML Kit without copying it.
+     */
+    @NonNull
+    public InputImage toInputImage() {
+        wrapper.clear();
+        wrapper.limit(getSize());
+        return InputImage.fromByteBuffer(wrapper, width, height, rotationDegrees, InputImage.IMAGE_FORMAT_NV21);
+    }
+
+    /**
+     * Wraps the frame for JPEG compression, e.g. for snapshots. Shares the pooled array.
+     */
+    @NonNull
+    public YuvImage toYuvImage() {
+        return new YuvImage(data, ImageFormat.NV21, width, height, new int[]{width, width});
+    }
+
+    @NonNull
+    public FrameBuffer retain() {
+        if (references.getAndIncrement() <= 0) {
+            references.decrementAndGet();
+            throw new IllegalStateException("Frame buffer was already released.");
+        }
+        return this;
+    }
+
+    public void release() {
+        int remaining = references.decrementAndGet();
+        if (remaining == 0) {
+            pool.recycle(this);
+        } else if (remaining < 0) {
+            references.incrementAndGet();
+            throw new IllegalStateException("Frame buffer released too often.");
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.feeloscope.services.frame;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Receives full camera frames packed as NV21, e.g. for overlays or snapshots.
+ */
+public interface FrameBufferConsumer {
+    /**
+     * Called on the analysis thread. The buffer is only valid during the call unless the
+     * consumer calls {@link FrameBuffer#retain()}, and then {@link FrameBuffer#release()} once done.
+     */
+    void onFrameBuffer(@NonNull FrameBuffer frame);
+}
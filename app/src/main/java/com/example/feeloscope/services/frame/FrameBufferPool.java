@@ -0,0 +1,65 @@
+package com.example.feeloscope.services.frame;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * A fixed number of reusable {@link FrameBuffer}s.
+ * <p>
+ * New arrays are only allocated while the pool fills up or when the frame size grows, so at a
+ * steady camera resolution no frame allocates. When every buffer is in use, {@link #acquire}
+ * returns {@code null} and the caller has to fall back or drop the frame.
+ */
+public class FrameBufferPool {
+    private final int maxBuffers;
+    private final ArrayDeque<FrameBuffer> free = new ArrayDeque<>();
+    private int created;
+
+    public FrameBufferPool(int maxBuffers) {
+        if (maxBuffers <= 0) {
+            throw new IllegalArgumentException("Pool needs at least one buffer.");
+        }
+        this.maxBuffers = maxBuffers;
+    }
+
+    /**
+     * Returns a buffer sized for a {@code width} x {@code height} frame and holding one reference,
+     * or {@code null} if all buffers are in use.
+     */
+    @Nullable
+    public FrameBuffer acquire(int width, int height, int rotationDegrees, long timestampNanos) {
+        FrameBuffer buffer = take(Nv21Packer.packedSize(width, height));
+        if (buffer != null) {
+            buffer.prepare(width, height, rotationDegrees, timestampNanos);
+        }
+        return buffer;
+    }
+
+    @Nullable
+    private synchronized FrameBuffer take(int size) {
+        // Prefer a buffer that is already large enough, so crops do not grow every array.
+        for (Iterator<FrameBuffer> it = free.iterator(); it.hasNext(); ) {
+            FrameBuffer buffer = it.next();
+            if (buffer.getCapacity() >= size) {
+                it.remove();
+                return buffer;
+            }
+        }
+        if (created < maxBuffers) {
+            created++;
+            return new FrameBuffer(this);
+        }
+        return free.pollFirst();
+    }
+
+    synchronized void recycle(@NonNull FrameBuffer buffer) {
+        free.addLast(buffer);
+    }
+
+    public synchronized int getFreeCount() {
+        return free.size() + (maxBuffers - created);
+    }
+}
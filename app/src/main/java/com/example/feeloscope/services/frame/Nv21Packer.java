@@ -0,0 +1,98 @@
+package com.example.feeloscope.services.frame;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Packs YUV_420_888 planes, or a rectangle cut out of them, into NV21 byte order
+ * (the full-resolution Y plane followed by interleaved V/U samples).
+ * <p>
+ * Row and pixel strides are honored. Rows are copied in bulk wherever the layout allows it: the
+ * luma plane whenever its pixel stride is 1, and the chroma planes when the camera already
+ * stores them interleaved in NV21 order, which most devices do.
+ * <p>
+ * The class only works on plain {@link ByteBuffer}s so it runs, and can be benchmarked, on the JVM.
+ */
+public final class Nv21Packer {
+
+    private Nv21Packer() {
+    }
+
+    public static int packedSize(int width, int height) {
+        return width * height * 3 / 2;
+    }
+
+    /**
+     * Packs the rectangle at ({@code left}, {@code top}) of the given planes into {@code out}. All
+     * coordinates and sizes must be even, because chroma is sampled once per 2x2 pixel block.
+     */
+    public static void pack(@NonNull ByteBuffer yPlane, int yRowStride, int yPixelStride,
+                            @NonNull ByteBuffer uPlane, @NonNull ByteBuffer vPlane, int uvRowStride, int uvPixelStride,
+                            int left, int top, int width, int height, @NonNull byte[] out) {
+        if (((left | top | width | height) & 1) != 0 || left < 0 || top < 0) {
+            throw new IllegalArgumentException("Region must have even, non-negative coordinates and sizes.");
+        }
+        if (out.length < packedSize(width, height)) {
+            throw new IllegalArgumentException("Output holds " + out.length + " bytes, "
+                    + packedSize(width, height) + " needed.");
+        }
+        int outIndex = 0;
+        int yPosition = yPlane.position();
+        for (int row = 0; row < height; row++) {
+            int rowStart = (top + row) * yRowStride + left * yPixelStride;
+            if (yPixelStride == 1) {
+                yPlane.position(rowStart);
+                yPlane.get(out, outIndex, width);
+                outIndex += width;
+            } else {
+                for (int col = 0; col < width; col++) {
+                    out[outIndex++] = yPlane.get(rowStart + col * yPixelStride);
+                }
+            }
+        }
+        yPlane.position(yPosition);
+
+        int chromaLeft = left / 2;
+        int chromaTop = top / 2;
+        int chromaWidth = width / 2;
+        int chromaHeight = height / 2;
+        boolean interleaved = uvPixelStride == 2 && isNv21Interleaved(uPlane, vPlane);
+        int vPosition = vPlane.position();
+        for (int row = 0; row < chromaHeight; row++) {
+            int rowStart = (chromaTop + row) * uvRowStride + chromaLeft * uvPixelStride;
+            if (interleaved && chromaWidth > 0) {
+                // The V plane already reads V, U, V, U, ...; its last U sample lies past its end.
+                int length = chromaWidth * 2 - 1;
+                vPlane.position(rowStart);
+                vPlane.get(out, outIndex, length);
+                out[outIndex + length] = uPlane.get(rowStart + length - 1);
+                outIndex += length + 1;
+            } else {
+                for (int col = 0; col < chromaWidth; col++) {
+                    int index = rowStart + col * uvPixelStride;
+                    out[outIndex++] = vPlane.get(index);
+                    out[outIndex++] = uPlane.get(index);
+                }
+            }
+        }
+        vPlane.position(vPosition);
+    }
+
+    /**
+     * Whether the U plane starts one byte after the V plane in the same memory, i.e. the planes
+     * together form an NV21 chroma block. Checked by briefly flipping a byte through the V plane.
+     */
+    static boolean isNv21Interleaved(@NonNull ByteBuffer uPlane, @NonNull ByteBuffer vPlane) {
+        if (vPlane.isReadOnly() || vPlane.capacity() < 2 || uPlane.capacity() < 1) {
+            return false;
+        }
+        byte saved = vPlane.get(1);
+        byte probe = (byte) ~saved;
+        vPlane.put(1, probe);
+        boolean followsWrite = uPlane.get(0) == probe;
+        vPlane.put(1, saved);
+        // Checking both values rules out a U sample that happened to equal the probe.
+        return followsWrite && uPlane.get(0) == saved;
+    }
+}
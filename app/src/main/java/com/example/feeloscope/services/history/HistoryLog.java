@@ -0,0 +1,452 @@
+package com.example.feeloscope.services.history;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.example.feeloscope.services.FaceFrame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Append-only log of per-face detection results, the detection history of K-03.
+ * <p>
+ * Every face of every analyzed frame becomes one fixed-size record. Records are collected in
+ * memory blocks that a background thread appends to the current segment file, so {@link #append}
+ * only copies a few bytes on the caller's thread. Segments are rotated once they hold
+ * {@code segmentRecords} records, and the oldest ones are deleted beyond {@code maxSegments}.
+ * Records are in timestamp order, so a sparse index holding every {@link #INDEX_STRIDE}th
+ * timestamp of a segment is enough to find the start of a time range; {@link #summarize} then
+ * scans the memory-mapped records from there.
+ */
+public final class HistoryLog {
+    private static final String TAG = "HistoryLog";
+    private static final String DIRECTORY_NAME = "history";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int MAGIC = 0x4653484C; // "FSHL"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+
+    // timestamp (8), tracking id (4), smile, left eye, right eye, states (1 each), bounds (4 x 2)
+    static final int RECORD_BYTES = 24;
+    static final int INDEX_STRIDE = 256;
+    static final int PROBABILITY_SCALE = 250;
+    static final int UNKNOWN_PROBABILITY = 0xFF;
+    // The states byte holds the smiling state in bits 0-1 and the eyes-open state in bits 2-3.
+    static final int EYES_OPEN_STATE_SHIFT = 2;
+    static final int STATE_MASK = 0x3;
+    private static final int BOUNDS_SCALE = 0xFFFF;
+    // Blocks queued for the writer; beyond that the disk cannot keep up and records are dropped.
+    private static final int MAX_BLOCKS = 4;
+
+    // About 1.5 MB, or 18 minutes of two faces at 30 fps.
+    public static final int DEFAULT_SEGMENT_RECORDS = 1 << 16;
+    public static final int DEFAULT_MAX_SEGMENTS = 32;
+    public static final int DEFAULT_BLOCK_RECORDS = 1024;
+
+    private static HistoryLog instance;
+
+    private final File directory;
+    private final int segmentRecords;
+    private final int maxSegments;
+    private final int blockRecords;
+    private final Executor writer;
+
+    // Guarded by this.
+    private final ArrayDeque<ByteBuffer> freeBlocks = new ArrayDeque<>();
+    private final ArrayDeque<ByteBuffer> queuedBlocks = new ArrayDeque<>();
+    @Nullable
+    private ByteBuffer pending;
+    private int allocatedBlocks;
+    private long lastTimestampMillis;
+    private long droppedRecords;
+
+    // Guarded by segments; held while writing and summarizing.
+    private final List<Segment> segments = new ArrayList<>();
+    private boolean segmentsLoaded;
+    @Nullable
+    private FileChannel tailChannel;
+
+    @NonNull
+    public static synchronized HistoryLog getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new HistoryLog(new File(context.getApplicationContext().getFilesDir(), DIRECTORY_NAME),
+                    DEFAULT_SEGMENT_RECORDS, DEFAULT_MAX_SEGMENTS, DEFAULT_BLOCK_RECORDS,
+                    Executors.newSingleThreadExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "history-log");
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    }));
+        }
+        return instance;
+    }
+
+    @VisibleForTesting
+    HistoryLog(@NonNull File directory, int segmentRecords, int maxSegments, int blockRecords,
+               @NonNull Executor writer) {
+        if (segmentRecords < INDEX_STRIDE || maxSegments <= 0 || blockRecords <= 0) {
+            throw new IllegalArgumentException("Segments must hold at least one index stride, limits must be positive.");
+        }
+        this.directory = directory;
+        this.segmentRecords = segmentRecords;
+        this.maxSegments = maxSegments;
+        this.blockRecords = blockRecords;
+        this.writer = writer;
+    }
+
+    /**
+     * Records every face of {@code frame}. Timestamps are wall-clock milliseconds; a clock that
+     * steps back is clamped to the last appended timestamp so the log stays ordered.
+     */
+    public synchronized void append(@NonNull FaceFrame frame, long timestampMillis) {
+        int faceCount = frame.getFaceCount();
+        if (faceCount == 0) {
+            return;
+        }
+        timestampMillis = Math.max(timestampMillis, lastTimestampMillis);
+        lastTimestampMillis = timestampMillis;
+        boolean rotated = frame.getRotationDegrees() % 180 != 0;
+        float width = rotated ? frame.getImageHeight() : frame.getImageWidth();
+        float height = rotated ? frame.getImageWidth() : frame.getImageHeight();
+        for (int i = 0; i < faceCount; i++) {
+            ByteBuffer block = pendingBlock();
+            if (block == null) {
+                droppedRecords += faceCount - i;
+                return;
+            }
+            block.putLong(timestampMillis);
+            block.putInt(frame.getTrackingId(i));
+            block.put(quantizeProbability(frame.getSmilingProbability(i)));
+            block.put(quantizeProbability(frame.getLeftEyeOpenProbability(i)));
+            block.put(quantizeProbability(frame.getRightEyeOpenProbability(i)));
+            block.put((byte) (frame.getSmilingState(i) | frame.getEyesOpenState(i) << EYES_OPEN_STATE_SHIFT));
+            block.putShort(quantizeCoordinate(frame.getLeft(i), width));
+            block.putShort(quantizeCoordinate(frame.getTop(i), height));
+            block.putShort(quantizeCoordinate(frame.getRight(i), width));
+            block.putShort(quantizeCoordinate(frame.getBottom(i), height));
+            if (!block.hasRemaining()) {
+                queue(block);
+            }
+        }
+    }
+
+    /**
+     * Hands the records collected so far to the writer without waiting for a full block.
+     */
+    public synchronized void flush() {
+        if (pending != null && pending.position() > 0) {
+            queue(pending);
+        }
+    }
+
+    /**
+     * Records lost because the writer fell more than a few blocks behind.
+     */
+    public synchronized long getDroppedRecordCount() {
+        return droppedRecords;
+    }
+
+    /**
+     * Aggregates the faces recorded in [{@code fromMillis}, {@code toMillis}) into windows of
+     * {@code windowMillis}. Records not yet written to disk are included.
+     */
+    @WorkerThread
+    @NonNull
+    public HistorySummary summarize(long fromMillis, long toMillis, long windowMillis) {
+        HistorySummary summary = new HistorySummary(fromMillis, toMillis, windowMillis);
+        synchronized (segments) {
+            try {
+                loadSegments();
+                for (Segment segment : segments) {
+                    if (segment.recordCount > 0 && segment.lastTimestampMillis >= fromMillis
+                            && segment.firstTimestampMillis() < toMillis) {
+                        scan(segment, fromMillis, toMillis, summary);
+                    }
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Could not read history: " + e.getMessage());
+            }
+            // The writer holds the segment lock until a block is on disk, so nothing is counted twice.
+            for (ByteBuffer block : unwrittenBlocks()) {
+                summary.addAll(block, fromMillis, toMillis);
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Writes what is left and closes the current segment.
+     */
+    public void close() {
+        flush();
+        writer.execute(() -> {
+            synchronized (segments) {
+                closeTail();
+            }
+        });
+    }
+
+    static byte quantizeProbability(float probability) {
+        if (probability < 0f) {
+            return (byte) UNKNOWN_PROBABILITY;
+        }
+        return (byte) Math.round(Math.min(probability, 1f) * PROBABILITY_SCALE);
+    }
+
+    static short quantizeCoordinate(float value, float extent) {
+        if (extent <= 0f) {
+            return 0;
+        }
+        return (short) Math.round(Math.max(0f, Math.min(1f, value / extent)) * BOUNDS_SCALE);
+    }
+
+    @Nullable
+    private ByteBuffer pendingBlock() {
+        if (pending == null) {
+            pending = freeBlocks.poll();
+            if (pending == null && allocatedBlocks < MAX_BLOCKS) {
+                pending = ByteBuffer.allocate(blockRecords * RECORD_BYTES);
+                allocatedBlocks++;
+            }
+        }
+        return pending;
+    }
+
+    private void queue(@NonNull ByteBuffer block) {
+        pending = null;
+        block.flip();
+        queuedBlocks.add(block);
+        writer.execute(() -> write(block));
+    }
+
+    @NonNull
+    private synchronized List<ByteBuffer> unwrittenBlocks() {
+        List<ByteBuffer> blocks = new ArrayList<>(queuedBlocks.size() + 1);
+        for (ByteBuffer block : queuedBlocks) {
+            blocks.add(block.duplicate());
+        }
+        if (pending != null) {
+            ByteBuffer filled = pending.duplicate();
+            filled.flip();
+            blocks.add(filled);
+        }
+        return blocks;
+    }
+
+    @WorkerThread
+    private void write(@NonNull ByteBuffer block) {
+        synchronized (segments) {
+            try {
+                loadSegments();
+                ByteBuffer records = block.duplicate();
+                while (records.hasRemaining()) {
+                    Segment tail = tailSegment();
+                    int count = Math.min(records.remaining() / RECORD_BYTES, segmentRecords - tail.recordCount);
+                    ByteBuffer chunk = records.slice();
+                    chunk.limit(count * RECORD_BYTES);
+                    FileChannel channel = tailChannel(tail);
+                    long position = HEADER_BYTES + (long) tail.recordCount * RECORD_BYTES;
+                    while (chunk.hasRemaining()) {
+                        position += channel.write(chunk, position);
+                    }
+                    for (int i = 0; i < count; i++) {
+                        tail.add(records.getLong(records.position() + i * RECORD_BYTES));
+                    }
+                    records.position(records.position() + count * RECORD_BYTES);
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Could not write history: " + e.getMessage());
+                closeTail();
+            } finally {
+                recycle(block);
+            }
+        }
+    }
+
+    private synchronized void recycle(@NonNull ByteBuffer block) {
+        queuedBlocks.remove(block);
+        block.clear();
+        freeBlocks.push(block);
+    }
+
+    @NonNull
+    private Segment tailSegment() throws IOException {
+        Segment tail = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (tail != null && tail.recordCount < segmentRecords) {
+            return tail;
+        }
+        closeTail();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        long sequence = tail != null ? tail.sequence + 1 : 0;
+        Segment segment = new Segment(new File(directory,
+                String.format(Locale.ROOT, "%010d%s", sequence, SEGMENT_SUFFIX)), sequence, segmentRecords);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(RECORD_BYTES).putInt(0).flip();
+        tailChannel = FileChannel.open(segment.file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        while (header.hasRemaining()) {
+            tailChannel.write(header, header.position());
+        }
+        segments.add(segment);
+        while (segments.size() > maxSegments) {
+            segments.remove(0).file.delete();
+        }
+        return segment;
+    }
+
+    @NonNull
+    private FileChannel tailChannel(@NonNull Segment tail) throws IOException {
+        if (tailChannel == null) {
+            tailChannel = FileChannel.open(tail.file.toPath(), StandardOpenOption.WRITE);
+        }
+        return tailChannel;
+    }
+
+    private void closeTail() {
+        if (tailChannel == null) {
+            return;
+        }
+        try {
+            tailChannel.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Could not close history segment: " + e.getMessage());
+        }
+        tailChannel = null;
+    }
+
+    /**
+     * Reads the segments left by earlier sessions and rebuilds their time index.
+     */
+    private void loadSegments() throws IOException {
+        if (segmentsLoaded) {
+            return;
+        }
+        segmentsLoaded = true;
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        ByteBuffer timestamp = ByteBuffer.allocate(8);
+        for (File file : files) {
+            String name = file.getName();
+            long sequence;
+            try {
+                sequence = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                file.delete();
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                header.clear();
+                if (channel.read(header, 0) != HEADER_BYTES || header.getInt(0) != MAGIC
+                        || header.getInt(4) != FORMAT_VERSION || header.getInt(8) != RECORD_BYTES) {
+                    channel.close();
+                    file.delete();
+                    continue;
+                }
+                int recordCount = (int) Math.min(segmentRecords, (channel.size() - HEADER_BYTES) / RECORD_BYTES);
+                // Drops a record cut short by a crash.
+                channel.truncate(HEADER_BYTES + (long) recordCount * RECORD_BYTES);
+                Segment segment = new Segment(file, sequence, segmentRecords);
+                for (int record = 0; record < recordCount; record += INDEX_STRIDE) {
+                    segment.index[record / INDEX_STRIDE] = readTimestamp(channel, timestamp, record);
+                }
+                if (recordCount > 0) {
+                    segment.lastTimestampMillis = readTimestamp(channel, timestamp, recordCount - 1);
+                }
+                segment.recordCount = recordCount;
+                segments.add(segment);
+            }
+        }
+        while (segments.size() > maxSegments) {
+            segments.remove(0).file.delete();
+        }
+    }
+
+    private static long readTimestamp(@NonNull FileChannel channel, @NonNull ByteBuffer buffer, int record)
+            throws IOException {
+        buffer.clear();
+        long position = HEADER_BYTES + (long) record * RECORD_BYTES;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of history segment");
+            }
+        }
+        return buffer.getLong(0);
+    }
+
+    private void scan(@NonNull Segment segment, long fromMillis, long toMillis, @NonNull HistorySummary summary)
+            throws IOException {
+        int first = segment.firstRecordAtOrAfter(fromMillis);
+        try (FileChannel channel = FileChannel.open(segment.file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_BYTES + (long) first * RECORD_BYTES, (long) (segment.recordCount - first) * RECORD_BYTES);
+            summary.addAll(records, fromMillis, toMillis);
+        }
+    }
+
+    private static final class Segment {
+        final File file;
+        final long sequence;
+        // Timestamp of every INDEX_STRIDEth record.
+        final long[] index;
+        int recordCount;
+        long lastTimestampMillis;
+
+        Segment(@NonNull File file, long sequence, int capacity) {
+            this.file = file;
+            this.sequence = sequence;
+            this.index = new long[(capacity + INDEX_STRIDE - 1) / INDEX_STRIDE];
+        }
+
+        void add(long timestampMillis) {
+            if (recordCount % INDEX_STRIDE == 0) {
+                index[recordCount / INDEX_STRIDE] = timestampMillis;
+            }
+            lastTimestampMillis = timestampMillis;
+            recordCount++;
+        }
+
+        long firstTimestampMillis() {
+            return index[0];
+        }
+
+        /**
+         * Start of the index stride that may hold the first record at or after {@code timestampMillis}.
+         */
+        int firstRecordAtOrAfter(long timestampMillis) {
+            int low = 0;
+            int high = (recordCount - 1) / INDEX_STRIDE;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (index[middle] < timestampMillis) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low * INDEX_STRIDE;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.feeloscope.services.history;
+
+import androidx.annotation.NonNull;
+
+import com.example.feeloscope.services.DetectionResult;
+import com.example.feeloscope.services.FaceFrame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Per-window face statistics of a time range of the {@link HistoryLog}.
+ * <p>
+ * A smile is counted when a tracked face turns from not smiling to smiling, so a face that keeps
+ * smiling for a minute counts once. Faces without a tracking ID share one slot. The states the
+ * {@link com.example.feeloscope.services.FaceStateClassifier} showed are used where recorded;
+ * otherwise the probabilities are compared against the default threshold.
+ */
+public final class HistorySummary {
+    private static final int THRESHOLD = Math.round(DetectionResult.DEFAULT_PROBABILITY_THRESHOLD
+            * HistoryLog.PROBABILITY_SCALE);
+    // Faces whose smile state is remembered; more than this are rarely on screen at once.
+    private static final int TRACKED_FACES = 16;
+
+    private final long fromMillis;
+    private final long windowMillis;
+    private final int[] faceSamples;
+    private final int[] smileOnsets;
+    private final int[] eyeSamples;
+    private final int[] eyesClosedSamples;
+
+    private final int[] trackingIds = new int[TRACKED_FACES];
+    private final boolean[] smiling = new boolean[TRACKED_FACES];
+    private int trackedFaces;
+    private int nextSlot;
+
+    HistorySummary(long fromMillis, long toMillis, long windowMillis) {
+        if (windowMillis <= 0 || toMillis <= fromMillis) {
+            throw new IllegalArgumentException("Window and time range must not be empty.");
+        }
+        int windows = (int) ((toMillis - fromMillis + windowMillis - 1) / windowMillis);
+        this.fromMillis = fromMillis;
+        this.windowMillis = windowMillis;
+        this.faceSamples = new int[windows];
+        this.smileOnsets = new int[windows];
+        this.eyeSamples = new int[windows];
+        this.eyesClosedSamples = new int[windows];
+    }
+
+    /**
+     * Adds the records between the buffer's position and limit that fall into the range. Records
+     * are in timestamp order, so the scan stops at the first one past the range.
+     */
+    void addAll(@NonNull ByteBuffer records, long fromMillis, long toMillis) {
+        for (int offset = records.position(), end = records.limit(); offset + HistoryLog.RECORD_BYTES <= end;
+             offset += HistoryLog.RECORD_BYTES) {
+            long timestampMillis = records.getLong(offset);
+            if (timestampMillis < fromMillis) {
+                continue;
+            }
+            if (timestampMillis >= toMillis) {
+                return;
+            }
+            int window = (int) ((timestampMillis - this.fromMillis) / windowMillis);
+            faceSamples[window]++;
+            int states = records.get(offset + 15);
+            int smile = records.get(offset + 12) & 0xFF;
+            int smiling = state(states & HistoryLog.STATE_MASK, smile, smile);
+            if (smiling != FaceFrame.STATE_UNKNOWN
+                    && updateSmiling(records.getInt(offset + 8), smiling == FaceFrame.STATE_YES)) {
+                smileOnsets[window]++;
+            }
+            int eyesOpen = state(states >> HistoryLog.EYES_OPEN_STATE_SHIFT & HistoryLog.STATE_MASK,
+                    records.get(offset + 13) & 0xFF, records.get(offset + 14) & 0xFF);
+            if (eyesOpen != FaceFrame.STATE_UNKNOWN) {
+                eyeSamples[window]++;
+                if (eyesOpen == FaceFrame.STATE_NO) {
+                    eyesClosedSamples[window]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * The recorded state, or one derived from the quantized probabilities if none was recorded.
+     * Two probabilities must both pass.
+     */
+    private static int state(int recorded, int probability, int otherProbability) {
+        if (recorded != FaceFrame.STATE_UNKNOWN) {
+            return recorded;
+        }
+        if (probability == HistoryLog.UNKNOWN_PROBABILITY || otherProbability == HistoryLog.UNKNOWN_PROBABILITY) {
+            return FaceFrame.STATE_UNKNOWN;
+        }
+        return Math.min(probability, otherProbability) >= THRESHOLD ? FaceFrame.STATE_YES : FaceFrame.STATE_NO;
+    }
+
+    /**
+     * Remembers whether the face is smiling and returns whether it just started to.
+     */
+    private boolean updateSmiling(int trackingId, boolean isSmiling) {
+        for (int i = 0; i < trackedFaces; i++) {
+            if (trackingIds[i] == trackingId) {
+                boolean started = isSmiling && !smiling[i];
+                smiling[i] = isSmiling;
+                return started;
+            }
+        }
+        int slot;
+        if (trackedFaces < TRACKED_FACES) {
+            slot = trackedFaces++;
+        } else {
+            slot = nextSlot;
+            nextSlot = (nextSlot + 1) % TRACKED_FACES;
+        }
+        trackingIds[slot] = trackingId;
+        smiling[slot] = isSmiling;
+        return isSmiling;
+    }
+
+    public int getWindowCount() {
+        return faceSamples.length;
+    }
+
+    public long getWindowStartMillis(int window) {
+        return fromMillis + window * windowMillis;
+    }
+
+    /**
+     * Face records in the window, one per face and analyzed frame.
+     */
+    public int getFaceSamples(int window) {
+        return faceSamples[window];
+    }
+
+    public int getSmileCount(int window) {
+        return smileOnsets[window];
+    }
+
+    public float getSmilesPerMinute(int window) {
+        return smileOnsets[window] * 60_000f / windowMillis;
+    }
+
+    /**
+     * Share of face records with both eyes closed, or {@code NaN} if no eye state was recorded.
+     */
+    public float getEyesClosedRatio(int window) {
+        return eyeSamples[window] == 0 ? Float.NaN : (float) eyesClosedSamples[window] / eyeSamples[window];
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.feeloscope.services.image;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Callbacks of a {@link BatchImageAnalyzer} run, always delivered on the main thread in the
+ * order images finish. No callback is made after the run has been cancelled.
+ */
+public interface BatchAnalysisListener {
+    void onImageAnalyzed(@NonNull BatchImageResult result, @NonNull BatchProgress progress);
+    void onCompleted(@NonNull BatchProgress progress);
+}
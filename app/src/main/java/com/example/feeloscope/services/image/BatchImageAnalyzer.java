@@ -0,0 +1,207 @@
+package com.example.feeloscope.services.image;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.feeloscope.services.DetectorProfile;
+import com.example.feeloscope.services.DetectorRegistry;
+import com.example.feeloscope.services.cache.ContentHasher;
+import com.example.feeloscope.services.cache.DetectionCache;
+import com.example.feeloscope.services.cache.ImageSummary;
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Analyzes many images with a bounded pool of workers.
+ * <p>
+ * Each worker decodes its next image downsampled and then runs it through the shared detector.
+ * Decoding happens fully in parallel, while a semaphore limits how many images are inside the
+ * detector at the same time so the batch does not starve the rest of the app. Images found in the
+ * {@link DetectionCache} are neither decoded nor detected again.
+ */
+public class BatchImageAnalyzer {
+    private static final String TAG = "BatchImageAnalyzer";
+    public static final int DEFAULT_MAX_DIMENSION = 960;
+    private static final int MAX_WORKERS = 4;
+    private static final int MAX_DETECTIONS_IN_FLIGHT = 2;
+    private static final DetectorProfile PROFILE = DetectorProfile.ACCURATE;
+
+    private final Context appContext;
+    private final SampledImageDecoder imageDecoder;
+    private final DetectorRegistry detectorRegistry;
+    private final DetectionCache detectionCache;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final int workerCount;
+
+    public BatchImageAnalyzer(@NonNull Context context, @NonNull SampledImageDecoder imageDecoder) {
+        this.appContext = context.getApplicationContext();
+        this.imageDecoder = imageDecoder;
+        this.detectorRegistry = DetectorRegistry.getInstance();
+        this.detectionCache = DetectionCache.getInstance(context);
+        this.workerCount = Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    @NonNull
+    public Run analyze(@NonNull List<Uri> uris, @NonNull BatchAnalysisListener listener) {
+        Run run = new Run(new ArrayList<>(uris), listener);
+        run.start();
+        return run;
+    }
+
+    public final class Run {
+        private final List<Uri> uris;
+        private final BatchAnalysisListener listener;
+        private final ExecutorService workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "batch-analysis");
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        private final Semaphore detectionSlots = new Semaphore(MAX_DETECTIONS_IN_FLIGHT);
+        private final AtomicInteger nextImage = new AtomicInteger();
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger activeWorkers = new AtomicInteger();
+        private final DetectorRegistry.Lease lease;
+        private long startMs;
+        private volatile boolean cancelled;
+
+        private Run(@NonNull List<Uri> uris, @NonNull BatchAnalysisListener listener) {
+            this.uris = uris;
+            this.listener = listener;
+            this.lease = detectorRegistry.acquire(PROFILE);
+        }
+
+        private void start() {
+            startMs = SystemClock.elapsedRealtime();
+            int workersToStart = Math.max(1, Math.min(workerCount, uris.size()));
+            activeWorkers.set(workersToStart);
+            for (int i = 0; i < workersToStart; i++) {
+                workers.execute(this::work);
+            }
+        }
+
+        public void cancel() {
+            cancelled = true;
+            workers.shutdownNow();
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @WorkerThread
+        private void work() {
+            try {
+                int index;
+                while (!cancelled && (index = nextImage.getAndIncrement()) < uris.size()) {
+                    BatchImageResult result = analyzeOne(index, uris.get(index));
+                    BatchProgress progress = progress(completed.incrementAndGet());
+                    post(() -> listener.onImageAnalyzed(result, progress));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (activeWorkers.decrementAndGet() == 0) {
+                    lease.close();
+                    workers.shutdown();
+                    BatchProgress progress = progress(completed.get());
+                    post(() -> listener.onCompleted(progress));
+                }
+            }
+        }
+
+        @NonNull
+        private BatchImageResult analyzeOne(int index, @NonNull Uri uri) throws InterruptedException {
+            String name = queryDisplayName(uri);
+            String cacheKey = cacheKey(uri);
+            ImageSummary cached = cacheKey != null ? detectionCache.getImage(cacheKey) : null;
+            if (cached != null) {
+                return new BatchImageResult(index, uri, name, cached.getFaceCount(),
+                        cached.getSmilingCount(), cached.getEyesOpenCount(), null);
+            }
+
+            Bitmap bitmap = null;
+            try {
+                bitmap = imageDecoder.decode(uri, DEFAULT_MAX_DIMENSION);
+                List<Face> faces;
+                detectionSlots.acquire();
+                try {
+                    faces = Tasks.await(lease.process(InputImage.fromBitmap(bitmap, 0)));
+                } finally {
+                    detectionSlots.release();
+                }
+                ImageSummary summary = ImageSummary.of(faces);
+                if (cacheKey != null) {
+                    detectionCache.putImage(cacheKey, summary);
+                }
+                return new BatchImageResult(index, uri, name, summary.getFaceCount(),
+                        summary.getSmilingCount(), summary.getEyesOpenCount(), null);
+            } catch (IOException | RuntimeException e) {
+                return new BatchImageResult(index, uri, name, 0, 0, 0, e);
+            } catch (ExecutionException e) {
+                Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                return new BatchImageResult(index, uri, name, 0, 0, 0, cause);
+            } finally {
+                imageDecoder.getBitmapPool().put(bitmap);
+            }
+        }
+
+        @Nullable
+        private String cacheKey(@NonNull Uri uri) {
+            try {
+                long hash = ContentHasher.hash(appContext.getContentResolver(), uri);
+                return DetectionCache.imageKey(hash, PROFILE, DEFAULT_MAX_DIMENSION);
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Could not fingerprint " + uri + ": " + e.getMessage());
+                return null;
+            }
+        }
+
+        @NonNull
+        private String queryDisplayName(@NonNull Uri uri) {
+            try (Cursor cursor = appContext.getContentResolver().query(
+                    uri, new String[]{OpenableColumns.DISPLAY_NAME}, null, null, null)) {
+                if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                    return cursor.getString(0);
+                }
+            } catch (RuntimeException ignored) {
+                // Fall back to the URI below.
+            }
+            String segment = uri.getLastPathSegment();
+            return segment != null ? segment : uri.toString();
+        }
+
+        @NonNull
+        private BatchProgress progress(int done) {
+            return new BatchProgress(done, uris.size(), SystemClock.elapsedRealtime() - startMs);
+        }
+
+        private void post(@NonNull Runnable callback) {
+            mainHandler.post(() -> {
+                if (!cancelled) {
+                    callback.run();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.feeloscope.services.image;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Outcome of analyzing one image of a batch.
+ */
+public final class BatchImageResult {
+    private final int index;
+    private final Uri uri;
+    private final String displayName;
+    private final int faceCount;
+    private final int smilingCount;
+    private final int eyesOpenCount;
+    @Nullable
+    private final Exception error;
+
+    BatchImageResult(int index, @NonNull Uri uri, @NonNull String displayName,
+                     int faceCount, int smilingCount, int eyesOpenCount, @Nullable Exception error) {
+        this.index = index;
+        this.uri = uri;
+        this.displayName = displayName;
+        this.faceCount = faceCount;
+        this.smilingCount = smilingCount;
+        this.eyesOpenCount = eyesOpenCount;
+        this.error = error;
+    }
+
+    /**
+     * Position of the image in the list passed to {@link BatchImageAnalyzer#analyze}.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    @NonNull
+    public Uri getUri() {
+        return uri;
+    }
+
+    @NonNull
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public int getFaceCount() {
+        return faceCount;
+    }
+
+    public int getSmilingCount() {
+        return smilingCount;
+    }
+
+    public int getEyesOpenCount() {
+        return eyesOpenCount;
+    }
+
+    @Nullable
+    public Exception getError() {
+        return error;
+    }
+}
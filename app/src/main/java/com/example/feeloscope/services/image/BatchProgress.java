@@ -0,0 +1,42 @@
+package com.example.feeloscope.services.image;
+
+/**
+ * Throughput snapshot of a batch run.
+ */
+public final class BatchProgress {
+    private final int completed;
+    private final int total;
+    private final long elapsedMs;
+
+    BatchProgress(int completed, int total, long elapsedMs) {
+        this.completed = completed;
+        this.total = total;
+        this.elapsedMs = elapsedMs;
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public float getImagesPerSecond() {
+        return elapsedMs > 0 ? completed * 1000f / elapsedMs : 0f;
+    }
+
+    /**
+     * Estimated time until the batch is done, based on the throughput so far.
+     */
+    public long getRemainingMs() {
+        if (completed == 0) {
+            return -1L;
+        }
+        return (long) ((total - completed) * ((double) elapsedMs / completed));
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.feeloscope.services.image;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Small pool of mutable bitmaps that can be decoded or drawn into again.
+ * <p>
+ * A pooled bitmap is handed out for any request that fits into its allocation, so a handful of
+ * entries covers images of different sizes. The pool keeps at most {@code maxBytes} of
+ * bitmaps and recycles the oldest entries beyond that.
+ */
+public class BitmapPool {
+    private final long maxBytes;
+    private final ArrayDeque<Bitmap> bitmaps = new ArrayDeque<>();
+    private long currentBytes;
+
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a pooled bitmap large enough for {@code width} x {@code height} in {@code config},
+     * or {@code null} if there is none. The bitmap still has its old dimensions; callers either
+     * pass it as {@code inBitmap} or call {@link Bitmap#reconfigure} themselves.
+     */
+    @Nullable
+    public synchronized Bitmap get(int width, int height, @NonNull Bitmap.Config config) {
+        long required = (long) width * height * bytesPerPixel(config);
+        Bitmap best = null;
+        for (Bitmap candidate : bitmaps) {
+            int size = candidate.getAllocationByteCount();
+            if (size >= required && (best == null || size < best.getAllocationByteCount())) {
+                best = candidate;
+            }
+        }
+        if (best != null) {
+            bitmaps.remove(best);
+            currentBytes -= best.getAllocationByteCount();
+        }
+        return best;
+    }
+
+    /**
+     * Hands a bitmap back to the pool. Bitmaps that cannot be reused are recycled right away.
+     */
+    public synchronized void put(@Nullable Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        int size = bitmap.getAllocationByteCount();
+        if (!bitmap.isMutable() || size > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        bitmaps.addLast(bitmap);
+        currentBytes += size;
+        Iterator<Bitmap> oldestFirst = bitmaps.iterator();
+        while (currentBytes > maxBytes && oldestFirst.hasNext()) {
+            Bitmap evicted = oldestFirst.next();
+            oldestFirst.remove();
+            currentBytes -= evicted.getAllocationByteCount();
+            evicted.recycle();
+        }
+    }
+
+    public synchronized void clear() {
+        for (Bitmap bitmap : bitmaps) {
+            bitmap.recycle();
+        }
+        bitmaps.clear();
+        currentBytes = 0;
+    }
+
+    private static int bytesPerPixel(@NonNull Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+}
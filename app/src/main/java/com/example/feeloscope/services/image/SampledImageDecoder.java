@@ -0,0 +1,157 @@
+package com.example.feeloscope.services.image;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes images from content URIs at a reduced resolution that is still large enough for face
+ * detection and on-screen preview.
+ * <p>
+ * The header is read first to pick an {@code inSampleSize}, so a 50 MP photo never exists in
+ * memory at full size. Pixels are decoded into bitmaps from a {@link BitmapPool} where possible
+ * and EXIF rotation is applied, so the result can be shown and analyzed as is.
+ */
+public class SampledImageDecoder {
+    private static final String TAG = "SampledImageDecoder";
+
+    private final ContentResolver contentResolver;
+    private final BitmapPool bitmapPool;
+    private final Paint filterPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    public SampledImageDecoder(@NonNull Context context, @NonNull BitmapPool bitmapPool) {
+        this.contentResolver = context.getApplicationContext().getContentResolver();
+        this.bitmapPool = bitmapPool;
+    }
+
+    @NonNull
+    public BitmapPool getBitmapPool() {
+        return bitmapPool;
+    }
+
+    /**
+     * Decodes {@code uri} so that its longer side is at least {@code maxDimension} and less than
+     * twice of it, or at full size for smaller images. The returned bitmap is mutable and
+     * should be given back to the pool once it is no longer used.
+     */
+    @WorkerThread
+    @NonNull
+    public Bitmap decode(@NonNull Uri uri, int maxDimension) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream stream = open(uri)) {
+            BitmapFactory.decodeStream(stream, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Unsupported image: " + uri);
+        }
+
+        int sampleSize = calculateInSampleSize(options.outWidth, options.outHeight, maxDimension);
+        int sampledWidth = ceilDiv(options.outWidth, sampleSize);
+        int sampledHeight = ceilDiv(options.outHeight, sampleSize);
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inBitmap = bitmapPool.get(sampledWidth, sampledHeight, Bitmap.Config.ARGB_8888);
+        Bitmap decoded = decodeSampled(uri, options);
+
+        int rotation = readRotationDegrees(uri);
+        return rotation == 0 ? decoded : rotate(decoded, rotation);
+    }
+
+    @NonNull
+    private Bitmap decodeSampled(@NonNull Uri uri, @NonNull BitmapFactory.Options options) throws IOException {
+        Bitmap decoded;
+        try (InputStream stream = open(uri)) {
+            decoded = BitmapFactory.decodeStream(stream, null, options);
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap could not be reused for this image; decode into a fresh one.
+            Log.d(TAG, "Could not reuse pooled bitmap: " + e.getMessage());
+            bitmapPool.put(options.inBitmap);
+            options.inBitmap = null;
+            try (InputStream stream = open(uri)) {
+                decoded = BitmapFactory.decodeStream(stream, null, options);
+            }
+        }
+        if (decoded == null) {
+            throw new IOException("Could not decode image: " + uri);
+        }
+        return decoded;
+    }
+
+    @NonNull
+    private Bitmap rotate(@NonNull Bitmap source, int degrees) {
+        boolean swap = degrees == 90 || degrees == 270;
+        int width = swap ? source.getHeight() : source.getWidth();
+        int height = swap ? source.getWidth() : source.getHeight();
+        Bitmap target = bitmapPool.get(width, height, Bitmap.Config.ARGB_8888);
+        if (target != null) {
+            target.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+        } else {
+            target = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        Matrix matrix = new Matrix();
+        matrix.postRotate(degrees);
+        matrix.postTranslate(degrees == 90 || degrees == 180 ? width : 0, degrees == 180 || degrees == 270 ? height : 0);
+        new Canvas(target).drawBitmap(source, matrix, filterPaint);
+        bitmapPool.put(source);
+        return target;
+    }
+
+    private int readRotationDegrees(@NonNull Uri uri) {
+        try (InputStream stream = open(uri)) {
+            int orientation = new ExifInterface(stream)
+                    .getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+            switch (orientation) {
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    return 270;
+                default:
+                    return 0;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Formats without EXIF data are shown as decoded.
+            return 0;
+        }
+    }
+
+    @NonNull
+    private InputStream open(@NonNull Uri uri) throws IOException {
+        InputStream stream = contentResolver.openInputStream(uri);
+        if (stream == null) {
+            throw new IOException("Could not open " + uri);
+        }
+        return stream;
+    }
+
+    static int calculateInSampleSize(int width, int height, int maxDimension) {
+        int sampleSize = 1;
+        int longest = Math.max(width, height);
+        while (longest / (sampleSize * 2) >= maxDimension) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
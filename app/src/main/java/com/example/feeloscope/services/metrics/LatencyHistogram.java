@@ -0,0 +1,137 @@
+package com.example.feeloscope.services.metrics;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with fixed buckets.
+ * <p>
+ * Bucket limits grow by a factor of about 1.4 from 1 ms to about 1 s. Recording is a binary
+ * search plus a few atomic increments, so any thread can record without contention.
+ * Percentiles are reported as the upper limit of the bucket they fall in.
+ */
+public final class LatencyHistogram {
+    private static final long[] UPPER_BOUNDS_NANOS;
+
+    static {
+        long[] boundsMs = {1, 2, 3, 4, 6, 8, 11, 16, 23, 32, 45, 64, 90, 128, 181, 256, 362, 512, 724, 1024};
+        UPPER_BOUNDS_NANOS = new long[boundsMs.length];
+        for (int i = 0; i < boundsMs.length; i++) {
+            UPPER_BOUNDS_NANOS[i] = boundsMs[i] * 1_000_000L;
+        }
+    }
+
+    // One extra bucket for everything above the last bound.
+    private final AtomicLongArray buckets = new AtomicLongArray(UPPER_BOUNDS_NANOS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        int index = Arrays.binarySearch(UPPER_BOUNDS_NANOS, nanos);
+        buckets.incrementAndGet(index >= 0 ? index : -index - 1);
+        count.incrementAndGet();
+        sumNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            // Lost the race against a concurrent maximum; retry with the new value.
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sumNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    /**
+     * A consistent-enough copy for display and export. Concurrent records may be partially included.
+     */
+    @NonNull
+    public Snapshot snapshot() {
+        long[] counts = new long[buckets.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return new Snapshot(counts, count.get(), sumNanos.get(), maxNanos.get());
+    }
+
+    public static final class Snapshot {
+        private final long[] bucketCounts;
+        private final long count;
+        private final long sumNanos;
+        private final long maxNanos;
+
+        Snapshot(@NonNull long[] bucketCounts, long count, long sumNanos, long maxNanos) {
+            this.bucketCounts = bucketCounts;
+            this.count = count;
+            this.sumNanos = sumNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanMillis() {
+            return count == 0 ? 0.0 : sumNanos / (double) count / 1e6;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos / 1e6;
+        }
+
+        /**
+         * @param quantile between 0 and 1, e.g. 0.95
+         */
+        public double getPercentileMillis(double quantile) {
+            long total = 0;
+            for (long bucket : bucketCounts) {
+                total += bucket;
+            }
+            if (total == 0) {
+                return 0.0;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < bucketCounts.length; i++) {
+                seen += bucketCounts[i];
+                if (seen >= rank) {
+                    return i < UPPER_BOUNDS_NANOS.length ? UPPER_BOUNDS_NANOS[i] / 1e6 : getMaxMillis();
+                }
+            }
+            return getMaxMillis();
+        }
+
+        void appendJson(@NonNull StringBuilder json) {
+            json.append("{\"count\":").append(count)
+                    .append(",\"meanMs\":").append(round(getMeanMillis()))
+                    .append(",\"p50Ms\":").append(round(getPercentileMillis(0.50)))
+                    .append(",\"p95Ms\":").append(round(getPercentileMillis(0.95)))
+                    .append(",\"p99Ms\":").append(round(getPercentileMillis(0.99)))
+                    .append(",\"maxMs\":").append(round(getMaxMillis()))
+                    .append(",\"bucketUpperBoundsMs\":[");
+            for (int i = 0; i < UPPER_BOUNDS_NANOS.length; i++) {
+                json.append(i > 0 ? "," : "").append(UPPER_BOUNDS_NANOS[i] / 1_000_000L);
+            }
+            json.append("],\"buckets\":[");
+            for (int i = 0; i < bucketCounts.length; i++) {
+                json.append(i > 0 ? "," : "").append(bucketCounts[i]);
+            }
+            json.append("]}");
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 100.0) / 100.0;
+        }
+    }
+}
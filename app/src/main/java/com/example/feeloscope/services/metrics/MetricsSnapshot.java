@@ -0,0 +1,112 @@
+package com.example.feeloscope.services.metrics;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.feeloscope.services.DetectorProfile;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable copy of {@link PipelineMetrics} at one point in time.
+ */
+public final class MetricsSnapshot {
+    private final EnumMap<PipelineMetrics.Stage, LatencyHistogram.Snapshot> stages;
+    private final EnumMap<DetectorProfile, LatencyHistogram.Snapshot> detectorByProfile;
+    private final long[] counters;
+    private final double framesPerSecond;
+    private final long elapsedMs;
+
+    MetricsSnapshot(@NonNull EnumMap<PipelineMetrics.Stage, LatencyHistogram.Snapshot> stages,
+                    @NonNull EnumMap<DetectorProfile, LatencyHistogram.Snapshot> detectorByProfile,
+                    @NonNull long[] counters, double framesPerSecond, long elapsedMs) {
+        this.stages = stages;
+        this.detectorByProfile = detectorByProfile;
+        this.counters = counters;
+        this.framesPerSecond = framesPerSecond;
+        this.elapsedMs = elapsedMs;
+    }
+
+    @NonNull
+    public LatencyHistogram.Snapshot getStage(@NonNull PipelineMetrics.Stage stage) {
+        return stages.get(stage);
+    }
+
+    /**
+     * Detector time of one profile, or {@code null} if it did not run.
+     */
+    @Nullable
+    public LatencyHistogram.Snapshot getDetector(@NonNull DetectorProfile profile) {
+        return detectorByProfile.get(profile);
+    }
+
+    public long getCount(@NonNull PipelineMetrics.Counter counter) {
+        return counters[counter.ordinal()];
+    }
+
+    public double getFramesPerSecond() {
+        return framesPerSecond;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    /**
+     * Serializes the snapshot, tagged with the device and the profile that was active, for
+     * comparing runs across devices and profiles.
+     */
+    @NonNull
+    public String toJson(@NonNull String device, @Nullable DetectorProfile activeProfile) {
+        StringBuilder json = new StringBuilder(2048);
+        json.append("{\"device\":");
+        appendString(json, device);
+        json.append(",\"activeProfile\":");
+        if (activeProfile != null) {
+            appendString(json, activeProfile.name());
+        } else {
+            json.append("null");
+        }
+        json.append(",\"elapsedMs\":").append(elapsedMs)
+                .append(",\"fps\":").append(String.format(Locale.ROOT, "%.2f", framesPerSecond))
+                .append(",\"counters\":{");
+        PipelineMetrics.Counter[] counterKeys = PipelineMetrics.Counter.values();
+        for (int i = 0; i < counterKeys.length; i++) {
+            json.append(i > 0 ? "," : "").append('"').append(counterKeys[i].name().toLowerCase(Locale.ROOT))
+                    .append("\":").append(counters[i]);
+        }
+        json.append("},\"stages\":{");
+        boolean first = true;
+        for (Map.Entry<PipelineMetrics.Stage, LatencyHistogram.Snapshot> entry : stages.entrySet()) {
+            json.append(first ? "" : ",").append('"').append(entry.getKey().name().toLowerCase(Locale.ROOT))
+                    .append("\":");
+            entry.getValue().appendJson(json);
+            first = false;
+        }
+        json.append("},\"detectorByProfile\":{");
+        first = true;
+        for (Map.Entry<DetectorProfile, LatencyHistogram.Snapshot> entry : detectorByProfile.entrySet()) {
+            json.append(first ? "" : ",").append('"').append(entry.getKey().name()).append("\":");
+            entry.getValue().appendJson(json);
+            first = false;
+        }
+        return json.append("}}").toString();
+    }
+
+    private static void appendString(@NonNull StringBuilder json, @NonNull String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
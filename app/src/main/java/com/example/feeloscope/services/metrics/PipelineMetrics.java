@@ -0,0 +1,133 @@
+package com.example.feeloscope.services.metrics;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import com.example.feeloscope.services.DetectorProfile;
+
+import java.util.EnumMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timings and counters of the live frame pipeline.
+ * <p>
+ * Every stage of a frame is recorded into its own {@link LatencyHistogram}; detector time is
+ * additionally kept per {@link DetectorProfile}. All recording methods are lock-free and may be
+ * called from any thread.
+ */
+public class PipelineMetrics {
+
+    public enum Stage {
+        /** From the sensor timestamp to the start of analysis. */
+        CAPTURE_TO_ANALYZE,
+        /** Time spent inside the detector. */
+        DETECTOR,
+        /** Converting detector output into results. */
+        POST_PROCESS,
+        /** From handing a result to the delivery executor until the listener runs. */
+        DELIVERY
+    }
+
+    public enum Counter {
+        /** Frames whose detection finished. */
+        ANALYZED,
+        /** Frames dropped because the previous one was still in the detector. */
+        DROPPED,
+        /** Frames not analyzed on purpose, e.g. while analysis is switched off. */
+        SKIPPED,
+        /** Analyzed frames that were cropped to the faces' region. */
+        CROPPED,
+        /** Analyzed frames that ran without classification. */
+        TRACK_ONLY,
+        /** Frames skipped because they looked like the last analyzed one. */
+        UNCHANGED,
+        /** Frames skipped to hold the analysis rate down while the device is hot. */
+        THROTTLED
+    }
+
+    private final EnumMap<Stage, LatencyHistogram> stages = new EnumMap<>(Stage.class);
+    private final EnumMap<DetectorProfile, LatencyHistogram> detectorByProfile = new EnumMap<>(DetectorProfile.class);
+    private final AtomicLong[] counters = new AtomicLong[Counter.values().length];
+    private final AtomicLong lastAnalyzedNanos = new AtomicLong();
+    // Exponential moving average of the interval between analyzed frames.
+    private volatile double frameIntervalNanos;
+    private volatile long startedNanos = SystemClock.elapsedRealtimeNanos();
+
+    public PipelineMetrics() {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new LatencyHistogram());
+        }
+        for (DetectorProfile profile : DetectorProfile.values()) {
+            detectorByProfile.put(profile, new LatencyHistogram());
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new AtomicLong();
+        }
+    }
+
+    public void record(@NonNull Stage stage, long nanos) {
+        stages.get(stage).record(nanos);
+    }
+
+    public void recordDetector(@NonNull DetectorProfile profile, long nanos) {
+        stages.get(Stage.DETECTOR).record(nanos);
+        detectorByProfile.get(profile).record(nanos);
+    }
+
+    public void increment(@NonNull Counter counter) {
+        counters[counter.ordinal()].incrementAndGet();
+    }
+
+    /**
+     * Counts an analyzed frame and updates the frame rate.
+     */
+    public void onFrameAnalyzed() {
+        counters[Counter.ANALYZED.ordinal()].incrementAndGet();
+        long now = SystemClock.elapsedRealtimeNanos();
+        long previous = lastAnalyzedNanos.getAndSet(now);
+        if (previous != 0) {
+            double interval = frameIntervalNanos;
+            long sample = now - previous;
+            frameIntervalNanos = interval == 0 ? sample : interval + 0.1 * (sample - interval);
+        }
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : stages.values()) {
+            histogram.reset();
+        }
+        for (LatencyHistogram histogram : detectorByProfile.values()) {
+            histogram.reset();
+        }
+        for (AtomicLong counter : counters) {
+            counter.set(0);
+        }
+        lastAnalyzedNanos.set(0);
+        frameIntervalNanos = 0;
+        startedNanos = SystemClock.elapsedRealtimeNanos();
+    }
+
+    @NonNull
+    public MetricsSnapshot snapshot() {
+        EnumMap<Stage, LatencyHistogram.Snapshot> stageSnapshots = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            stageSnapshots.put(stage, stages.get(stage).snapshot());
+        }
+        EnumMap<DetectorProfile, LatencyHistogram.Snapshot> profileSnapshots = new EnumMap<>(DetectorProfile.class);
+        for (DetectorProfile profile : DetectorProfile.values()) {
+            LatencyHistogram.Snapshot snapshot = detectorByProfile.get(profile).snapshot();
+            if (snapshot.getCount() > 0) {
+                profileSnapshots.put(profile, snapshot);
+            }
+        }
+        long[] counterValues = new long[counters.length];
+        for (int i = 0; i < counters.length; i++) {
+            counterValues[i] = counters[i].get();
+        }
+        double interval = frameIntervalNanos;
+        return new MetricsSnapshot(stageSnapshots, profileSnapshots, counterValues,
+                interval > 0 ? 1e9 / interval : 0.0,
+                (SystemClock.elapsedRealtimeNanos() - startedNanos) / 1_000_000L);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.feeloscope.services.snapshot;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Environment;
+import android.provider.MediaStore;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Stores snapshots in the shared picture collection through {@link MediaStore}.
+ * <p>
+ * On Android 10 and later the entry stays pending while it is written, so the gallery never
+ * shows a half-written file, and no storage permission is needed. Older versions need
+ * {@code WRITE_EXTERNAL_STORAGE}.
+ */
+public final class SnapshotWriter {
+    public static final String ALBUM = "FeelOScope";
+
+    public enum Format {
+        JPEG("image/jpeg", ".jpg"),
+        WEBP("image/webp", ".webp");
+
+        final String mimeType;
+        final String extension;
+
+        Format(@NonNull String mimeType, @NonNull String extension) {
+            this.mimeType = mimeType;
+            this.extension = extension;
+        }
+
+        @SuppressWarnings("deprecation")
+        @NonNull
+        Bitmap.CompressFormat compressFormat() {
+            if (this == JPEG) {
+                return Bitmap.CompressFormat.JPEG;
+            }
+            return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                    ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+        }
+    }
+
+    private final ContentResolver resolver;
+    private final Format format;
+    private final int quality;
+
+    public SnapshotWriter(@NonNull ContentResolver resolver, @NonNull Format format, int quality) {
+        if (quality < 0 || quality > 100) {
+            throw new IllegalArgumentException("Quality must be between 0 and 100.");
+        }
+        this.resolver = resolver;
+        this.format = format;
+        this.quality = quality;
+    }
+
+    /**
+     * Encodes {@code bitmap} into a new picture and returns its content URI.
+     */
+    @WorkerThread
+    @NonNull
+    public Uri write(@NonNull Bitmap bitmap, long takenMillis) throws IOException {
+        boolean scoped = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q;
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.MediaColumns.DISPLAY_NAME, fileName(takenMillis));
+        values.put(MediaStore.MediaColumns.MIME_TYPE, format.mimeType);
+        values.put(MediaStore.MediaColumns.DATE_TAKEN, takenMillis);
+        Uri collection;
+        if (scoped) {
+            values.put(MediaStore.MediaColumns.RELATIVE_PATH, Environment.DIRECTORY_PICTURES + "/" + ALBUM);
+            values.put(MediaStore.MediaColumns.IS_PENDING, 1);
+            collection = MediaStore.Images.Media.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY);
+        } else {
+            collection = MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
+        }
+        Uri uri = resolver.insert(collection, values);
+        if (uri == null) {
+            throw new IOException("Could not create a picture entry.");
+        }
+        try (OutputStream out = resolver.openOutputStream(uri)) {
+            if (out == null || !bitmap.compress(format.compressFormat(), quality, out)) {
+                throw new IOException("Could not encode the snapshot.");
+            }
+        } catch (IOException | RuntimeException e) {
+            resolver.delete(uri, null, null);
+            throw e;
+        }
+        if (scoped) {
+            ContentValues published = new ContentValues();
+            published.put(MediaStore.MediaColumns.IS_PENDING, 0);
+            resolver.update(uri, published, null, null);
+        }
+        return uri;
+    }
+
+    @NonNull
+    private String fileName(long takenMillis) {
+        return "FeelOScope_" + new SimpleDateFormat("yyyyMMdd_HHmmss_SSS", Locale.ROOT).format(new Date(takenMillis))
+                + format.extension;
+    }
+}
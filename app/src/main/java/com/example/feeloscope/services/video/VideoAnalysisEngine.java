@@ -0,0 +1,308 @@
+package com.example.feeloscope.services.video;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.feeloscope.services.DetectorProfile;
+import com.example.feeloscope.services.DetectorRegistry;
+import com.example.feeloscope.services.FaceCounts;
+import com.example.feeloscope.services.cache.ContentHasher;
+import com.example.feeloscope.services.cache.DetectionCache;
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Samples frames across a whole video and runs face detection on each of them.
+ * <p>
+ * Frames are decoded already downscaled by a small pool of decoder threads, each with its own
+ * {@link MediaMetadataRetriever}, and handed to a single detection thread through a bounded
+ * queue. The queue caps the number of decoded bitmaps alive at once, so memory use does not
+ * depend on the length of the clip. Finished timelines are stored in the {@link DetectionCache},
+ * so analyzing the same clip again skips decoding altogether.
+ */
+public class VideoAnalysisEngine {
+    private static final String TAG = "VideoAnalysisEngine";
+
+    public static final long DEFAULT_STRIDE_MS = 500;
+    public static final int DEFAULT_MAX_FRAME_DIMENSION = 640;
+    public static final int DEFAULT_DECODE_THREADS = 2;
+
+    private final Context appContext;
+    private final DetectorRegistry detectorRegistry;
+    private final DetectionCache detectionCache;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final long strideMs;
+    private final int maxFrameDimension;
+    private final int decodeThreads;
+    private final DetectorProfile profile;
+
+    public VideoAnalysisEngine(@NonNull Context context) {
+        this(context, DEFAULT_STRIDE_MS, DEFAULT_MAX_FRAME_DIMENSION, DEFAULT_DECODE_THREADS, DetectorProfile.ACCURATE);
+    }
+
+    public VideoAnalysisEngine(@NonNull Context context, long strideMs, int maxFrameDimension,
+                               int decodeThreads, @NonNull DetectorProfile profile) {
+        if (strideMs <= 0 || maxFrameDimension <= 0 || decodeThreads <= 0) {
+            throw new IllegalArgumentException("Stride, frame dimension and decode threads must be positive.");
+        }
+        this.appContext = context.getApplicationContext();
+        this.detectorRegistry = DetectorRegistry.getInstance();
+        this.detectionCache = DetectionCache.getInstance(context);
+        this.strideMs = strideMs;
+        this.maxFrameDimension = maxFrameDimension;
+        this.decodeThreads = decodeThreads;
+        this.profile = profile;
+    }
+
+    /**
+     * Starts analyzing {@code uri} in the background. The returned run can be cancelled at any time.
+     */
+    @NonNull
+    public Run analyze(@NonNull Uri uri, @NonNull VideoAnalysisListener listener) {
+        Run run = new Run(uri, listener);
+        run.start();
+        return run;
+    }
+
+    public final class Run {
+        private final Uri uri;
+        private final VideoAnalysisListener listener;
+        // One thread per decoder plus the detection thread that drives the run.
+        private final ExecutorService workers = Executors.newFixedThreadPool(decodeThreads + 1, runnable -> {
+            Thread thread = new Thread(runnable, "video-analysis");
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        private final BlockingQueue<DecodedFrame> decodedFrames = new ArrayBlockingQueue<>(decodeThreads * 2);
+        private final AtomicInteger nextSample = new AtomicInteger();
+        private volatile boolean cancelled;
+
+        private Run(@NonNull Uri uri, @NonNull VideoAnalysisListener listener) {
+            this.uri = uri;
+            this.listener = listener;
+        }
+
+        private void start() {
+            workers.execute(this::detectAll);
+        }
+
+        public void cancel() {
+            cancelled = true;
+            workers.shutdownNow();
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @WorkerThread
+        private void detectAll() {
+            DetectorRegistry.Lease lease = null;
+            try {
+                String cacheKey = cacheKey();
+                VideoTimeline cached = cacheKey != null ? detectionCache.getVideo(cacheKey) : null;
+                if (cached != null) {
+                    post(() -> listener.onCompleted(cached));
+                    return;
+                }
+
+                long durationMs = readDurationMs();
+                long[] timestamps = sampleTimestamps(durationMs);
+                VideoTimeline timeline = new VideoTimeline(durationMs, timestamps);
+                lease = detectorRegistry.acquire(profile);
+                for (int i = 0; i < decodeThreads; i++) {
+                    workers.execute(() -> decodeSamples(timestamps));
+                }
+
+                for (int received = 0; received < timestamps.length; received++) {
+                    DecodedFrame frame = decodedFrames.take();
+                    if (frame.bitmap != null) {
+                        try {
+                            detect(lease, frame, timeline);
+                        } finally {
+                            frame.bitmap.recycle();
+                        }
+                    }
+                    int analyzed = received + 1;
+                    post(() -> listener.onProgress(analyzed, timestamps.length));
+                }
+                if (cacheKey != null && timeline.getAnalyzedSampleCount() > 0) {
+                    detectionCache.putVideo(cacheKey, timeline);
+                }
+                post(() -> listener.onCompleted(timeline));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                post(() -> listener.onError(cause));
+            } catch (RuntimeException e) {
+                post(() -> listener.onError(e));
+            } finally {
+                if (lease != null) {
+                    lease.close();
+                }
+                workers.shutdownNow();
+                recycleQueuedFrames();
+            }
+        }
+
+        @Nullable
+        private String cacheKey() {
+            try {
+                long hash = ContentHasher.hash(appContext.getContentResolver(), uri);
+                return DetectionCache.videoKey(hash, profile, strideMs, maxFrameDimension);
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Could not fingerprint " + uri + ", analyzing without cache: " + e.getMessage());
+                return null;
+            }
+        }
+
+        private void detect(@NonNull DetectorRegistry.Lease lease, @NonNull DecodedFrame frame,
+                            @NonNull VideoTimeline timeline) throws ExecutionException, InterruptedException {
+            List<Face> faces = Tasks.await(lease.process(InputImage.fromBitmap(frame.bitmap, 0)));
+            timeline.set(frame.sample, faces.size(), FaceCounts.smiling(faces), FaceCounts.eyesOpen(faces));
+        }
+
+        @WorkerThread
+        private void decodeSamples(@NonNull long[] timestamps) {
+            MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+            try {
+                retriever.setDataSource(appContext, uri);
+                int sample;
+                while (!cancelled && (sample = nextSample.getAndIncrement()) < timestamps.length) {
+                    Bitmap bitmap = null;
+                    try {
+                        bitmap = decodeFrame(retriever, timestamps[sample]);
+                    } catch (RuntimeException e) {
+                        Log.w(TAG, "Could not decode frame at " + timestamps[sample] + " ms: " + e.getMessage());
+                    }
+                    decodedFrames.put(new DecodedFrame(sample, bitmap));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                // The data source could not be opened; report every remaining sample as missing
+                // so the detection thread does not wait for them forever.
+                Log.w(TAG, "Decoder failed: " + e.getMessage());
+                drainRemainingSamples(timestamps.length);
+            } finally {
+                try {
+                    retriever.release();
+                } catch (IOException e) {
+                    Log.w(TAG, "Could not release retriever: " + e.getMessage());
+                }
+            }
+        }
+
+        private void drainRemainingSamples(int total) {
+            try {
+                int sample;
+                while (!cancelled && (sample = nextSample.getAndIncrement()) < total) {
+                    decodedFrames.put(new DecodedFrame(sample, null));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Nullable
+        private Bitmap decodeFrame(@NonNull MediaMetadataRetriever retriever, long timestampMs) {
+            long timeUs = timestampMs * 1000L;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+                // Decodes straight into a bitmap no larger than the detector needs.
+                return retriever.getScaledFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST,
+                        maxFrameDimension, maxFrameDimension);
+            }
+            Bitmap full = retriever.getFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST);
+            if (full == null) {
+                return null;
+            }
+            int largest = Math.max(full.getWidth(), full.getHeight());
+            if (largest <= maxFrameDimension) {
+                return full;
+            }
+            float scale = (float) maxFrameDimension / largest;
+            Bitmap scaled = Bitmap.createScaledBitmap(full,
+                    Math.round(full.getWidth() * scale), Math.round(full.getHeight() * scale), true);
+            if (scaled != full) {
+                full.recycle();
+            }
+            return scaled;
+        }
+
+        private long readDurationMs() {
+            MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+            try {
+                retriever.setDataSource(appContext, uri);
+                String duration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+                return duration != null ? Long.parseLong(duration) : 0L;
+            } catch (NumberFormatException e) {
+                return 0L;
+            } finally {
+                try {
+                    retriever.release();
+                } catch (IOException e) {
+                    Log.w(TAG, "Could not release retriever: " + e.getMessage());
+                }
+            }
+        }
+
+        @NonNull
+        private long[] sampleTimestamps(long durationMs) {
+            int count = (int) (durationMs / strideMs) + 1;
+            long[] timestamps = new long[count];
+            for (int i = 0; i < count; i++) {
+                timestamps[i] = i * strideMs;
+            }
+            return timestamps;
+        }
+
+        private void recycleQueuedFrames() {
+            DecodedFrame frame;
+            while ((frame = decodedFrames.poll()) != null) {
+                if (frame.bitmap != null) {
+                    frame.bitmap.recycle();
+                }
+            }
+        }
+
+        private void post(@NonNull Runnable callback) {
+            mainHandler.post(() -> {
+                if (!cancelled) {
+                    callback.run();
+                }
+            });
+        }
+    }
+
+    private static final class DecodedFrame {
+        final int sample;
+        @Nullable
+        final Bitmap bitmap;
+
+        DecodedFrame(int sample, @Nullable Bitmap bitmap) {
+            this.sample = sample;
+            this.bitmap = bitmap;
+        }
+    }
+}
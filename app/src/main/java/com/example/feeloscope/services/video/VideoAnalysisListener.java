@@ -0,0 +1,13 @@
+package com.example.feeloscope.services.video;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Callbacks of a {@link VideoAnalysisEngine} run, always delivered on the main thread.
+ * No callback is made after the run has been cancelled.
+ */
+public interface VideoAnalysisListener {
+    void onProgress(int analyzedSamples, int totalSamples);
+    void onCompleted(@NonNull VideoTimeline timeline);
+    void onError(@NonNull Exception e);
+}
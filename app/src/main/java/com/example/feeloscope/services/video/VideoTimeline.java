@@ -0,0 +1,139 @@
+package com.example.feeloscope.services.video;
+
+import androidx.annotation.NonNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Per-sample face statistics of an analyzed video, ordered by timestamp.
+ */
+public final class VideoTimeline {
+    private final long durationMs;
+    private final long[] timestampsMs;
+    private final int[] faceCounts;
+    private final int[] smilingCounts;
+    private final int[] eyesOpenCounts;
+    private final boolean[] analyzed;
+
+    VideoTimeline(long durationMs, @NonNull long[] timestampsMs) {
+        this.durationMs = durationMs;
+        this.timestampsMs = timestampsMs;
+        this.faceCounts = new int[timestampsMs.length];
+        this.smilingCounts = new int[timestampsMs.length];
+        this.eyesOpenCounts = new int[timestampsMs.length];
+        this.analyzed = new boolean[timestampsMs.length];
+    }
+
+    void set(int sample, int faces, int smiling, int eyesOpen) {
+        faceCounts[sample] = faces;
+        smilingCounts[sample] = smiling;
+        eyesOpenCounts[sample] = eyesOpen;
+        analyzed[sample] = true;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public int getSampleCount() {
+        return timestampsMs.length;
+    }
+
+    public long getTimestampMs(int sample) {
+        return timestampsMs[sample];
+    }
+
+    /**
+     * Whether the frame at {@code sample} could be decoded and analyzed.
+     */
+    public boolean isAnalyzed(int sample) {
+        return analyzed[sample];
+    }
+
+    public int getFaceCount(int sample) {
+        return faceCounts[sample];
+    }
+
+    public int getSmilingCount(int sample) {
+        return smilingCounts[sample];
+    }
+
+    public int getEyesOpenCount(int sample) {
+        return eyesOpenCounts[sample];
+    }
+
+    public int getAnalyzedSampleCount() {
+        int count = 0;
+        for (boolean done : analyzed) {
+            if (done) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getMaxFaceCount() {
+        int max = 0;
+        for (int faces : faceCounts) {
+            max = Math.max(max, faces);
+        }
+        return max;
+    }
+
+    public int getSamplesWithSmiles() {
+        return countNonZero(smilingCounts);
+    }
+
+    public int getSamplesWithOpenEyes() {
+        return countNonZero(eyesOpenCounts);
+    }
+
+    /**
+     * Writes the timeline in the binary layout read back by {@link #readFrom(DataInput)}.
+     */
+    public void writeTo(@NonNull DataOutput out) throws IOException {
+        out.writeLong(durationMs);
+        out.writeInt(timestampsMs.length);
+        for (int i = 0; i < timestampsMs.length; i++) {
+            out.writeLong(timestampsMs[i]);
+            out.writeBoolean(analyzed[i]);
+            out.writeInt(faceCounts[i]);
+            out.writeInt(smilingCounts[i]);
+            out.writeInt(eyesOpenCounts[i]);
+        }
+    }
+
+    @NonNull
+    public static VideoTimeline readFrom(@NonNull DataInput in) throws IOException {
+        long durationMs = in.readLong();
+        int sampleCount = in.readInt();
+        if (sampleCount < 0) {
+            throw new IOException("Invalid sample count " + sampleCount);
+        }
+        long[] timestamps = new long[sampleCount];
+        VideoTimeline timeline = new VideoTimeline(durationMs, timestamps);
+        for (int i = 0; i < sampleCount; i++) {
+            timestamps[i] = in.readLong();
+            boolean analyzed = in.readBoolean();
+            int faces = in.readInt();
+            int smiling = in.readInt();
+            int eyesOpen = in.readInt();
+            if (analyzed) {
+                timeline.set(i, faces, smiling, eyesOpen);
+            }
+        }
+        return timeline;
+    }
+
+    private static int countNonZero(@NonNull int[] values) {
+        int count = 0;
+        for (int value : values) {
+            if (value > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
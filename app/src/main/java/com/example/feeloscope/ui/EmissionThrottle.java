@@ -0,0 +1,51 @@
+package com.example.feeloscope.ui;
+
+/**
+ * Decides when a throttled stream may emit again. The first value after a quiet period goes out
+ * right away; values arriving within the interval after that share a single trailing emission,
+ * which carries whatever value is latest by then.
+ */
+final class EmissionThrottle {
+    /** Returned by {@link #offer} when the value is to be emitted right away. */
+    static final long NOW = 0;
+    /** Returned by {@link #offer} when a trailing emission is already scheduled and will pick the value up. */
+    static final long SCHEDULED = -1;
+
+    private final long intervalMs;
+    private boolean emitted;
+    private long lastEmitMs;
+    private boolean scheduled;
+
+    EmissionThrottle(long intervalMs) {
+        if (intervalMs <= 0) {
+            throw new IllegalArgumentException("Interval must be positive.");
+        }
+        this.intervalMs = intervalMs;
+    }
+
+    /**
+     * Reports a new value at {@code nowMs} and returns {@link #NOW}, {@link #SCHEDULED}, or the
+     * delay in milliseconds after which the caller has to emit the latest value.
+     */
+    long offer(long nowMs) {
+        if (scheduled) {
+            return SCHEDULED;
+        }
+        long waitMs = emitted ? lastEmitMs + intervalMs - nowMs : 0;
+        if (waitMs <= 0) {
+            return NOW;
+        }
+        scheduled = true;
+        return waitMs;
+    }
+
+    void onEmitted(long nowMs) {
+        emitted = true;
+        lastEmitMs = nowMs;
+        scheduled = false;
+    }
+
+    boolean isScheduled() {
+        return scheduled;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.feeloscope.ui;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+
+/**
+ * Follows {@code source} at most once per interval, for views that cannot usefully redraw at the
+ * source's rate. Values in between are conflated: only the latest one is passed on, so the last
+ * value of a burst always arrives, just up to one interval late.
+ */
+public class ThrottledLiveData<T> extends MediatorLiveData<T> {
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final EmissionThrottle throttle;
+    private final Runnable emitLatest = this::emitLatest;
+    @Nullable
+    private T latest;
+
+    public ThrottledLiveData(@NonNull LiveData<T> source, long intervalMs) {
+        throttle = new EmissionThrottle(intervalMs);
+        addSource(source, this::offer);
+    }
+
+    private void offer(@Nullable T value) {
+        latest = value;
+        long delayMs = throttle.offer(SystemClock.uptimeMillis());
+        if (delayMs == EmissionThrottle.NOW) {
+            emitLatest();
+        } else if (delayMs > 0) {
+            handler.postDelayed(emitLatest, delayMs);
+        }
+    }
+
+    private void emitLatest() {
+        throttle.onEmitted(SystemClock.uptimeMillis());
+        T value = latest;
+        latest = null;
+        setValue(value);
+    }
+
+    @Override
+    protected void onInactive() {
+        super.onInactive();
+        // The source will not replay a value this stream already took, so keep it rather than drop it.
+        if (throttle.isScheduled()) {
+            handler.removeCallbacks(emitLatest);
+            emitLatest();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.feeloscope.ui.gallery;
+
+import android.text.TextUtils;
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.feeloscope.R;
+import com.example.feeloscope.databinding.ItemBatchResultBinding;
+import com.example.feeloscope.services.image.BatchImageResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class BatchResultAdapter extends RecyclerView.Adapter<BatchResultAdapter.ViewHolder> {
+
+    private final List<BatchImageResult> results = new ArrayList<>();
+
+    /**
+     * Shows {@code latest}. A batch only ever grows, so when the new list continues the current one
+     * only the added rows are inserted.
+     */
+    void submit(@NonNull List<BatchImageResult> latest) {
+        int size = results.size();
+        if (latest.size() >= size && (size == 0 || latest.get(size - 1) == results.get(size - 1))) {
+            results.addAll(latest.subList(size, latest.size()));
+            notifyItemRangeInserted(size, latest.size() - size);
+            return;
+        }
+        results.clear();
+        results.addAll(latest);
+        notifyDataSetChanged();
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        return new ViewHolder(ItemBatchResultBinding.inflate(LayoutInflater.from(parent.getContext()), parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        BatchImageResult result = results.get(position);
+        holder.binding.batchItemName.setText(result.getDisplayName());
+        Exception error = result.getError();
+        if (error != null) {
+            String message = TextUtils.isEmpty(error.getLocalizedMessage())
+                    ? error.getClass().getSimpleName()
+                    : error.getLocalizedMessage();
+            holder.binding.batchItemSummary.setText(
+                    holder.itemView.getContext().getString(R.string.gallery_batch_item_error, message));
+        } else {
+            holder.binding.batchItemSummary.setText(holder.itemView.getContext().getString(
+                    R.string.gallery_batch_item_summary,
+                    result.getFaceCount(), result.getSmilingCount(), result.getEyesOpenCount()));
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return results.size();
+    }
+
+    static final class ViewHolder extends RecyclerView.ViewHolder {
+        final ItemBatchResultBinding binding;
+
+        ViewHolder(@NonNull ItemBatchResultBinding binding) {
+            super(binding.getRoot());
+            this.binding = binding;
+        }
+    }
+}
@@ -3,7 +3,6 @@ package com.example.feeloscope.ui.gallery;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
-import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -13,75 +12,68 @@ import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.LinearLayoutManager;
 
-import com.example.feeloscope.R;
 import com.example.feeloscope.databinding.FragmentGalleryBinding;
-import com.example.feeloscope.services.FaceDetectionHelper;
-import com.example.feeloscope.services.FaceDetectionListener;
-import com.google.mlkit.vision.common.InputImage;
-import com.google.mlkit.vision.face.Face;
 
-import java.io.IOException;
 import java.util.List;
 
 public class GalleryFragment extends Fragment {
 
     private FragmentGalleryBinding binding;
+    private GalleryViewModel viewModel;
     private ActivityResultLauncher<String[]> imagePickerLauncher;
-    private FaceDetectionHelper faceDetectionHelper;
+    private ActivityResultLauncher<String[]> batchPickerLauncher;
+    private BatchResultAdapter batchResultAdapter;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        faceDetectionHelper = new FaceDetectionHelper(new FaceDetectionListener() {
-            @Override
-            public void onFacesDetected(List<Face> faces, InputImage image) {
-                if (!isAdded() || binding == null) {
-                    return;
-                }
-                int count = faces.size();
-                String message;
-                if (count == 0) {
-                    message = getString(R.string.gallery_analysis_result_none);
-                } else if (count == 1) {
-                    message = getString(R.string.gallery_analysis_result_single);
-                } else {
-                    message = getString(R.string.gallery_analysis_result_multiple, count);
-                }
-                binding.analysisResult.setText(message);
-            }
-
-            @Override
-            public void onError(Exception e) {
-                if (!isAdded() || binding == null) {
-                    return;
-                }
-                String message = TextUtils.isEmpty(e.getLocalizedMessage())
-                        ? e.getClass().getSimpleName()
-                        : e.getLocalizedMessage();
-                binding.analysisResult.setText(getString(R.string.gallery_analysis_error, message));
-            }
-        });
+        viewModel = new ViewModelProvider(this).get(GalleryViewModel.class);
 
         imagePickerLauncher = registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::handleImageResult);
+        batchPickerLauncher = registerForActivityResult(new ActivityResultContracts.OpenMultipleDocuments(), this::handleBatchResult);
     }
 
     public View onCreateView(@NonNull LayoutInflater inflater,
                              ViewGroup container, Bundle savedInstanceState) {
         binding = FragmentGalleryBinding.inflate(inflater, container, false);
         binding.selectImageButton.setOnClickListener(v -> imagePickerLauncher.launch(new String[]{"image/*"}));
+        binding.selectBatchButton.setOnClickListener(v -> batchPickerLauncher.launch(new String[]{"image/*"}));
+        batchResultAdapter = new BatchResultAdapter();
+        binding.batchResults.setLayoutManager(new LinearLayoutManager(requireContext()));
+        binding.batchResults.setAdapter(batchResultAdapter);
         return binding.getRoot();
     }
 
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        viewModel.getImage().observe(getViewLifecycleOwner(), bitmap -> {
+            binding.selectedImage.setVisibility(bitmap != null ? View.VISIBLE : View.GONE);
+            binding.selectedImage.setImageBitmap(bitmap);
+        });
+        viewModel.getAnalysisText().observe(getViewLifecycleOwner(), binding.analysisResult::setText);
+        viewModel.getBatchResults().observe(getViewLifecycleOwner(), results -> {
+            if (results != null) {
+                binding.batchResults.setVisibility(View.VISIBLE);
+                batchResultAdapter.submit(results);
+            }
+        });
+        viewModel.getBatchProgress().observe(getViewLifecycleOwner(), progress -> {
+            if (progress != null) {
+                binding.batchProgress.setVisibility(View.VISIBLE);
+                binding.batchProgress.setText(progress);
+            }
+        });
+    }
+
     private void handleImageResult(@Nullable Uri uri) {
-        if (!isAdded() || binding == null || uri == null) {
+        if (!isAdded() || uri == null) {
             return;
         }
 
-        binding.analysisResult.setText(getString(R.string.gallery_analysis_in_progress));
-        binding.selectedImage.setVisibility(View.VISIBLE);
-        binding.selectedImage.setImageURI(uri);
-
         try {
             requireContext().getContentResolver().takePersistableUriPermission(
                     uri,
@@ -91,34 +83,22 @@ public class GalleryFragment extends Fragment {
             // If the URI does not support persistable permissions we can still use it for this session.
         }
 
-        analyzeImage(uri);
+        viewModel.analyzeImage(uri);
     }
 
-    private void analyzeImage(@NonNull Uri uri) {
-        if (!isAdded()) {
+    private void handleBatchResult(@Nullable List<Uri> uris) {
+        if (!isAdded() || uris == null || uris.isEmpty()) {
             return;
         }
-        try {
-            InputImage inputImage = InputImage.fromFilePath(requireContext(), uri);
-            faceDetectionHelper.process(inputImage);
-        } catch (IOException e) {
-            if (binding != null) {
-                binding.analysisResult.setText(getString(R.string.gallery_analysis_error, e.getLocalizedMessage()));
-            }
-        }
+        viewModel.analyzeBatch(uris);
     }
 
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        binding = null;
-    }
-
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        if (faceDetectionHelper != null) {
-            faceDetectionHelper.close();
+        if (binding != null) {
+            binding.selectedImage.setImageDrawable(null);
         }
+        binding = null;
     }
-}
\ No newline at end of file
+}
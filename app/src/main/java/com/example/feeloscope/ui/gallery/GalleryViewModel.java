@@ -1,19 +1,262 @@
 package com.example.feeloscope.ui.gallery;
 
+import android.app.Application;
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
-import androidx.lifecycle.ViewModel;
 
-public class GalleryViewModel extends ViewModel {
+import com.example.feeloscope.R;
+import com.example.feeloscope.services.FaceDetectionHelper;
+import com.example.feeloscope.services.cache.ContentHasher;
+import com.example.feeloscope.services.cache.DetectionCache;
+import com.example.feeloscope.services.cache.ImageSummary;
+import com.example.feeloscope.services.image.BatchAnalysisListener;
+import com.example.feeloscope.services.image.BatchImageAnalyzer;
+import com.example.feeloscope.services.image.BatchImageResult;
+import com.example.feeloscope.services.image.BatchProgress;
+import com.example.feeloscope.services.image.BitmapPool;
+import com.example.feeloscope.services.image.SampledImageDecoder;
+import com.example.feeloscope.ui.ThrottledLiveData;
+import com.google.android.gms.tasks.Task;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Holds the picked image, its analysis and the running batch, so both survive a configuration
+ * change. Batch results arrive as fast as images are decoded; the list and progress text are
+ * throttled to {@link #UI_INTERVAL_MS} so a batch of cached images does not flood the views.
+ */
+public class GalleryViewModel extends AndroidViewModel {
+    private static final String TAG = "GalleryViewModel";
+
+    // Large enough for the ACCURATE detector and a full-width preview on common screens.
+    private static final int ANALYSIS_MAX_DIMENSION = 1280;
+    private static final long BITMAP_POOL_BYTES = 16L * 1024 * 1024;
+    // About 15 updates per second.
+    private static final long UI_INTERVAL_MS = 66;
+
+    private final ExecutorService decodeExecutor = Executors.newSingleThreadExecutor();
+    private final BitmapPool bitmapPool = new BitmapPool(BITMAP_POOL_BYTES);
+    private final SampledImageDecoder imageDecoder;
+    private final DetectionCache detectionCache;
+    private final FaceDetectionHelper faceDetectionHelper;
+    private final BatchImageAnalyzer batchAnalyzer;
+    private final MutableLiveData<Bitmap> image = new MutableLiveData<>();
+    private final MutableLiveData<String> analysisText = new MutableLiveData<>();
+    private final MutableLiveData<List<BatchImageResult>> batchResults = new MutableLiveData<>();
+    private final LiveData<List<BatchImageResult>> throttledBatchResults =
+            new ThrottledLiveData<>(batchResults, UI_INTERVAL_MS);
+    private final MutableLiveData<String> batchProgress = new MutableLiveData<>();
+    private final LiveData<String> throttledBatchProgress = new ThrottledLiveData<>(batchProgress, UI_INTERVAL_MS);
+    // Main thread only.
+    private final List<BatchImageResult> results = new ArrayList<>();
+    @Nullable
+    private Bitmap currentBitmap;
+    @Nullable
+    private Task<?> currentDetection;
+    private int decodeGeneration;
+    @Nullable
+    private BatchImageAnalyzer.Run batchRun;
+
+    public GalleryViewModel(@NonNull Application application) {
+        super(application);
+        imageDecoder = new SampledImageDecoder(application, bitmapPool);
+        detectionCache = DetectionCache.getInstance(application);
+        faceDetectionHelper = new FaceDetectionHelper.Builder().build();
+        batchAnalyzer = new BatchImageAnalyzer(application, imageDecoder);
+    }
+
+    /**
+     * The picked image, downsampled. It also backs the detector input, so it must not be modified.
+     */
+    @NonNull
+    public LiveData<Bitmap> getImage() {
+        return image;
+    }
+
+    @NonNull
+    public LiveData<String> getAnalysisText() {
+        return analysisText;
+    }
+
+    /**
+     * The results of the current batch so far, as an unmodifiable list, or {@code null} before the first batch.
+     */
+    @NonNull
+    public LiveData<List<BatchImageResult>> getBatchResults() {
+        return throttledBatchResults;
+    }
+
+    @NonNull
+    public LiveData<String> getBatchProgress() {
+        return throttledBatchProgress;
+    }
+
+    @MainThread
+    public void analyzeImage(@NonNull Uri uri) {
+        analysisText.setValue(getApplication().getString(R.string.gallery_analysis_in_progress));
+        int generation = ++decodeGeneration;
+        Executor mainExecutor = ContextCompat.getMainExecutor(getApplication());
+        ContentResolver contentResolver = getApplication().getContentResolver();
+        decodeExecutor.execute(() -> {
+            String cacheKey = cacheKey(contentResolver, uri);
+            ImageSummary cached = cacheKey != null ? detectionCache.getImage(cacheKey) : null;
+            if (cached != null) {
+                // Known image: show the result right away, the preview follows once decoded.
+                mainExecutor.execute(() -> {
+                    if (generation == decodeGeneration) {
+                        showFaceCount(cached.getFaceCount());
+                    }
+                });
+            }
+            try {
+                Bitmap bitmap = imageDecoder.decode(uri, ANALYSIS_MAX_DIMENSION);
+                mainExecutor.execute(() -> showAndAnalyze(bitmap, generation, cacheKey, cached != null));
+            } catch (IOException | RuntimeException e) {
+                mainExecutor.execute(() -> {
+                    if (generation == decodeGeneration) {
+                        showError(e);
+                    }
+                });
+            }
+        });
+    }
+
+    @MainThread
+    public void analyzeBatch(@NonNull List<Uri> uris) {
+        if (batchRun != null) {
+            batchRun.cancel();
+        }
+        results.clear();
+        batchResults.setValue(Collections.emptyList());
+        batchProgress.setValue(getApplication().getString(R.string.gallery_batch_started, uris.size()));
+
+        batchRun = batchAnalyzer.analyze(uris, new BatchAnalysisListener() {
+            @Override
+            public void onImageAnalyzed(@NonNull BatchImageResult result, @NonNull BatchProgress progress) {
+                results.add(result);
+                batchResults.setValue(Collections.unmodifiableList(new ArrayList<>(results)));
+                batchProgress.setValue(getApplication().getString(R.string.gallery_batch_progress,
+                        progress.getCompleted(), progress.getTotal(), progress.getImagesPerSecond(),
+                        Math.max(0L, progress.getRemainingMs() / 1000L)));
+            }
+
+            @Override
+            public void onCompleted(@NonNull BatchProgress progress) {
+                batchRun = null;
+                batchProgress.setValue(getApplication().getString(R.string.gallery_batch_completed,
+                        progress.getCompleted(), progress.getElapsedMs() / 1000f, progress.getImagesPerSecond()));
+            }
+        });
+    }
+
+    @Nullable
+    private String cacheKey(@NonNull ContentResolver contentResolver, @NonNull Uri uri) {
+        try {
+            long hash = ContentHasher.hash(contentResolver, uri);
+            return DetectionCache.imageKey(hash, faceDetectionHelper.getCurrentProfile(), ANALYSIS_MAX_DIMENSION);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Could not fingerprint " + uri + ": " + e.getMessage());
+            return null;
+        }
+    }
 
-    private final MutableLiveData<String> mText;
+    private void showAndAnalyze(@NonNull Bitmap bitmap, int generation, @Nullable String cacheKey,
+                                boolean cached) {
+        if (generation != decodeGeneration) {
+            bitmapPool.put(bitmap);
+            return;
+        }
+        Bitmap previousBitmap = currentBitmap;
+        Task<?> previousDetection = currentDetection;
+
+        // The same downsampled bitmap backs both the preview and the detector input.
+        currentBitmap = bitmap;
+        image.setValue(bitmap);
+        if (cached) {
+            currentDetection = null;
+        } else {
+            Task<List<Face>> detection = faceDetectionHelper.process(InputImage.fromBitmap(bitmap, 0));
+            // A result for an image that has been replaced in the meantime must not overwrite its count.
+            detection.addOnSuccessListener(faces -> {
+                if (generation == decodeGeneration) {
+                    showFaceCount(faces.size());
+                }
+            }).addOnFailureListener(e -> {
+                if (generation == decodeGeneration) {
+                    showError(e);
+                }
+            });
+            if (cacheKey != null) {
+                detection.addOnSuccessListener(faces -> detectionCache.putImage(cacheKey, ImageSummary.of(faces)));
+            }
+            currentDetection = detection;
+        }
+
+        releaseWhenDetected(previousBitmap, previousDetection);
+    }
+
+    private void showFaceCount(int count) {
+        String message;
+        if (count == 0) {
+            message = getApplication().getString(R.string.gallery_analysis_result_none);
+        } else if (count == 1) {
+            message = getApplication().getString(R.string.gallery_analysis_result_single);
+        } else {
+            message = getApplication().getString(R.string.gallery_analysis_result_multiple, count);
+        }
+        analysisText.setValue(message);
+    }
+
+    private void showError(@NonNull Exception e) {
+        String message = TextUtils.isEmpty(e.getLocalizedMessage())
+                ? e.getClass().getSimpleName()
+                : e.getLocalizedMessage();
+        analysisText.setValue(getApplication().getString(R.string.gallery_analysis_error, message));
+    }
 
-    public GalleryViewModel() {
-        mText = new MutableLiveData<>();
-        mText.setValue("Hier kannst du deine Bilder nutzen");
+    private void releaseWhenDetected(@Nullable Bitmap bitmap, @Nullable Task<?> detection) {
+        if (bitmap == null) {
+            return;
+        }
+        if (detection == null || detection.isComplete()) {
+            bitmapPool.put(bitmap);
+        } else {
+            detection.addOnCompleteListener(task -> bitmapPool.put(bitmap));
+        }
     }
 
-    public LiveData<String> getText() {
-        return mText;
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        if (batchRun != null) {
+            batchRun.cancel();
+            batchRun = null;
+        }
+        decodeGeneration++;
+        decodeExecutor.shutdownNow();
+        faceDetectionHelper.close();
+        releaseWhenDetected(currentBitmap, currentDetection);
+        bitmapPool.clear();
+        currentBitmap = null;
+        currentDetection = null;
     }
-}
\ No newline at end of file
+}
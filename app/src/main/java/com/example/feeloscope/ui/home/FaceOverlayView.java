@@ -0,0 +1,315 @@
+package com.example.feeloscope.ui.home;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import com.example.feeloscope.R;
+import com.example.feeloscope.services.DetectionResult;
+import com.example.feeloscope.services.FaceFrame;
+
+/**
+ * Draws face boxes, landmarks and state labels on top of the camera preview.
+ * <p>
+ * All paints, label strings and coordinate buffers are created up front, and faces are mapped
+ * to view coordinates once per result rather than once per draw, so neither updating nor drawing
+ * allocates. The image-to-view matrix matches {@code PreviewView}'s default FILL_CENTER scaling
+ * and is only rebuilt when the view size, frame size or mirroring changes. Results that do not
+ * visibly move anything are dropped without redrawing; otherwise only the area covered by the old
+ * and new faces is invalidated.
+ */
+public class FaceOverlayView extends View {
+    static final int LABEL_NONE = -1;
+    static final int LABEL_SMILING = 1;
+    static final int LABEL_EYES_OPEN = 2;
+    // Changes smaller than this many pixels are not worth a redraw.
+    private static final float MOVE_EPSILON = 0.5f;
+
+    private final Paint boxPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint landmarkPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint labelBackgroundPaint = new Paint();
+    // Indexed by a combination of LABEL_SMILING and LABEL_EYES_OPEN.
+    private final String[] labels = new String[4];
+    private final float[] labelWidths = new float[4];
+    private final float labelPadding;
+    private final float labelHeight;
+    private final float labelBaselineOffset;
+    private final float margin;
+
+    private final Matrix imageToView = new Matrix();
+    private final RectF mapped = new RectF();
+    private final RectF dirty = new RectF();
+    private final float[] landmarkSource = new float[FaceFrame.LANDMARK_COUNT * 2];
+
+    // Two sets of view-space buffers: the one being drawn and the one the next result is mapped into.
+    private FaceBuffers shown = new FaceBuffers();
+    private FaceBuffers pending = new FaceBuffers();
+
+    @Nullable
+    private FaceFrame frame;
+    private boolean mirrored;
+    private int matrixViewWidth = -1;
+    private int matrixViewHeight = -1;
+    private int matrixSourceWidth = -1;
+    private int matrixSourceHeight = -1;
+    private boolean matrixMirrored;
+
+    public FaceOverlayView(@NonNull Context context) {
+        this(context, null);
+    }
+
+    public FaceOverlayView(@NonNull Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        Resources resources = context.getResources();
+        float strokeWidth = resources.getDimension(R.dimen.face_overlay_stroke_width);
+        labelPadding = resources.getDimension(R.dimen.face_overlay_label_padding);
+
+        boxPaint.setStyle(Paint.Style.STROKE);
+        boxPaint.setStrokeWidth(strokeWidth);
+        boxPaint.setColor(ContextCompat.getColor(context, R.color.face_overlay_box));
+
+        landmarkPaint.setStyle(Paint.Style.STROKE);
+        landmarkPaint.setStrokeCap(Paint.Cap.ROUND);
+        landmarkPaint.setStrokeWidth(resources.getDimension(R.dimen.face_overlay_landmark_size));
+        landmarkPaint.setColor(ContextCompat.getColor(context, R.color.face_overlay_landmark));
+
+        labelPaint.setTextSize(resources.getDimension(R.dimen.face_overlay_label_text_size));
+        labelPaint.setColor(ContextCompat.getColor(context, R.color.off_white));
+        labelBackgroundPaint.setColor(ContextCompat.getColor(context, R.color.overlay_card_background));
+
+        loadLabels(resources, labels);
+        for (int i = 0; i < labels.length; i++) {
+            labelWidths[i] = labelPaint.measureText(labels[i]) + 2 * labelPadding;
+        }
+        Paint.FontMetrics metrics = labelPaint.getFontMetrics();
+        labelHeight = metrics.descent - metrics.ascent + 2 * labelPadding;
+        labelBaselineOffset = labelPadding - metrics.ascent;
+        margin = Math.max(strokeWidth, landmarkPaint.getStrokeWidth());
+    }
+
+    /**
+     * Fills {@code labels}, indexed by the result of {@link #labelFor}, with the state texts.
+     */
+    static void loadLabels(@NonNull Resources resources, @NonNull String[] labels) {
+        labels[0] = resources.getString(R.string.face_overlay_eyes_closed);
+        labels[LABEL_EYES_OPEN] = resources.getString(R.string.face_overlay_eyes_open);
+        labels[LABEL_SMILING] = resources.getString(R.string.face_overlay_smiling_eyes_closed);
+        labels[LABEL_SMILING | LABEL_EYES_OPEN] = resources.getString(R.string.face_overlay_smiling_eyes_open);
+    }
+
+    /**
+     * Whether the preview shows a mirrored image, as it does for the front camera.
+     */
+    public void setMirrored(boolean mirrored) {
+        if (this.mirrored != mirrored) {
+            this.mirrored = mirrored;
+            update();
+        }
+    }
+
+    /**
+     * Shows the faces of {@code frame}, which must not change afterwards, e.g. one from a
+     * {@link DetectionResult}. Call on the main thread.
+     */
+    public void setFaces(@Nullable FaceFrame frame) {
+        this.frame = frame;
+        update();
+    }
+
+    public void clear() {
+        setFaces(null);
+    }
+
+    @Override
+    protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
+        super.onSizeChanged(width, height, oldWidth, oldHeight);
+        update();
+    }
+
+    private void update() {
+        pending.faceCount = 0;
+        pending.landmarkCount = 0;
+        if (frame != null && frame.getFaceCount() > 0 && getWidth() > 0 && getHeight() > 0) {
+            updateMatrix(frame);
+            mapFaces(frame, pending);
+        }
+        if (pending.sameAs(shown)) {
+            return;
+        }
+        dirty.setEmpty();
+        shown.addBoundsTo(dirty);
+        pending.addBoundsTo(dirty);
+        FaceBuffers previous = shown;
+        shown = pending;
+        pending = previous;
+        if (!dirty.isEmpty()) {
+            dirty.inset(-margin, -margin);
+            postInvalidateOnAnimation((int) Math.floor(dirty.left), (int) Math.floor(dirty.top),
+                    (int) Math.ceil(dirty.right), (int) Math.ceil(dirty.bottom));
+        }
+    }
+
+    private void updateMatrix(@NonNull FaceFrame frame) {
+        boolean rotated = frame.getRotationDegrees() % 180 != 0;
+        int sourceWidth = rotated ? frame.getImageHeight() : frame.getImageWidth();
+        int sourceHeight = rotated ? frame.getImageWidth() : frame.getImageHeight();
+        int viewWidth = getWidth();
+        int viewHeight = getHeight();
+        if (viewWidth == matrixViewWidth && viewHeight == matrixViewHeight && sourceWidth == matrixSourceWidth
+                && sourceHeight == matrixSourceHeight && mirrored == matrixMirrored) {
+            return;
+        }
+        matrixViewWidth = viewWidth;
+        matrixViewHeight = viewHeight;
+        matrixSourceWidth = sourceWidth;
+        matrixSourceHeight = sourceHeight;
+        matrixMirrored = mirrored;
+
+        float scale = Math.max((float) viewWidth / sourceWidth, (float) viewHeight / sourceHeight);
+        imageToView.setScale(scale, scale);
+        imageToView.postTranslate((viewWidth - sourceWidth * scale) / 2f, (viewHeight - sourceHeight * scale) / 2f);
+        if (mirrored) {
+            imageToView.postScale(-1f, 1f, viewWidth / 2f, 0f);
+        }
+    }
+
+    private void mapFaces(@NonNull FaceFrame frame, @NonNull FaceBuffers out) {
+        int faceCount = frame.getFaceCount();
+        out.ensureCapacity(faceCount);
+        for (int face = 0; face < faceCount; face++) {
+            mapped.set(frame.getLeft(face), frame.getTop(face), frame.getRight(face), frame.getBottom(face));
+            imageToView.mapRect(mapped);
+            int offset = face * 4;
+            out.boxes[offset] = mapped.left;
+            out.boxes[offset + 1] = mapped.top;
+            out.boxes[offset + 2] = mapped.right;
+            out.boxes[offset + 3] = mapped.bottom;
+            out.labels[face] = labelFor(frame, face);
+
+            int points = 0;
+            for (int landmark = 0; landmark < FaceFrame.LANDMARK_COUNT; landmark++) {
+                if (frame.hasLandmark(face, landmark)) {
+                    landmarkSource[points * 2] = frame.getLandmarkX(face, landmark);
+                    landmarkSource[points * 2 + 1] = frame.getLandmarkY(face, landmark);
+                    points++;
+                }
+            }
+            if (points > 0) {
+                imageToView.mapPoints(out.landmarks, out.landmarkCount * 2, landmarkSource, 0, points);
+                out.landmarkCount += points;
+            }
+        }
+        out.faceCount = faceCount;
+    }
+
+    static int labelFor(@NonNull FaceFrame frame, int face) {
+        int smiling = frame.getSmilingState(face);
+        int eyesOpen = frame.getEyesOpenState(face);
+        if (smiling == FaceFrame.STATE_UNKNOWN || eyesOpen == FaceFrame.STATE_UNKNOWN) {
+            return LABEL_NONE;
+        }
+        int label = 0;
+        if (smiling == FaceFrame.STATE_YES) {
+            label |= LABEL_SMILING;
+        }
+        if (eyesOpen == FaceFrame.STATE_YES) {
+            label |= LABEL_EYES_OPEN;
+        }
+        return label;
+    }
+
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        super.onDraw(canvas);
+        FaceBuffers faces = shown;
+        for (int face = 0; face < faces.faceCount; face++) {
+            int offset = face * 4;
+            float left = faces.boxes[offset];
+            float top = faces.boxes[offset + 1];
+            canvas.drawRect(left, top, faces.boxes[offset + 2], faces.boxes[offset + 3], boxPaint);
+            int label = faces.labels[face];
+            if (label != LABEL_NONE) {
+                float labelTop = top - labelHeight;
+                canvas.drawRect(left, labelTop, left + labelWidths[label], top, labelBackgroundPaint);
+                canvas.drawText(labels[label], left + labelPadding, labelTop + labelBaselineOffset, labelPaint);
+            }
+        }
+        if (faces.landmarkCount > 0) {
+            canvas.drawPoints(faces.landmarks, 0, faces.landmarkCount * 2, landmarkPaint);
+        }
+    }
+
+    /**
+     * Faces mapped to view coordinates.
+     */
+    private final class FaceBuffers {
+        float[] boxes = new float[0];
+        int[] labels = new int[0];
+        float[] landmarks = new float[0];
+        int faceCount;
+        int landmarkCount;
+
+        void ensureCapacity(int faces) {
+            if (labels.length < faces) {
+                // Only grows when more faces are visible than ever before.
+                int capacity = Math.max(faces, 4);
+                boxes = new float[capacity * 4];
+                labels = new int[capacity];
+                landmarks = new float[capacity * FaceFrame.LANDMARK_COUNT * 2];
+            }
+        }
+
+        boolean sameAs(@NonNull FaceBuffers other) {
+            if (faceCount != other.faceCount || landmarkCount != other.landmarkCount) {
+                return false;
+            }
+            for (int face = 0; face < faceCount; face++) {
+                if (labels[face] != other.labels[face]) {
+                    return false;
+                }
+            }
+            return closeTo(boxes, other.boxes, faceCount * 4)
+                    && closeTo(landmarks, other.landmarks, landmarkCount * 2);
+        }
+
+        /**
+         * Grows {@code bounds} to cover every box, label and landmark.
+         */
+        void addBoundsTo(@NonNull RectF bounds) {
+            for (int face = 0; face < faceCount; face++) {
+                int offset = face * 4;
+                float top = boxes[offset + 1];
+                if (labels[face] != LABEL_NONE) {
+                    top -= labelHeight;
+                    bounds.union(boxes[offset], top, boxes[offset] + labelWidths[labels[face]], boxes[offset + 1]);
+                }
+                bounds.union(boxes[offset], top, boxes[offset + 2], boxes[offset + 3]);
+            }
+            for (int point = 0; point < landmarkCount; point++) {
+                float x = landmarks[point * 2];
+                float y = landmarks[point * 2 + 1];
+                // RectF.union(x, y) would also pull in the origin while the bounds are still empty.
+                bounds.union(x, y, x + 1f, y + 1f);
+            }
+        }
+    }
+
+    private static boolean closeTo(@NonNull float[] a, @NonNull float[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (Math.abs(a[i] - b[i]) > MOVE_EPSILON) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
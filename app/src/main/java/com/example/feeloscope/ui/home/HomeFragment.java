@@ -1,8 +1,13 @@
 package com.example.feeloscope.ui.home;
 
 import android.Manifest;
+import android.content.Context;
 import android.content.pm.PackageManager;
+import android.content.res.Resources;
+import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -12,23 +17,56 @@ import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.camera.core.CameraInfo;
+import androidx.camera.core.CameraInfoUnavailableException;
 import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.Preview;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.view.PreviewView;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 
 import com.example.feeloscope.R;
 import com.example.feeloscope.databinding.FragmentHomeBinding;
+import com.example.feeloscope.services.DetectionResult;
+import com.example.feeloscope.services.FaceDetectionHelper;
+import com.example.feeloscope.services.camera.AnalysisResolutionSelector;
+import com.example.feeloscope.services.metrics.LatencyHistogram;
+import com.example.feeloscope.services.metrics.MetricsSnapshot;
+import com.example.feeloscope.services.metrics.PipelineMetrics;
+import com.example.feeloscope.services.snapshot.SnapshotWriter;
 import com.google.common.util.concurrent.ListenableFuture;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 public class HomeFragment extends Fragment {
 
+    private static final String TAG = "HomeFragment";
+    private static final long HUD_REFRESH_MS = 500;
+    private static final int SNAPSHOT_QUALITY = 90;
+
     private FragmentHomeBinding binding;
+    private HomeViewModel viewModel;
     private ListenableFuture<ProcessCameraProvider> cameraProviderFuture;
+    @Nullable
+    private ProcessCameraProvider cameraProvider;
+    @Nullable
+    private Preview preview;
+    @Nullable
+    private ImageAnalysis imageAnalysis;
+    private final Runnable hudUpdater = this::updateHud;
+    @Nullable
+    private SnapshotCapturer snapshotCapturer;
 
     private final ActivityResultLauncher<String> requestPermissionLauncher =
             registerForActivityResult(new ActivityResultContracts.RequestPermission(), isGranted -> {
@@ -39,6 +77,21 @@ public class HomeFragment extends Fragment {
                 }
             });
 
+    private final ActivityResultLauncher<String> requestStoragePermissionLauncher =
+            registerForActivityResult(new ActivityResultContracts.RequestPermission(), isGranted -> {
+                if (isGranted) {
+                    takeSnapshot();
+                } else if (isAdded()) {
+                    Toast.makeText(requireContext(), R.string.storage_permission_denied, Toast.LENGTH_LONG).show();
+                }
+            });
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        viewModel = new ViewModelProvider(this).get(HomeViewModel.class);
+    }
+
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater,
                              ViewGroup container, Bundle savedInstanceState) {
@@ -50,22 +103,164 @@ public class HomeFragment extends Fragment {
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
 
-        binding.shutterButton.setOnClickListener(v -> {
-            if (isAdded()) {
-                Toast.makeText(requireContext(), R.string.shutter_placeholder_message, Toast.LENGTH_SHORT).show();
+        snapshotCapturer = new SnapshotCapturer(requireContext(), viewModel.getFaceAnalyzer(),
+                new SnapshotWriter(requireContext().getContentResolver(), SnapshotWriter.Format.JPEG, SNAPSHOT_QUALITY),
+                new SnapshotCapturer.Listener() {
+                    @Override
+                    public void onSnapshotSaved(@NonNull Uri uri) {
+                        if (isAdded()) {
+                            Toast.makeText(requireContext(), R.string.snapshot_saved, Toast.LENGTH_SHORT).show();
+                        }
+                    }
+
+                    @Override
+                    public void onSnapshotFailed(@NonNull Exception e) {
+                        Log.w(TAG, "Could not save snapshot: " + e.getMessage());
+                        if (isAdded()) {
+                            Toast.makeText(requireContext(), getString(R.string.snapshot_failed, e.getLocalizedMessage()),
+                                    Toast.LENGTH_LONG).show();
+                        }
+                    }
+                });
+        binding.shutterButton.setOnClickListener(v -> takeSnapshot());
+        binding.switchCameraButton.setOnClickListener(v -> switchLens());
+
+        // Every result goes to the overlay, and to a pending snapshot that waits for its frame's result.
+        viewModel.getResults().observe(getViewLifecycleOwner(), result -> {
+            if (result == null) {
+                binding.faceOverlay.clear();
+                return;
+            }
+            binding.faceOverlay.setFaces(result.getFaces());
+            if (snapshotCapturer != null) {
+                snapshotCapturer.onDetectionResult(result);
+            }
+        });
+        viewModel.getThrottledResults().observe(getViewLifecycleOwner(), this::showSummary);
+        viewModel.getDetectorReady().observe(getViewLifecycleOwner(),
+                ready -> showSummary(viewModel.getThrottledResults().getValue()));
+        viewModel.getErrors().observe(getViewLifecycleOwner(), e -> {
+            if (e != null && snapshotCapturer != null) {
+                snapshotCapturer.onDetectionError(e);
             }
         });
 
+        // Set before the listener, so restoring the switch after a configuration change does not toast again.
+        binding.aiToggleSwitch.setChecked(viewModel.isAnalysisEnabled());
         binding.aiToggleSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            viewModel.setAnalysisEnabled(isChecked);
+            showSummary(viewModel.getThrottledResults().getValue());
             if (isAdded()) {
                 int messageRes = isChecked ? R.string.ai_enabled_message : R.string.ai_disabled_message;
                 Toast.makeText(requireContext(), messageRes, Toast.LENGTH_SHORT).show();
             }
         });
 
+        // Hidden debug HUD: long-press the top card to show it, long-press the HUD to export a snapshot.
+        binding.topControls.setOnLongClickListener(v -> {
+            toggleHud();
+            return true;
+        });
+        binding.debugHud.setOnLongClickListener(v -> {
+            exportMetrics();
+            return true;
+        });
+
         ensureCameraPermission();
     }
 
+    /**
+     * Shows the counts of {@code result}. The summary only ever holds counts, so its visibility
+     * tells that a result arrived; the baseline profile generator waits for it.
+     */
+    private void showSummary(@Nullable DetectionResult result) {
+        // Right after a cold start the model may still be loading; say so instead of showing nothing.
+        boolean preparing = result == null && viewModel.isAnalysisEnabled()
+                && !Boolean.TRUE.equals(viewModel.getDetectorReady().getValue());
+        binding.detectorStatus.setVisibility(preparing ? View.VISIBLE : View.GONE);
+        if (result == null) {
+            binding.liveSummary.setVisibility(View.GONE);
+            return;
+        }
+        binding.liveSummary.setVisibility(View.VISIBLE);
+        binding.liveSummary.setText(getString(R.string.home_live_summary,
+                result.getFaceCount(), result.getSmilingFaceCount(), result.getEyesOpenFaceCount()));
+    }
+
+    private void toggleHud() {
+        if (binding == null) {
+            return;
+        }
+        boolean show = binding.debugHud.getVisibility() != View.VISIBLE;
+        binding.debugHud.setVisibility(show ? View.VISIBLE : View.GONE);
+        binding.debugHud.removeCallbacks(hudUpdater);
+        if (show) {
+            viewModel.getPipelineMetrics().reset();
+            updateHud();
+        }
+    }
+
+    private void updateHud() {
+        if (binding == null || binding.debugHud.getVisibility() != View.VISIBLE) {
+            return;
+        }
+        FaceDetectionHelper faceDetectionHelper = viewModel.getFaceDetectionHelper();
+        MetricsSnapshot snapshot = viewModel.getPipelineMetrics().snapshot();
+        LatencyHistogram.Snapshot detector = snapshot.getStage(PipelineMetrics.Stage.DETECTOR);
+        binding.debugHud.setText(getString(R.string.debug_hud_template,
+                snapshot.getFramesPerSecond(),
+                faceDetectionHelper.getCurrentProfile().name(),
+                snapshot.getStage(PipelineMetrics.Stage.CAPTURE_TO_ANALYZE).getPercentileMillis(0.95),
+                detector.getPercentileMillis(0.5),
+                detector.getPercentileMillis(0.95),
+                snapshot.getStage(PipelineMetrics.Stage.POST_PROCESS).getPercentileMillis(0.95),
+                snapshot.getStage(PipelineMetrics.Stage.DELIVERY).getPercentileMillis(0.95),
+                snapshot.getCount(PipelineMetrics.Counter.ANALYZED),
+                snapshot.getCount(PipelineMetrics.Counter.DROPPED),
+                snapshot.getCount(PipelineMetrics.Counter.SKIPPED),
+                snapshot.getCount(PipelineMetrics.Counter.CROPPED),
+                snapshot.getCount(PipelineMetrics.Counter.TRACK_ONLY),
+                snapshot.getCount(PipelineMetrics.Counter.UNCHANGED),
+                snapshot.getCount(PipelineMetrics.Counter.THROTTLED)));
+        binding.debugHud.postDelayed(hudUpdater, HUD_REFRESH_MS);
+    }
+
+    private void exportMetrics() {
+        if (!isAdded()) {
+            return;
+        }
+        FaceDetectionHelper faceDetectionHelper = viewModel.getFaceDetectionHelper();
+        String json = viewModel.getPipelineMetrics().snapshot().toJson(Build.MANUFACTURER + " " + Build.MODEL,
+                faceDetectionHelper.getCurrentProfile());
+        // The snapshot is lock-free; only the file work leaves the main thread.
+        Context context = requireContext().getApplicationContext();
+        Resources resources = getResources();
+        Executor mainExecutor = ContextCompat.getMainExecutor(context);
+        viewModel.getFileExecutor().execute(() -> {
+            File directory = context.getExternalFilesDir("metrics");
+            String message;
+            try {
+                if (directory == null || (!directory.isDirectory() && !directory.mkdirs())) {
+                    throw new IOException("No app storage available");
+                }
+                File file = new File(directory, "metrics-" + System.currentTimeMillis() + ".json");
+                try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                    writer.write(json);
+                }
+                message = resources.getString(R.string.debug_hud_exported, file.getAbsolutePath());
+            } catch (IOException e) {
+                Log.w(TAG, "Could not export metrics: " + e.getMessage());
+                message = resources.getString(R.string.debug_hud_export_failed, e.getLocalizedMessage());
+            }
+            String toast = message;
+            mainExecutor.execute(() -> {
+                if (isAdded()) {
+                    Toast.makeText(requireContext(), toast, Toast.LENGTH_LONG).show();
+                }
+            });
+        });
+    }
+
     private void ensureCameraPermission() {
         if (ContextCompat.checkSelfPermission(requireContext(), Manifest.permission.CAMERA)
                 == PackageManager.PERMISSION_GRANTED) {
@@ -81,20 +276,29 @@ public class HomeFragment extends Fragment {
         }
 
         final PreviewView previewView = binding.cameraPreview;
+        previewView.getPreviewStreamState().observe(getViewLifecycleOwner(), state -> {
+            if (state == PreviewView.StreamState.STREAMING && binding != null
+                    && binding.switchCameraButton.getVisibility() != View.VISIBLE) {
+                // The first preview frame is what the user waits for; the startup benchmark measures up to here.
+                binding.switchCameraButton.setVisibility(View.VISIBLE);
+                requireActivity().reportFullyDrawn();
+            }
+        });
+        // Usually already initialized: MainActivity requests the provider while it is created.
         cameraProviderFuture = ProcessCameraProvider.getInstance(requireContext());
         cameraProviderFuture.addListener(() -> {
             try {
-                ProcessCameraProvider cameraProvider = cameraProviderFuture.get();
+                ProcessCameraProvider provider = cameraProviderFuture.get();
+                if (binding == null) {
+                    return;
+                }
+                cameraProvider = provider;
 
-                Preview preview = new Preview.Builder().build();
+                // The preview keeps CameraX's display-sized default; only analysis is sized down.
+                preview = new Preview.Builder().build();
                 preview.setSurfaceProvider(previewView.getSurfaceProvider());
 
-                CameraSelector cameraSelector = new CameraSelector.Builder()
-                        .requireLensFacing(CameraSelector.LENS_FACING_BACK)
-                        .build();
-
-                cameraProvider.unbindAll();
-                cameraProvider.bindToLifecycle(getViewLifecycleOwner(), cameraSelector, preview);
+                bindCamera();
             } catch (ExecutionException e) {
                 if (isAdded()) {
                     Toast.makeText(requireContext(), e.getLocalizedMessage(), Toast.LENGTH_SHORT).show();
@@ -105,10 +309,102 @@ public class HomeFragment extends Fragment {
         }, ContextCompat.getMainExecutor(requireContext()));
     }
 
+    /**
+     * Binds this fragment's use cases to the lens chosen in the view model. Only these use cases
+     * are unbound first, so switching lenses leaves everything else alone: the analyzer, its
+     * buffer pools and the loaded detector carry straight over to the new camera. The analysis
+     * use case is rebuilt, since its size and frame rate depend on the lens.
+     */
+    private void bindCamera() {
+        if (cameraProvider == null || preview == null || binding == null) {
+            return;
+        }
+        int lensFacing = viewModel.getLensFacing();
+        CameraSelector cameraSelector = new CameraSelector.Builder()
+                .requireLensFacing(lensFacing)
+                .build();
+        List<CameraInfo> cameraInfos = cameraSelector.filter(cameraProvider.getAvailableCameraInfos());
+
+        ImageAnalysis.Builder analysisBuilder = new ImageAnalysis.Builder()
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST);
+        AnalysisResolutionSelector.configure(analysisBuilder, viewModel.getAnalysisMinShortSide(lensFacing),
+                cameraInfos.isEmpty() ? null : cameraInfos.get(0));
+        ImageAnalysis analysis = analysisBuilder.build();
+        analysis.setAnalyzer(viewModel.getAnalysisExecutor(), viewModel.getFaceAnalyzer());
+
+        if (imageAnalysis != null) {
+            cameraProvider.unbind(preview, imageAnalysis);
+        } else {
+            cameraProvider.unbind(preview);
+        }
+        imageAnalysis = analysis;
+        cameraProvider.bindToLifecycle(getViewLifecycleOwner(), cameraSelector, preview, analysis);
+        viewModel.onCameraBound(lensFacing);
+        // PreviewView mirrors the front camera, the analysis frames are not.
+        binding.faceOverlay.setMirrored(lensFacing == CameraSelector.LENS_FACING_FRONT);
+    }
+
+    private void switchLens() {
+        if (!isAdded() || cameraProvider == null) {
+            return;
+        }
+        int lensFacing = viewModel.getLensFacing() == CameraSelector.LENS_FACING_BACK
+                ? CameraSelector.LENS_FACING_FRONT : CameraSelector.LENS_FACING_BACK;
+        if (!hasCamera(lensFacing)) {
+            Toast.makeText(requireContext(), R.string.camera_lens_unavailable, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        long startNanos = System.nanoTime();
+        viewModel.setLensFacing(lensFacing);
+        bindCamera();
+        Log.d(TAG, "Rebound camera for lens " + lensFacing + " in "
+                + (System.nanoTime() - startNanos) / 1_000_000L + " ms.");
+    }
+
+    private boolean hasCamera(int lensFacing) {
+        try {
+            return cameraProvider != null && cameraProvider.hasCamera(
+                    new CameraSelector.Builder().requireLensFacing(lensFacing).build());
+        } catch (CameraInfoUnavailableException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Saves the next analyzed frame with its faces drawn in. Repeated presses while a snapshot is
+     * still being taken are ignored by the capturer.
+     */
+    private void takeSnapshot() {
+        if (!isAdded() || snapshotCapturer == null) {
+            return;
+        }
+        if (!viewModel.isAnalysisEnabled()) {
+            Toast.makeText(requireContext(), R.string.snapshot_needs_analysis, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q
+                && ContextCompat.checkSelfPermission(requireContext(), Manifest.permission.WRITE_EXTERNAL_STORAGE)
+                != PackageManager.PERMISSION_GRANTED) {
+            requestStoragePermissionLauncher.launch(Manifest.permission.WRITE_EXTERNAL_STORAGE);
+            return;
+        }
+        snapshotCapturer.capture();
+    }
+
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        if (binding != null) {
+            binding.debugHud.removeCallbacks(hudUpdater);
+        }
         binding = null;
         cameraProviderFuture = null;
+        cameraProvider = null;
+        preview = null;
+        imageAnalysis = null;
+        if (snapshotCapturer != null) {
+            snapshotCapturer.close();
+            snapshotCapturer = null;
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,19 +1,286 @@
 package com.example.feeloscope.ui.home;
 
+import android.app.Application;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.PowerManager;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.camera.core.CameraSelector;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
-import androidx.lifecycle.ViewModel;
 
-public class HomeViewModel extends ViewModel {
+import com.example.feeloscope.services.AdaptiveProfileController;
+import com.example.feeloscope.services.DetectionResult;
+import com.example.feeloscope.services.DetectorProfile;
+import com.example.feeloscope.services.DetectorRegistry;
+import com.example.feeloscope.services.FaceAnalyzer;
+import com.example.feeloscope.services.FaceDetectionHelper;
+import com.example.feeloscope.services.FaceDetectionListener;
+import com.example.feeloscope.services.FaceDetectionResultListener;
+import com.example.feeloscope.services.FaceFrame;
+import com.example.feeloscope.services.FaceStateClassifier;
+import com.example.feeloscope.services.FaceStateSettings;
+import com.example.feeloscope.services.FaceTracker;
+import com.example.feeloscope.services.FrameScheduler;
+import com.example.feeloscope.services.RoiPlanner;
+import com.example.feeloscope.services.camera.ResolutionCalibrator;
+import com.example.feeloscope.services.history.HistoryLog;
+import com.example.feeloscope.services.metrics.PipelineMetrics;
+import com.example.feeloscope.ui.ThrottledLiveData;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Owns the live analysis pipeline, so a configuration change only rebinds the camera: tracks,
+ * debounced states and the adaptive profile all carry over, and the new view starts with the
+ * last result instead of an empty overlay.
+ * <p>
+ * Results are published as {@link LiveData}, which keeps only the latest value for observers
+ * that are not started. The overlay follows every result; text follows at most
+ * {@link #TEXT_INTERVAL_MS} apart.
+ */
+public class HomeViewModel extends AndroidViewModel {
+    private static final String TAG = "HomeViewModel";
+    // Roughly 15 analyzed frames per second keeps the live state responsive on mid-range phones.
+    private static final long LIVE_FRAME_BUDGET_MS = 66;
+    // About 15 updates per second; text changing faster than that cannot be read anyway.
+    static final long TEXT_INTERVAL_MS = 66;
+
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics();
+    private final FrameScheduler frameScheduler = new FrameScheduler();
+    private final FaceStateClassifier stateClassifier = new FaceStateClassifier();
+    private final FaceStateSettings stateSettings;
+    // Held here because the preferences only keep a weak reference to it.
+    private final SharedPreferences.OnSharedPreferenceChangeListener thresholdListener;
+    private final HistoryLog historyLog;
+    private final ResolutionCalibrator resolutionCalibrator;
+    private final FaceDetectionHelper faceDetectionHelper;
+    private final FaceAnalyzer faceAnalyzer;
+    private final ExecutorService analysisExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService fileExecutor = Executors.newSingleThreadExecutor();
+    private final MutableLiveData<DetectionResult> results = new MutableLiveData<>();
+    private final LiveData<DetectionResult> throttledResults = new ThrottledLiveData<>(results, TEXT_INTERVAL_MS);
+    private final MutableLiveData<Exception> errors = new MutableLiveData<>();
+    private final MutableLiveData<Boolean> detectorReady = new MutableLiveData<>(false);
+    // Keeps the live detector loaded while this screen exists, even before analysis is switched on,
+    // so getDetectorReady() cannot turn stale when the registry closes idle detectors.
+    private final DetectorRegistry.Lease liveDetectorLease;
+    @Nullable
+    private PowerManager.OnThermalStatusChangedListener thermalListener;
+    private int lensFacing = CameraSelector.LENS_FACING_BACK;
+
+    public HomeViewModel(@NonNull Application application) {
+        super(application);
+        historyLog = HistoryLog.getInstance(application);
+        resolutionCalibrator = new ResolutionCalibrator(application);
+        stateSettings = new FaceStateSettings(application);
+        stateSettings.applyTo(stateClassifier);
+        thresholdListener = (preferences, key) -> stateSettings.applyTo(stateClassifier);
+        stateSettings.registerListener(thresholdListener);
+        faceDetectionHelper = new FaceDetectionHelper.Builder()
+                .setAdaptiveProfile(new AdaptiveProfileController(LIVE_FRAME_BUDGET_MS))
+                .setTracker(new FaceTracker())
+                .setStateClassifier(stateClassifier)
+                .setRoiPlanner(new RoiPlanner())
+                .setMetrics(pipelineMetrics)
+                .setListener(new FaceDetectionListener() {
+                    @Override
+                    public void onFaceFrame(@NonNull FaceFrame frame) {
+                        // Runs on the post-processing thread, so neither costs the main thread a frame.
+                        if (faceAnalyzer.isEnabled()) {
+                            historyLog.append(frame, System.currentTimeMillis());
+                            resolutionCalibrator.onFrame(frame);
+                        }
+                    }
+
+                    @Override
+                    public void onFacesDetected(List<Face> faces, InputImage image) {
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        // Reported by the result listener.
+                    }
+                })
+                .setResultListener(new FaceDetectionResultListener() {
+                    @Override
+                    public void onDetectionResult(@NonNull DetectionResult result) {
+                        // A frame that was in flight when analysis was switched off must not bring faces back.
+                        if (faceAnalyzer.isEnabled()) {
+                            results.setValue(result);
+                        }
+                    }
+
+                    @Override
+                    public void onError(@NonNull Exception e) {
+                        Log.w(TAG, "Live face detection failed: " + e.getMessage());
+                        errors.setValue(e);
+                    }
+                })
+                .build();
+        faceAnalyzer = new FaceAnalyzer(faceDetectionHelper);
+        faceAnalyzer.setScheduler(frameScheduler);
+        observeThermalStatus();
+        // The adaptive profile starts on the fast profile, so its model decides when the first frame is quick.
+        liveDetectorLease = DetectorRegistry.getInstance().acquire(DetectorProfile.FAST);
+        DetectorRegistry.getInstance().whenReady(DetectorProfile.FAST)
+                .addOnCompleteListener(ContextCompat.getMainExecutor(application), task -> detectorReady.setValue(true));
+    }
+
+    /**
+     * Every live result, on the main thread; {@code null} while analysis is off.
+     */
+    @NonNull
+    public LiveData<DetectionResult> getResults() {
+        return results;
+    }
+
+    /**
+     * The live results throttled for text.
+     */
+    @NonNull
+    public LiveData<DetectionResult> getThrottledResults() {
+        return throttledResults;
+    }
+
+    /**
+     * The latest live detection error. Observers that start later see it once more.
+     */
+    @NonNull
+    public LiveData<Exception> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Whether the live detector's model is loaded. Until then, the first frames wait for it.
+     */
+    @NonNull
+    public LiveData<Boolean> getDetectorReady() {
+        return detectorReady;
+    }
+
+    public void setAnalysisEnabled(boolean enabled) {
+        faceAnalyzer.setEnabled(enabled);
+        if (!enabled) {
+            results.setValue(null);
+        }
+    }
+
+    public boolean isAnalysisEnabled() {
+        return faceAnalyzer.isEnabled();
+    }
+
+    @NonNull
+    FaceAnalyzer getFaceAnalyzer() {
+        return faceAnalyzer;
+    }
+
+    @NonNull
+    FaceDetectionHelper getFaceDetectionHelper() {
+        return faceDetectionHelper;
+    }
+
+    /**
+     * The thread that runs the analyzer. Nothing else may run on it, or frames queue up behind it.
+     */
+    @NonNull
+    ExecutorService getAnalysisExecutor() {
+        return analysisExecutor;
+    }
+
+    /**
+     * A background thread for writing files, such as exported metrics.
+     */
+    @NonNull
+    ExecutorService getFileExecutor() {
+        return fileExecutor;
+    }
 
-    private final MutableLiveData<String> mText;
+    @NonNull
+    PipelineMetrics getPipelineMetrics() {
+        return pipelineMetrics;
+    }
+
+    /**
+     * The {@link CameraSelector} lens the live view uses, kept across configuration changes.
+     */
+    int getLensFacing() {
+        return lensFacing;
+    }
+
+    /**
+     * The short side the analysis stream needs on {@code lensFacing} for faces to stay detectable.
+     */
+    int getAnalysisMinShortSide(int lensFacing) {
+        return resolutionCalibrator.getMinShortSide(lensFacing);
+    }
+
+    /**
+     * Call after binding the camera; calibrates the analysis resolution if this lens has not been yet.
+     */
+    void onCameraBound(int lensFacing) {
+        resolutionCalibrator.onCameraBound(lensFacing);
+    }
+
+    /**
+     * Prepares the pipeline for frames from another lens. The detector and buffer pools stay as
+     * they are; only the tracks, which belong to the other camera's picture, are dropped, and the
+     * faces still on screen are cleared.
+     */
+    void setLensFacing(int lensFacing) {
+        if (this.lensFacing == lensFacing) {
+            return;
+        }
+        this.lensFacing = lensFacing;
+        faceDetectionHelper.resetTracking();
+        frameScheduler.reset();
+        if (results.getValue() != null) {
+            results.setValue(null);
+        }
+    }
 
-    public HomeViewModel() {
-        mText = new MutableLiveData<>();
-        mText.setValue("Dies ist der Kamera-Bereich");
+    /**
+     * Lets the frame scheduler lower the analysis rate while the device heats up.
+     */
+    private void observeThermalStatus() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return;
+        }
+        PowerManager powerManager = getApplication().getSystemService(PowerManager.class);
+        if (powerManager == null) {
+            return;
+        }
+        frameScheduler.setThermalStatus(powerManager.getCurrentThermalStatus());
+        thermalListener = frameScheduler::setThermalStatus;
+        powerManager.addThermalStatusListener(ContextCompat.getMainExecutor(getApplication()), thermalListener);
     }
 
-    public LiveData<String> getText() {
-        return mText;
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        if (thermalListener != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            PowerManager powerManager = getApplication().getSystemService(PowerManager.class);
+            if (powerManager != null) {
+                powerManager.removeThermalStatusListener(thermalListener);
+            }
+            thermalListener = null;
+        }
+        stateSettings.unregisterListener(thresholdListener);
+        faceAnalyzer.setEnabled(false);
+        analysisExecutor.shutdown();
+        // Lets a pending export finish.
+        fileExecutor.shutdown();
+        faceDetectionHelper.close();
+        liveDetectorLease.close();
+        historyLog.flush();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,86 @@
+package com.example.feeloscope.ui.home;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+
+import com.example.feeloscope.R;
+import com.example.feeloscope.services.FaceFrame;
+
+/**
+ * Draws face boxes, landmarks and state labels into a snapshot the way {@link FaceOverlayView}
+ * shows them on screen. Sizes are scaled so they cover as much of the picture as they cover of
+ * the preview. Not thread-safe; use it from the encoder thread only.
+ */
+final class SnapshotAnnotator {
+    private final Paint boxPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint landmarkPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint labelBackgroundPaint = new Paint();
+    private final String[] labels = new String[4];
+    private final float strokeWidth;
+    private final float landmarkSize;
+    private final float labelTextSize;
+    private final float labelPadding;
+    private final int previewWidth;
+    private final float[] landmarkPoints = new float[FaceFrame.LANDMARK_COUNT * 2];
+
+    SnapshotAnnotator(@NonNull Context context) {
+        Resources resources = context.getResources();
+        strokeWidth = resources.getDimension(R.dimen.face_overlay_stroke_width);
+        landmarkSize = resources.getDimension(R.dimen.face_overlay_landmark_size);
+        labelTextSize = resources.getDimension(R.dimen.face_overlay_label_text_size);
+        labelPadding = resources.getDimension(R.dimen.face_overlay_label_padding);
+        previewWidth = resources.getDisplayMetrics().widthPixels;
+
+        boxPaint.setStyle(Paint.Style.STROKE);
+        boxPaint.setColor(ContextCompat.getColor(context, R.color.face_overlay_box));
+        landmarkPaint.setStyle(Paint.Style.STROKE);
+        landmarkPaint.setStrokeCap(Paint.Cap.ROUND);
+        landmarkPaint.setColor(ContextCompat.getColor(context, R.color.face_overlay_landmark));
+        labelPaint.setColor(ContextCompat.getColor(context, R.color.off_white));
+        labelBackgroundPaint.setColor(ContextCompat.getColor(context, R.color.overlay_card_background));
+        FaceOverlayView.loadLabels(resources, labels);
+    }
+
+    /**
+     * Draws {@code faces} onto an upright picture of {@code width} x {@code height} pixels.
+     */
+    void draw(@NonNull Canvas canvas, @NonNull FaceFrame faces, int width, int height) {
+        float scale = previewWidth > 0 ? (float) Math.min(width, height) / previewWidth : 1f;
+        boxPaint.setStrokeWidth(strokeWidth * scale);
+        landmarkPaint.setStrokeWidth(landmarkSize * scale);
+        labelPaint.setTextSize(labelTextSize * scale);
+        float padding = labelPadding * scale;
+        Paint.FontMetrics metrics = labelPaint.getFontMetrics();
+        float labelHeight = metrics.descent - metrics.ascent + 2 * padding;
+
+        for (int face = 0; face < faces.getFaceCount(); face++) {
+            float left = faces.getLeft(face);
+            float top = faces.getTop(face);
+            canvas.drawRect(left, top, faces.getRight(face), faces.getBottom(face), boxPaint);
+            int label = FaceOverlayView.labelFor(faces, face);
+            if (label != FaceOverlayView.LABEL_NONE) {
+                float labelTop = Math.max(0f, top - labelHeight);
+                canvas.drawRect(left, labelTop, left + labelPaint.measureText(labels[label]) + 2 * padding,
+                        labelTop + labelHeight, labelBackgroundPaint);
+                canvas.drawText(labels[label], left + padding, labelTop + padding - metrics.ascent, labelPaint);
+            }
+            int points = 0;
+            for (int landmark = 0; landmark < FaceFrame.LANDMARK_COUNT; landmark++) {
+                if (faces.hasLandmark(face, landmark)) {
+                    landmarkPoints[points * 2] = faces.getLandmarkX(face, landmark);
+                    landmarkPoints[points * 2 + 1] = faces.getLandmarkY(face, landmark);
+                    points++;
+                }
+            }
+            if (points > 0) {
+                canvas.drawPoints(landmarkPoints, 0, points * 2, landmarkPaint);
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.feeloscope.ui.home;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.feeloscope.services.DetectionResult;
+import com.example.feeloscope.services.FaceAnalyzer;
+import com.example.feeloscope.services.FaceFrame;
+import com.example.feeloscope.services.frame.FrameBuffer;
+import com.example.feeloscope.services.frame.FrameBufferConsumer;
+import com.example.feeloscope.services.snapshot.SnapshotWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Saves the next fully analyzed camera frame with its faces drawn in, for the shutter button.
+ * <p>
+ * A capture attaches itself to the {@link FaceAnalyzer} as frame consumer for a single frame, so
+ * full frames are only packed while a snapshot is wanted. Only one frame is in the detector at a
+ * time and results arrive on the main thread in order, so the first result after the frame is
+ * the one that belongs to it. Compositing and encoding run on one low-priority thread with room
+ * for one more waiting snapshot. Presses while a capture still waits for its frame join that
+ * capture, and presses beyond the encoder queue are turned down; nothing piles up.
+ */
+final class SnapshotCapturer implements FrameBufferConsumer {
+    // Covers a skipped still scene plus the wait for a keyframe between cropped frames.
+    private static final long CAPTURE_TIMEOUT_MS = 2000;
+    // The intermediate JPEG only carries the frame to BitmapFactory; the final quality is the writer's.
+    private static final int INTERMEDIATE_JPEG_QUALITY = 95;
+
+    interface Listener {
+        void onSnapshotSaved(@NonNull Uri uri);
+
+        void onSnapshotFailed(@NonNull Exception e);
+    }
+
+    private enum State {
+        IDLE,
+        WAITING_FOR_FRAME,
+        WAITING_FOR_RESULT
+    }
+
+    private final FaceAnalyzer analyzer;
+    private final SnapshotAnnotator annotator;
+    private final SnapshotWriter writer;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor encoder = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1), runnable -> {
+        Thread thread = new Thread(runnable, "snapshot-encoder");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    private final Runnable timeout = this::onTimeout;
+
+    // Main thread only.
+    private State state = State.IDLE;
+    @Nullable
+    private FrameBuffer heldFrame;
+    private boolean closed;
+
+    SnapshotCapturer(@NonNull Context context, @NonNull FaceAnalyzer analyzer, @NonNull SnapshotWriter writer,
+                     @NonNull Listener listener) {
+        this.analyzer = analyzer;
+        this.annotator = new SnapshotAnnotator(context);
+        this.writer = writer;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts a capture and returns whether it was accepted. A press while another capture waits
+     * for its frame or while the encoder is full is coalesced and returns {@code false}.
+     */
+    @MainThread
+    boolean capture() {
+        if (closed || state != State.IDLE || encoder.getQueue().remainingCapacity() == 0) {
+            return false;
+        }
+        state = State.WAITING_FOR_FRAME;
+        mainHandler.postDelayed(timeout, CAPTURE_TIMEOUT_MS);
+        analyzer.setFrameConsumer(this);
+        return true;
+    }
+
+    @Override
+    public void onFrameBuffer(@NonNull FrameBuffer frame) {
+        // Called on the analysis thread, before the frame goes to the detector.
+        analyzer.setFrameConsumer(null);
+        FrameBuffer retained = frame.retain();
+        mainHandler.post(() -> onFrame(retained));
+    }
+
+    @MainThread
+    private void onFrame(@NonNull FrameBuffer frame) {
+        if (state != State.WAITING_FOR_FRAME) {
+            frame.release();
+            return;
+        }
+        heldFrame = frame;
+        state = State.WAITING_FOR_RESULT;
+    }
+
+    /**
+     * Pass every live detection result here, on the main thread.
+     */
+    @MainThread
+    void onDetectionResult(@NonNull DetectionResult result) {
+        if (state != State.WAITING_FOR_RESULT || heldFrame == null) {
+            return;
+        }
+        FrameBuffer frame = heldFrame;
+        FaceFrame faces = result.getFaces();
+        heldFrame = null;
+        state = State.IDLE;
+        mainHandler.removeCallbacks(timeout);
+        try {
+            encoder.execute(() -> encode(frame, faces));
+        } catch (RejectedExecutionException e) {
+            frame.release();
+            listener.onSnapshotFailed(e);
+        }
+    }
+
+    /**
+     * Pass live detection errors here, on the main thread. The frame waiting for its result is dropped.
+     */
+    @MainThread
+    void onDetectionError(@NonNull Exception e) {
+        if (state == State.WAITING_FOR_RESULT) {
+            cancel();
+            listener.onSnapshotFailed(e);
+        }
+    }
+
+    /**
+     * Cancels a pending capture. Snapshots already being encoded are still saved.
+     */
+    @MainThread
+    void close() {
+        closed = true;
+        cancel();
+        encoder.shutdown();
+    }
+
+    @MainThread
+    private void onTimeout() {
+        if (state != State.IDLE) {
+            cancel();
+            listener.onSnapshotFailed(new TimeoutException("No analyzed frame arrived in time."));
+        }
+    }
+
+    @MainThread
+    private void cancel() {
+        analyzer.setFrameConsumer(null);
+        mainHandler.removeCallbacks(timeout);
+        if (heldFrame != null) {
+            heldFrame.release();
+            heldFrame = null;
+        }
+        state = State.IDLE;
+    }
+
+    @WorkerThread
+    private void encode(@NonNull FrameBuffer frame, @NonNull FaceFrame faces) {
+        Bitmap picture = null;
+        try {
+            picture = uprightBitmap(frame);
+            annotator.draw(new Canvas(picture), faces, picture.getWidth(), picture.getHeight());
+            Uri uri = writer.write(picture, System.currentTimeMillis());
+            mainHandler.post(() -> listener.onSnapshotSaved(uri));
+        } catch (IOException | RuntimeException e) {
+            mainHandler.post(() -> listener.onSnapshotFailed(e));
+        } finally {
+            if (picture != null) {
+                picture.recycle();
+            }
+        }
+    }
+
+    /**
+     * Decodes the frame into a mutable bitmap turned upright, matching the detector's coordinates.
+     * The frame is released as soon as its bytes are compressed.
+     */
+    @WorkerThread
+    @NonNull
+    private static Bitmap uprightBitmap(@NonNull FrameBuffer frame) throws IOException {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int rotation = frame.getRotationDegrees();
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream(frame.getSize() / 4);
+        boolean compressed;
+        try {
+            compressed = frame.toYuvImage().compressToJpeg(new Rect(0, 0, width, height),
+                    INTERMEDIATE_JPEG_QUALITY, jpeg);
+        } finally {
+            frame.release();
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inMutable = true;
+        Bitmap decoded = compressed ? BitmapFactory.decodeByteArray(jpeg.toByteArray(), 0, jpeg.size(), options) : null;
+        if (decoded == null) {
+            throw new IOException("Could not decode the camera frame.");
+        }
+        if (rotation == 0) {
+            return decoded;
+        }
+        Matrix matrix = new Matrix();
+        matrix.postRotate(rotation);
+        RectF bounds = new RectF(0, 0, width, height);
+        matrix.mapRect(bounds);
+        matrix.postTranslate(-bounds.left, -bounds.top);
+        Bitmap upright = Bitmap.createBitmap(Math.round(bounds.width()), Math.round(bounds.height()),
+                Bitmap.Config.ARGB_8888);
+        new Canvas(upright).drawBitmap(decoded, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        decoded.recycle();
+        return upright;
+    }
+}
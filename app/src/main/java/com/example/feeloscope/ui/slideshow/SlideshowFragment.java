@@ -1,11 +1,8 @@
 package com.example.feeloscope.ui.slideshow;
 
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.media.MediaMetadataRetriever;
 import android.net.Uri;
 import android.os.Bundle;
-import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -16,56 +13,21 @@ import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 
-import com.example.feeloscope.R;
 import com.example.feeloscope.databinding.FragmentSlideshowBinding;
-import com.example.feeloscope.services.FaceDetectionHelper;
-import com.example.feeloscope.services.FaceDetectionListener;
-import com.google.mlkit.vision.common.InputImage;
-import com.google.mlkit.vision.face.Face;
-
-import java.io.IOException;
-import java.util.List;
 
 public class SlideshowFragment extends Fragment {
 
     private FragmentSlideshowBinding binding;
+    private SlideshowViewModel viewModel;
     private ActivityResultLauncher<String[]> videoPickerLauncher;
-    private FaceDetectionHelper faceDetectionHelper;
     private MediaController mediaController;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        faceDetectionHelper = new FaceDetectionHelper(new FaceDetectionListener() {
-            @Override
-            public void onFacesDetected(List<Face> faces, InputImage image) {
-                if (!isAdded() || binding == null) {
-                    return;
-                }
-                String faceSummary;
-                int count = faces.size();
-                if (count == 0) {
-                    faceSummary = getString(R.string.gallery_analysis_result_none);
-                } else if (count == 1) {
-                    faceSummary = getString(R.string.gallery_analysis_result_single);
-                } else {
-                    faceSummary = getString(R.string.gallery_analysis_result_multiple, count);
-                }
-                binding.videoAnalysisResult.setText(getString(R.string.video_analysis_result_template, faceSummary));
-            }
-
-            @Override
-            public void onError(Exception e) {
-                if (!isAdded() || binding == null) {
-                    return;
-                }
-                String message = TextUtils.isEmpty(e.getLocalizedMessage())
-                        ? e.getClass().getSimpleName()
-                        : e.getLocalizedMessage();
-                binding.videoAnalysisResult.setText(getString(R.string.gallery_analysis_error, message));
-            }
-        });
+        viewModel = new ViewModelProvider(this).get(SlideshowViewModel.class);
 
         videoPickerLauncher = registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::handleVideoResult);
     }
@@ -77,12 +39,35 @@ public class SlideshowFragment extends Fragment {
         return binding.getRoot();
     }
 
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        viewModel.getVideo().observe(getViewLifecycleOwner(), uri -> {
+            if (uri != null) {
+                showVideo(uri);
+            }
+        });
+        viewModel.getStatus().observe(getViewLifecycleOwner(), binding.videoAnalysisResult::setText);
+    }
+
     private void handleVideoResult(@Nullable Uri uri) {
-        if (!isAdded() || binding == null || uri == null) {
+        if (!isAdded() || uri == null) {
             return;
         }
 
-        binding.videoAnalysisResult.setText(getString(R.string.gallery_analysis_in_progress));
+        try {
+            requireContext().getContentResolver().takePersistableUriPermission(
+                    uri,
+                    Intent.FLAG_GRANT_READ_URI_PERMISSION
+            );
+        } catch (SecurityException ignored) {
+            // Ignore when persistable permissions are not supported.
+        }
+
+        viewModel.analyzeVideo(uri);
+    }
+
+    private void showVideo(@NonNull Uri uri) {
         binding.selectedVideo.setVisibility(View.VISIBLE);
         binding.selectedVideo.setVideoURI(uri);
 
@@ -96,48 +81,6 @@ public class SlideshowFragment extends Fragment {
             binding.selectedVideo.start();
         });
         binding.selectedVideo.seekTo(1);
-
-        try {
-            requireContext().getContentResolver().takePersistableUriPermission(
-                    uri,
-                    Intent.FLAG_GRANT_READ_URI_PERMISSION
-            );
-        } catch (SecurityException ignored) {
-            // Ignore when persistable permissions are not supported.
-        }
-
-        analyzeVideo(uri);
-    }
-
-    private void analyzeVideo(@NonNull Uri uri) {
-        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
-        try {
-            retriever.setDataSource(requireContext(), uri);
-            Bitmap frame = retriever.getFrameAtTime(0);
-            if (frame == null) {
-                if (binding != null) {
-                    binding.videoAnalysisResult.setText(R.string.video_analysis_frame_missing);
-                }
-                return;
-            }
-            InputImage image = InputImage.fromBitmap(frame, 0);
-            faceDetectionHelper.process(image);
-        } catch (RuntimeException e) {
-            if (binding != null) {
-                binding.videoAnalysisResult.setText(getString(R.string.gallery_analysis_error, e.getLocalizedMessage()));
-            }
-        } finally {
-            try {
-                retriever.release();
-            } catch (IOException e) {
-                if (binding != null) {
-                    String message = TextUtils.isEmpty(e.getLocalizedMessage())
-                            ? e.getClass().getSimpleName()
-                            : e.getLocalizedMessage();
-                    binding.videoAnalysisResult.setText(getString(R.string.gallery_analysis_error, message));
-                }
-            }
-        }
     }
 
     @Override
@@ -148,12 +91,4 @@ public class SlideshowFragment extends Fragment {
         }
         binding = null;
     }
-
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        if (faceDetectionHelper != null) {
-            faceDetectionHelper.close();
-        }
-    }
-}
\ No newline at end of file
+}
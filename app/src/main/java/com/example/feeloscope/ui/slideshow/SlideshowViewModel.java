@@ -1,19 +1,101 @@
 package com.example.feeloscope.ui.slideshow;
 
+import android.app.Application;
+import android.net.Uri;
+import android.text.TextUtils;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
-import androidx.lifecycle.ViewModel;
 
-public class SlideshowViewModel extends ViewModel {
+import com.example.feeloscope.R;
+import com.example.feeloscope.services.video.VideoAnalysisEngine;
+import com.example.feeloscope.services.video.VideoAnalysisListener;
+import com.example.feeloscope.services.video.VideoTimeline;
+import com.example.feeloscope.ui.ThrottledLiveData;
+
+/**
+ * Keeps a video analysis running across configuration changes. Progress arrives once per sampled
+ * frame, which for cached or short clips is far more often than the text can be redrawn, so the
+ * status is throttled to {@link #STATUS_INTERVAL_MS}; the final summary always comes through.
+ */
+public class SlideshowViewModel extends AndroidViewModel {
+    // About 15 updates per second.
+    private static final long STATUS_INTERVAL_MS = 66;
+
+    private final VideoAnalysisEngine videoAnalysisEngine;
+    private final MutableLiveData<Uri> video = new MutableLiveData<>();
+    private final MutableLiveData<String> status = new MutableLiveData<>();
+    private final LiveData<String> throttledStatus = new ThrottledLiveData<>(status, STATUS_INTERVAL_MS);
+    @Nullable
+    private VideoAnalysisEngine.Run analysisRun;
+
+    public SlideshowViewModel(@NonNull Application application) {
+        super(application);
+        videoAnalysisEngine = new VideoAnalysisEngine(application);
+    }
+
+    /**
+     * The video being shown, or {@code null} before one was picked.
+     */
+    @NonNull
+    public LiveData<Uri> getVideo() {
+        return video;
+    }
+
+    @NonNull
+    public LiveData<String> getStatus() {
+        return throttledStatus;
+    }
+
+    @MainThread
+    public void analyzeVideo(@NonNull Uri uri) {
+        if (analysisRun != null) {
+            analysisRun.cancel();
+        }
+        video.setValue(uri);
+        status.setValue(getApplication().getString(R.string.gallery_analysis_in_progress));
+        analysisRun = videoAnalysisEngine.analyze(uri, new VideoAnalysisListener() {
+            @Override
+            public void onProgress(int analyzedSamples, int totalSamples) {
+                status.setValue(getApplication().getString(R.string.video_analysis_progress,
+                        analyzedSamples, totalSamples));
+            }
 
-    private final MutableLiveData<String> mText;
+            @Override
+            public void onCompleted(@NonNull VideoTimeline timeline) {
+                analysisRun = null;
+                if (timeline.getAnalyzedSampleCount() == 0) {
+                    status.setValue(getApplication().getString(R.string.video_analysis_frame_missing));
+                    return;
+                }
+                status.setValue(getApplication().getString(R.string.video_analysis_timeline_summary,
+                        timeline.getAnalyzedSampleCount(),
+                        timeline.getMaxFaceCount(),
+                        timeline.getSamplesWithSmiles(),
+                        timeline.getSamplesWithOpenEyes()));
+            }
 
-    public SlideshowViewModel() {
-        mText = new MutableLiveData<>();
-        mText.setValue("Hier kannst du deine Videos nutzen");
+            @Override
+            public void onError(@NonNull Exception e) {
+                analysisRun = null;
+                String message = TextUtils.isEmpty(e.getLocalizedMessage())
+                        ? e.getClass().getSimpleName()
+                        : e.getLocalizedMessage();
+                status.setValue(getApplication().getString(R.string.gallery_analysis_error, message));
+            }
+        });
     }
 
-    public LiveData<String> getText() {
-        return mText;
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        if (analysisRun != null) {
+            analysisRun.cancel();
+            analysisRun = null;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,75 @@
+package com.example.feeloscope.services;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveProfileControllerTest {
+
+    private static final long BUDGET_MS = 50;
+    private static final int WINDOW = 20;
+
+    private AdaptiveProfileController newController() {
+        return new AdaptiveProfileController(BUDGET_MS, DetectorProfile.FAST, DetectorProfile.ACCURATE,
+                WINDOW, 0.6f, 2);
+    }
+
+    private static DetectorProfile feedWindow(AdaptiveProfileController controller, long latencyMs) {
+        DetectorProfile profile = controller.getCurrentProfile();
+        for (int i = 0; i < WINDOW; i++) {
+            profile = controller.recordLatency(controller.getCurrentProfile(), latencyMs * 1_000_000L);
+        }
+        return profile;
+    }
+
+    @Test
+    public void startsWithFastestProfile() {
+        assertEquals(DetectorProfile.FAST, newController().getCurrentProfile());
+    }
+
+    @Test
+    public void upgradesOnlyAfterConsecutiveFastWindows() {
+        AdaptiveProfileController controller = newController();
+        assertEquals(DetectorProfile.FAST, feedWindow(controller, 10));
+        assertEquals(DetectorProfile.BALANCED, feedWindow(controller, 10));
+        assertEquals(DetectorProfile.BALANCED, feedWindow(controller, 10));
+        assertEquals(DetectorProfile.ACCURATE, feedWindow(controller, 10));
+    }
+
+    @Test
+    public void downgradesWhenP95ExceedsBudget() {
+        AdaptiveProfileController controller = newController();
+        feedWindow(controller, 10);
+        feedWindow(controller, 10);
+        assertEquals(DetectorProfile.BALANCED, controller.getCurrentProfile());
+
+        // A single outlier per window stays above the p95 ...
+        for (int i = 0; i < WINDOW; i++) {
+            long latencyMs = i == 0 ? 200 : 40;
+            controller.recordLatency(controller.getCurrentProfile(), latencyMs * 1_000_000L);
+        }
+        assertEquals(DetectorProfile.BALANCED, controller.getCurrentProfile());
+
+        // ... but a window of slow frames pushes back to the fast profile.
+        assertEquals(DetectorProfile.FAST, feedWindow(controller, 80));
+    }
+
+    @Test
+    public void latencyBetweenThresholdsKeepsProfile() {
+        AdaptiveProfileController controller = newController();
+        feedWindow(controller, 10);
+        feedWindow(controller, 10);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(DetectorProfile.BALANCED, feedWindow(controller, 40));
+        }
+    }
+
+    @Test
+    public void ignoresSamplesFromPreviousProfile() {
+        AdaptiveProfileController controller = newController();
+        for (int i = 0; i < WINDOW * 3; i++) {
+            controller.recordLatency(DetectorProfile.ACCURATE, 1_000_000L);
+        }
+        assertEquals(DetectorProfile.FAST, controller.getCurrentProfile());
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.feeloscope.services;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FaceStateClassifierTest {
+
+    private static final long FRAME_NANOS = 33_000_000L;
+    private static final int DEBOUNCE_FRAMES = 3;
+
+    private final FaceStateClassifier classifier = new FaceStateClassifier(4, 0.1f, DEBOUNCE_FRAMES, 1000);
+    private final FaceFrame frame = new FaceFrame();
+    private long frameIndex;
+
+    private int smilingState(int trackingId, float smiling) {
+        frame.reset(frameIndex, frameIndex * FRAME_NANOS, 640, 480, 0);
+        frameIndex++;
+        frame.addFace(100, 100, 200, 200, trackingId, 0f, 0f, smiling, 0.9f, 0.9f);
+        classifier.classify(frame, true);
+        return frame.getSmilingState(0);
+    }
+
+    @Test
+    public void firstDecisionIsImmediate() {
+        assertEquals(FaceFrame.STATE_YES, smilingState(1, 0.7f));
+        assertEquals(FaceFrame.STATE_NO, smilingState(2, 0.3f));
+        assertEquals(FaceFrame.STATE_YES, frame.getEyesOpenState(0));
+    }
+
+    @Test
+    public void ignoresValuesInsideHysteresisBand() {
+        smilingState(1, 0.3f);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(FaceFrame.STATE_NO, smilingState(1, i % 2 == 0 ? 0.45f : 0.58f));
+        }
+    }
+
+    @Test
+    public void switchesOnlyAfterDebounce() {
+        smilingState(1, 0.3f);
+        for (int i = 1; i < DEBOUNCE_FRAMES; i++) {
+            assertEquals(FaceFrame.STATE_NO, smilingState(1, 0.8f));
+        }
+        assertEquals(FaceFrame.STATE_YES, smilingState(1, 0.8f));
+
+        // A single outlier resets the count.
+        smilingState(1, 0.2f);
+        smilingState(1, 0.2f);
+        smilingState(1, 0.8f);
+        for (int i = 1; i < DEBOUNCE_FRAMES; i++) {
+            assertEquals(FaceFrame.STATE_YES, smilingState(1, 0.2f));
+        }
+        assertEquals(FaceFrame.STATE_NO, smilingState(1, 0.2f));
+    }
+
+    @Test
+    public void keepsStateWithoutClassification() {
+        smilingState(1, 0.8f);
+        assertEquals(FaceFrame.STATE_YES, smilingState(1, FaceFrame.UNKNOWN_PROBABILITY));
+        assertEquals(FaceFrame.STATE_UNKNOWN, smilingState(2, FaceFrame.UNKNOWN_PROBABILITY));
+    }
+
+    @Test
+    public void untrackedFacesUsePlainThreshold() {
+        smilingState(FaceFrame.NO_TRACKING_ID, 0.3f);
+        assertEquals(FaceFrame.STATE_YES, smilingState(FaceFrame.NO_TRACKING_ID, 0.55f));
+    }
+
+    @Test
+    public void appliesNewThresholds() {
+        classifier.setThresholds(0.8f, 0.5f);
+        assertEquals(FaceFrame.STATE_NO, smilingState(1, 0.7f));
+    }
+
+    @Test
+    public void switchesToYesNearTheUpperBound() {
+        classifier.setThresholds(0.95f, 0.5f);
+        smilingState(1, 0.5f);
+        for (int i = 1; i < DEBOUNCE_FRAMES; i++) {
+            smilingState(1, 0.99f);
+        }
+        assertEquals(FaceFrame.STATE_YES, smilingState(1, 0.99f));
+    }
+
+    @Test
+    public void switchesToNoNearTheLowerBound() {
+        classifier.setThresholds(0.05f, 0.5f);
+        smilingState(1, 0.5f);
+        for (int i = 1; i < DEBOUNCE_FRAMES; i++) {
+            smilingState(1, 0.01f);
+        }
+        assertEquals(FaceFrame.STATE_NO, smilingState(1, 0.01f));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.feeloscope.services;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FaceTrackerTest {
+
+    private static final long FRAME_NANOS = 33_000_000L;
+    private static final int STABLE_FRAMES = 3;
+
+    private final FaceTracker tracker = new FaceTracker(4, 0.5f, 200, STABLE_FRAMES, 1000);
+    private final FaceFrame frame = new FaceFrame();
+    private long frameIndex;
+
+    private void feed(float left, int detectorId, float smiling) {
+        frame.reset(frameIndex, frameIndex * FRAME_NANOS, 640, 480, 0);
+        frameIndex++;
+        frame.addFace(left, 100, left + 100, 200, detectorId, 0f, 0f, smiling, 0.9f, 0.9f);
+        tracker.update(frame, smiling != FaceFrame.UNKNOWN_PROBABILITY);
+    }
+
+    @Test
+    public void smoothsProbabilities() {
+        feed(100, 7, 0f);
+        feed(100, 7, 1f);
+        assertEquals(0.5f, frame.getSmilingProbability(0), 1e-6f);
+    }
+
+    @Test
+    public void allowsSkippingClassificationOnceStable() {
+        for (int i = 0; i <= STABLE_FRAMES; i++) {
+            feed(100, 7, 0.8f);
+        }
+        assertTrue(tracker.canSkipClassification());
+
+        feed(100, 7, FaceFrame.UNKNOWN_PROBABILITY);
+        assertEquals(0.8f, frame.getSmilingProbability(0), 1e-6f);
+    }
+
+    @Test
+    public void neverSkipsBeforeTheFirstClassification() {
+        for (int i = 0; i <= STABLE_FRAMES * 2; i++) {
+            feed(100, 7, FaceFrame.UNKNOWN_PROBABILITY);
+        }
+        assertFalse(tracker.canSkipClassification());
+    }
+
+    @Test
+    public void movingFacesAreNotStable() {
+        for (int i = 0; i <= STABLE_FRAMES * 2; i++) {
+            feed(100 + i * 20, 7, 0.8f);
+        }
+        assertFalse(tracker.canSkipClassification());
+    }
+
+    @Test
+    public void keepsTrackIdWhenDetectorIdChanges() {
+        feed(100, 7, 0.8f);
+        int trackId = frame.getTrackingId(0);
+        // Another detector instance numbers its faces independently.
+        feed(102, 0, 0.8f);
+        assertEquals(trackId, frame.getTrackingId(0));
+    }
+
+    @Test
+    public void expiresUnseenTracks() {
+        feed(100, 7, 0.8f);
+        int trackId = frame.getTrackingId(0);
+        frameIndex += 20;
+        feed(100, 7, 0.8f);
+        assertNotEquals(trackId, frame.getTrackingId(0));
+        assertEquals(1, tracker.getActiveTrackCount());
+    }
+}
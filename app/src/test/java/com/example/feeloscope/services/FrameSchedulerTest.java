@@ -0,0 +1,88 @@
+package com.example.feeloscope.services;
+
+import android.os.PowerManager;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class FrameSchedulerTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final long FRAME_NANOS = 33_000_000L;
+
+    private static ByteBuffer frame(int luma) {
+        ByteBuffer plane = ByteBuffer.allocate(WIDTH * HEIGHT);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            plane.put(i, (byte) luma);
+        }
+        return plane;
+    }
+
+    private static void paintBlock(ByteBuffer plane, int left, int top, int size, int luma) {
+        for (int y = top; y < top + size; y++) {
+            for (int x = left; x < left + size; x++) {
+                plane.put(y * WIDTH + x, (byte) luma);
+            }
+        }
+    }
+
+    private static FrameScheduler.Decision decide(FrameScheduler scheduler, ByteBuffer plane, int frameIndex) {
+        return scheduler.decide(plane, WIDTH, 1, WIDTH, HEIGHT, frameIndex * FRAME_NANOS);
+    }
+
+    @Test
+    public void skipsUnchangedFramesAndAnalyzesMotion() {
+        FrameScheduler scheduler = new FrameScheduler();
+        ByteBuffer still = frame(100);
+        assertEquals(FrameScheduler.Decision.ANALYZE, decide(scheduler, still, 0));
+        assertEquals(FrameScheduler.Decision.UNCHANGED, decide(scheduler, still, 1));
+
+        ByteBuffer noisy = frame(104);
+        assertEquals(FrameScheduler.Decision.UNCHANGED, decide(scheduler, noisy, 2));
+
+        ByteBuffer moved = frame(100);
+        paintBlock(moved, 100, 80, 40, 200);
+        assertEquals(FrameScheduler.Decision.ANALYZE, decide(scheduler, moved, 3));
+        assertEquals(FrameScheduler.Decision.UNCHANGED, decide(scheduler, moved, 4));
+    }
+
+    @Test
+    public void analyzesStillSceneAfterMaxSkip() {
+        FrameScheduler scheduler = new FrameScheduler();
+        ByteBuffer still = frame(100);
+        assertEquals(FrameScheduler.Decision.ANALYZE, decide(scheduler, still, 0));
+        int lastSkipped = (int) (FrameScheduler.DEFAULT_MAX_SKIP_MS * 1_000_000L / FRAME_NANOS);
+        for (int i = 1; i <= lastSkipped; i++) {
+            assertEquals(FrameScheduler.Decision.UNCHANGED, decide(scheduler, still, i));
+        }
+        assertEquals(FrameScheduler.Decision.ANALYZE, decide(scheduler, still, lastSkipped + 1));
+    }
+
+    @Test
+    public void throttlesWhileHot() {
+        FrameScheduler scheduler = new FrameScheduler();
+        scheduler.setThermalStatus(PowerManager.THERMAL_STATUS_SEVERE);
+        assertEquals(FrameScheduler.Decision.ANALYZE, decide(scheduler, frame(0), 0));
+        // 5 fps leaves 200 ms between analyzed frames, i.e. six frames at 30 fps.
+        for (int i = 1; i <= 6; i++) {
+            assertEquals(FrameScheduler.Decision.THROTTLED, decide(scheduler, frame(i * 40), i));
+        }
+        assertEquals(FrameScheduler.Decision.ANALYZE, decide(scheduler, frame(255), 7));
+
+        scheduler.setThermalStatus(PowerManager.THERMAL_STATUS_NONE);
+        assertEquals(FrameScheduler.Decision.ANALYZE, decide(scheduler, frame(200), 8));
+    }
+
+    @Test
+    public void resetForcesNextFrame() {
+        FrameScheduler scheduler = new FrameScheduler();
+        ByteBuffer still = frame(100);
+        decide(scheduler, still, 0);
+        scheduler.reset();
+        assertEquals(FrameScheduler.Decision.ANALYZE, decide(scheduler, still, 1));
+    }
+}
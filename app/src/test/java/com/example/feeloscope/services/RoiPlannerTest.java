@@ -0,0 +1,69 @@
+package com.example.feeloscope.services;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RoiPlannerTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+
+    private final RoiPlanner planner = new RoiPlanner(5, 0.5f, 0.5f);
+    private final FaceFrame frame = new FaceFrame();
+    private final int[] rect = new int[4];
+
+    private void feed(int rotation, boolean cropped, int faces) {
+        frame.reset(0, 0, WIDTH, HEIGHT, rotation);
+        for (int i = 0; i < faces; i++) {
+            frame.addFace(200 + i * 20, 300, 300 + i * 20, 400, FaceFrame.NO_TRACKING_ID, 0f, 0f, 0.5f, 0.5f, 0.5f);
+        }
+        planner.onFrame(frame, cropped);
+    }
+
+    @Test
+    public void startsWithKeyframe() {
+        assertFalse(planner.planCrop(WIDTH, HEIGHT, 0, rect));
+    }
+
+    @Test
+    public void cropsBetweenKeyframes() {
+        feed(0, false, 1);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(planner.planCrop(WIDTH, HEIGHT, 0, rect));
+            feed(0, true, 1);
+        }
+        assertFalse(planner.planCrop(WIDTH, HEIGHT, 0, rect));
+    }
+
+    @Test
+    public void losingAFaceForcesKeyframe() {
+        feed(0, false, 2);
+        assertTrue(planner.planCrop(WIDTH, HEIGHT, 0, rect));
+        feed(0, true, 1);
+        assertFalse(planner.planCrop(WIDTH, HEIGHT, 0, rect));
+    }
+
+    @Test
+    public void rotatedCropMapsBackOntoTheFace() {
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            feed(rotation, false, 1);
+            assertTrue(planner.planCrop(WIDTH, HEIGHT, rotation, rect));
+            assertEquals(0, (rect[0] | rect[1] | rect[2] | rect[3]) & 1);
+
+            FrameRegion region = FrameRegion.crop(rect[0], rect[1], rect[2], rect[3], WIDTH, HEIGHT, rotation);
+            boolean swapped = rotation % 180 != 0;
+            float uprightWidth = swapped ? rect[3] : rect[2];
+            float uprightHeight = swapped ? rect[2] : rect[3];
+            // The face, as the detector would report it inside the crop.
+            float left = 200 - region.getOffsetX();
+            float top = 300 - region.getOffsetY();
+            float right = 300 - region.getOffsetX();
+            float bottom = 400 - region.getOffsetY();
+            assertTrue("rotation " + rotation, left >= 0f && top >= 0f);
+            assertTrue("rotation " + rotation, right <= uprightWidth && bottom <= uprightHeight);
+        }
+    }
+}
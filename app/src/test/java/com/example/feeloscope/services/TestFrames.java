@@ -0,0 +1,26 @@
+package com.example.feeloscope.services;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Builds {@link FaceFrame}s for tests outside this package, which cannot write frames themselves.
+ */
+public final class TestFrames {
+
+    private TestFrames() {
+    }
+
+    /**
+     * A 640x480 frame holding one face per entry of {@code trackingIds}.
+     */
+    @NonNull
+    public static FaceFrame of(@NonNull int[] trackingIds, float smilingProbability, float eyeOpenProbability) {
+        FaceFrame frame = new FaceFrame();
+        frame.reset(0, 0, 640, 480, 0);
+        for (int i = 0; i < trackingIds.length; i++) {
+            frame.addFace(100 + i * 150, 100, 200 + i * 150, 220, trackingIds[i], 0f, 0f,
+                    smilingProbability, eyeOpenProbability, eyeOpenProbability);
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.feeloscope.services.cache;
+
+import com.example.feeloscope.services.DetectorProfile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DetectionCacheTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("detection-cache").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private DetectionCache newCache(long maxDiskBytes) {
+        return new DetectionCache(directory, 1024, maxDiskBytes, Runnable::run);
+    }
+
+    @Test
+    public void resultsSurviveANewInstance() {
+        String key = DetectionCache.imageKey(42L, DetectorProfile.ACCURATE, 960);
+        newCache(4096).putImage(key, new ImageSummary(3, 2, 1));
+
+        ImageSummary summary = newCache(4096).getImage(key);
+        assertNotNull(summary);
+        assertEquals(3, summary.getFaceCount());
+        assertEquals(2, summary.getSmilingCount());
+        assertEquals(1, summary.getEyesOpenCount());
+    }
+
+    @Test
+    public void keysDependOnProfile() {
+        assertNotEquals(DetectionCache.imageKey(42L, DetectorProfile.FAST, 960),
+                DetectionCache.imageKey(42L, DetectorProfile.ACCURATE, 960));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntriesFromDisk() {
+        // Without a memory front every lookup has to go to disk.
+        DetectionCache cache = new DetectionCache(directory, 0, 40, Runnable::run);
+        cache.putImage("a", new ImageSummary(1, 0, 0));
+        cache.putImage("b", new ImageSummary(2, 0, 0));
+        assertNotNull(cache.getImage("a"));
+        cache.putImage("c", new ImageSummary(3, 0, 0));
+
+        assertNotNull(cache.getImage("a"));
+        assertNull(cache.getImage("b"));
+        assertNotNull(cache.getImage("c"));
+    }
+
+    @Test
+    public void putLeavesDiskWorkToTheWriter() {
+        List<Runnable> pending = new ArrayList<>();
+        DetectionCache cache = new DetectionCache(directory, 1024, 4096, pending::add);
+        cache.putImage("a", new ImageSummary(1, 0, 0));
+
+        assertFalse(new File(directory, "a.bin").exists());
+        // Served from memory while the write is still queued.
+        assertNotNull(cache.getImage("a"));
+        for (Runnable task : pending) {
+            task.run();
+        }
+        assertTrue(new File(directory, "a.bin").exists());
+    }
+
+    @Test
+    public void corruptEntriesAreIgnored() throws IOException {
+        newCache(4096).putImage("a", new ImageSummary(1, 0, 0));
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, "a.bin"), "rw")) {
+            file.setLength(7);
+        }
+        assertNull(newCache(4096).getImage("a"));
+    }
+
+    @Test
+    public void hashChangesWithContent() throws IOException {
+        File file = new File(directory, "media");
+        byte[] content = new byte[3 * ContentHasher.WINDOW_BYTES];
+        Files.write(file.toPath(), content);
+        long original = hash(file);
+        assertEquals(original, hash(file));
+
+        content[content.length - 1] = 1;
+        Files.write(file.toPath(), content);
+        assertNotEquals(original, hash(file));
+    }
+
+    private static long hash(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            return ContentHasher.hash(in.getChannel());
+        }
+    }
+}
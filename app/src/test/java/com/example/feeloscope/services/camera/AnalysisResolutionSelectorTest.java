@@ -0,0 +1,44 @@
+package com.example.feeloscope.services.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class AnalysisResolutionSelectorTest {
+
+    @Test
+    public void requiredShortSideGivesTheFaceEnoughPixels() {
+        assertEquals(500, AnalysisResolutionSelector.requiredShortSide(0.2f));
+        assertEquals(AnalysisResolutionSelector.MIN_SHORT_SIDE, AnalysisResolutionSelector.requiredShortSide(0.9f));
+        assertEquals(AnalysisResolutionSelector.MAX_SHORT_SIDE, AnalysisResolutionSelector.requiredShortSide(0.01f));
+        assertEquals(AnalysisResolutionSelector.MAX_SHORT_SIDE, AnalysisResolutionSelector.requiredShortSide(0f));
+    }
+
+    @Test
+    public void prefersSmallestSizeThatFitsThenLargestFallback() {
+        int[] widths = {1920, 320, 1280, 640, 800};
+        int[] heights = {1080, 240, 720, 480, 600};
+
+        assertArrayEquals(new int[]{4, 2, 0, 3, 1}, AnalysisResolutionSelector.order(widths, heights, 500));
+        assertArrayEquals(new int[]{3, 4, 2, 0, 1}, AnalysisResolutionSelector.order(widths, heights, 480));
+    }
+
+    @Test
+    public void fallsBackToLargestWhenNothingFits() {
+        int[] widths = {640, 1280};
+        int[] heights = {480, 720};
+
+        assertArrayEquals(new int[]{1, 0}, AnalysisResolutionSelector.order(widths, heights, 1080));
+    }
+
+    @Test
+    public void choosesCappedRangeWithoutLongExposures() {
+        int[] lowers = {15, 7, 30, 60, 10};
+        int[] uppers = {30, 30, 30, 60, 24};
+
+        assertEquals(0, AnalysisResolutionSelector.chooseFrameRateRange(lowers, uppers));
+        assertEquals(1, AnalysisResolutionSelector.chooseFrameRateRange(new int[]{5, 7}, new int[]{30, 30}));
+        assertEquals(-1, AnalysisResolutionSelector.chooseFrameRateRange(new int[]{60}, new int[]{120}));
+    }
+}
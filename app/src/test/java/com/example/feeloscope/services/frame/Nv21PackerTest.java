@@ -0,0 +1,140 @@
+package com.example.feeloscope.services.frame;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class Nv21PackerTest {
+
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 6;
+
+    private static byte luma(int x, int y) {
+        return (byte) (y * WIDTH + x);
+    }
+
+    private static byte u(int x, int y) {
+        return (byte) (100 + y * WIDTH + x);
+    }
+
+    private static byte v(int x, int y) {
+        return (byte) (200 + y * WIDTH + x);
+    }
+
+    private static ByteBuffer lumaPlane(int rowStride, int pixelStride) {
+        byte[] plane = new byte[rowStride * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                plane[y * rowStride + x * pixelStride] = luma(x, y);
+            }
+        }
+        return ByteBuffer.wrap(plane);
+    }
+
+    private static byte[] expected(int left, int top, int width, int height) {
+        byte[] out = new byte[Nv21Packer.packedSize(width, height)];
+        int i = 0;
+        for (int y = top; y < top + height; y++) {
+            for (int x = left; x < left + width; x++) {
+                out[i++] = luma(x, y);
+            }
+        }
+        for (int y = top / 2; y < (top + height) / 2; y++) {
+            for (int x = left / 2; x < (left + width) / 2; x++) {
+                out[i++] = v(x, y);
+                out[i++] = u(x, y);
+            }
+        }
+        return out;
+    }
+
+    @Test
+    public void packsPlanarChromaWithPaddedRows() {
+        int uvRowStride = WIDTH / 2 + 3;
+        byte[] uPlane = new byte[uvRowStride * HEIGHT / 2];
+        byte[] vPlane = new byte[uvRowStride * HEIGHT / 2];
+        for (int y = 0; y < HEIGHT / 2; y++) {
+            for (int x = 0; x < WIDTH / 2; x++) {
+                uPlane[y * uvRowStride + x] = u(x, y);
+                vPlane[y * uvRowStride + x] = v(x, y);
+            }
+        }
+        byte[] out = new byte[Nv21Packer.packedSize(WIDTH, HEIGHT)];
+        Nv21Packer.pack(lumaPlane(WIDTH + 4, 1), WIDTH + 4, 1,
+                ByteBuffer.wrap(uPlane), ByteBuffer.wrap(vPlane), uvRowStride, 1,
+                0, 0, WIDTH, HEIGHT, out);
+        assertArrayEquals(expected(0, 0, WIDTH, HEIGHT), out);
+    }
+
+    @Test
+    public void packsInterleavedChromaInBulk() {
+        // Semi-planar camera memory: V, U, V, U, ... with padding at the end of every row.
+        int uvRowStride = WIDTH + 2;
+        byte[] chroma = new byte[uvRowStride * HEIGHT / 2];
+        for (int y = 0; y < HEIGHT / 2; y++) {
+            for (int x = 0; x < WIDTH / 2; x++) {
+                chroma[y * uvRowStride + x * 2] = v(x, y);
+                chroma[y * uvRowStride + x * 2 + 1] = u(x, y);
+            }
+        }
+        ByteBuffer vPlane = ByteBuffer.wrap(chroma, 0, chroma.length - 1).slice();
+        ByteBuffer uPlane = ByteBuffer.wrap(chroma, 1, chroma.length - 1).slice();
+        assertTrue(Nv21Packer.isNv21Interleaved(uPlane, vPlane));
+
+        byte[] out = new byte[Nv21Packer.packedSize(WIDTH, HEIGHT)];
+        Nv21Packer.pack(lumaPlane(WIDTH, 1), WIDTH, 1, uPlane, vPlane, uvRowStride, 2,
+                0, 0, WIDTH, HEIGHT, out);
+        assertArrayEquals(expected(0, 0, WIDTH, HEIGHT), out);
+    }
+
+    @Test
+    public void packsCropFromStridedPlanes() {
+        int uvRowStride = WIDTH;
+        byte[] uPlane = new byte[uvRowStride * HEIGHT / 2];
+        byte[] vPlane = new byte[uvRowStride * HEIGHT / 2];
+        for (int y = 0; y < HEIGHT / 2; y++) {
+            for (int x = 0; x < WIDTH / 2; x++) {
+                uPlane[y * uvRowStride + x * 2] = u(x, y);
+                vPlane[y * uvRowStride + x * 2] = v(x, y);
+            }
+        }
+        ByteBuffer u = ByteBuffer.wrap(uPlane);
+        ByteBuffer v = ByteBuffer.wrap(vPlane);
+        assertFalse(Nv21Packer.isNv21Interleaved(u, v));
+
+        byte[] out = new byte[Nv21Packer.packedSize(4, 4)];
+        Nv21Packer.pack(lumaPlane(WIDTH * 2, 2), WIDTH * 2, 2, u, v, uvRowStride, 2, 2, 2, 4, 4, out);
+        assertArrayEquals(expected(2, 2, 4, 4), out);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOddRegions() {
+        Nv21Packer.pack(lumaPlane(WIDTH, 1), WIDTH, 1, ByteBuffer.allocate(32), ByteBuffer.allocate(32),
+                WIDTH / 2, 1, 1, 0, 4, 4, new byte[64]);
+    }
+
+    @Test
+    public void poolReusesReleasedBuffers() {
+        FrameBufferPool pool = new FrameBufferPool(1);
+        FrameBuffer first = pool.acquire(WIDTH, HEIGHT, 0, 0L);
+        assertNotNull(first);
+        byte[] array = first.getNv21();
+        assertNull(pool.acquire(WIDTH, HEIGHT, 0, 1L));
+
+        first.retain();
+        first.release();
+        assertNull(pool.acquire(WIDTH, HEIGHT, 0, 1L));
+        first.release();
+
+        FrameBuffer second = pool.acquire(4, 4, 90, 2L);
+        assertSame(first, second);
+        assertSame(array, second.getNv21());
+    }
+}
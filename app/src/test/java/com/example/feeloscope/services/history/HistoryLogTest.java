@@ -0,0 +1,117 @@
+package com.example.feeloscope.services.history;
+
+import com.example.feeloscope.services.FaceFrame;
+import com.example.feeloscope.services.TestFrames;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+
+public class HistoryLogTest {
+
+    private static final int SEGMENT_RECORDS = 512;
+    private static final long FRAME_MS = 33;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("history").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private HistoryLog newLog(int maxSegments) {
+        return new HistoryLog(directory, SEGMENT_RECORDS, maxSegments, 64, Runnable::run);
+    }
+
+    @Test
+    public void summarizesSmilesAndClosedEyesPerWindow() {
+        HistoryLog log = newLog(8);
+        FaceFrame neutral = TestFrames.of(new int[]{1}, 0.1f, 0.9f);
+        FaceFrame smiling = TestFrames.of(new int[]{1}, 0.9f, 0.9f);
+        FaceFrame blinking = TestFrames.of(new int[]{1}, 0.1f, 0.1f);
+        // First minute: two separate smiles. Second minute: eyes closed a quarter of the time.
+        for (int i = 0; i < 60; i++) {
+            log.append(i % 30 < 10 ? smiling : neutral, i * 1000L);
+        }
+        for (int i = 60; i < 120; i++) {
+            log.append(i % 4 == 0 ? blinking : neutral, i * 1000L);
+        }
+
+        HistorySummary summary = log.summarize(0, 120_000, 60_000);
+        assertEquals(2, summary.getWindowCount());
+        assertEquals(60, summary.getFaceSamples(0));
+        assertEquals(2f, summary.getSmilesPerMinute(0), 1e-6f);
+        assertEquals(0f, summary.getEyesClosedRatio(0), 1e-6f);
+        assertEquals(0f, summary.getSmilesPerMinute(1), 1e-6f);
+        assertEquals(0.25f, summary.getEyesClosedRatio(1), 1e-6f);
+    }
+
+    @Test
+    public void recordsSurviveANewInstanceAcrossSegments() {
+        HistoryLog log = newLog(8);
+        FaceFrame twoFaces = TestFrames.of(new int[]{1, 2}, 0.1f, 0.9f);
+        int frames = SEGMENT_RECORDS * 2;
+        for (int i = 0; i < frames; i++) {
+            log.append(twoFaces, i * FRAME_MS);
+        }
+        log.close();
+        assertEquals(4, directory.listFiles().length);
+
+        HistorySummary summary = newLog(8).summarize(0, frames * FRAME_MS, frames * FRAME_MS);
+        assertEquals(frames * 2, summary.getFaceSamples(0));
+
+        // A range in the middle of a segment starts from the time index, not the first record.
+        long from = 700 * FRAME_MS;
+        summary = newLog(8).summarize(from, from + 10 * FRAME_MS, 10 * FRAME_MS);
+        assertEquals(20, summary.getFaceSamples(0));
+    }
+
+    @Test
+    public void includesRecordsNotYetWritten() {
+        HistoryLog log = new HistoryLog(directory, SEGMENT_RECORDS, 8, 64, runnable -> { });
+        log.append(TestFrames.of(new int[]{1}, 0.9f, 0.9f), 1000);
+        log.flush();
+        log.append(TestFrames.of(new int[]{1}, 0.9f, 0.9f), 2000);
+
+        HistorySummary summary = log.summarize(0, 60_000, 60_000);
+        assertEquals(2, summary.getFaceSamples(0));
+        assertEquals(1, summary.getSmileCount(0));
+    }
+
+    @Test
+    public void dropsOldestSegmentsAndTornRecords() throws IOException {
+        HistoryLog log = newLog(2);
+        FaceFrame face = TestFrames.of(new int[]{1}, 0.5f, 0.5f);
+        for (int i = 0; i < SEGMENT_RECORDS * 3; i++) {
+            log.append(face, i * FRAME_MS);
+        }
+        log.close();
+        File[] files = directory.listFiles();
+        assertEquals(2, files.length);
+
+        File newest = files[0].getName().compareTo(files[1].getName()) > 0 ? files[0] : files[1];
+        try (RandomAccessFile file = new RandomAccessFile(newest, "rw")) {
+            file.setLength(file.length() - HistoryLog.RECORD_BYTES / 2);
+        }
+        HistorySummary summary = newLog(2).summarize(0, Long.MAX_VALUE / 2, Long.MAX_VALUE / 2);
+        assertEquals(SEGMENT_RECORDS * 2 - 1, summary.getFaceSamples(0));
+    }
+}
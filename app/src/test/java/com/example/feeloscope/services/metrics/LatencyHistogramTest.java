@@ -0,0 +1,56 @@
+package com.example.feeloscope.services.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void reportsPercentilesAsBucketUpperBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(5 * MS);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(40 * MS);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(6.0, snapshot.getPercentileMillis(0.5), 1e-9);
+        assertEquals(45.0, snapshot.getPercentileMillis(0.95), 1e-9);
+        assertEquals(40.0, snapshot.getMaxMillis(), 1e-9);
+        assertEquals(8.5, snapshot.getMeanMillis(), 1e-9);
+    }
+
+    @Test
+    public void overflowUsesMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3000 * MS);
+        assertEquals(3000.0, histogram.snapshot().getPercentileMillis(0.99), 1e-9);
+    }
+
+    @Test
+    public void ignoresNegativeSamplesAndResets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1);
+        histogram.record(2 * MS);
+        assertEquals(1, histogram.snapshot().getCount());
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+        assertEquals(0.0, histogram.snapshot().getPercentileMillis(0.5), 1e-9);
+    }
+
+    @Test
+    public void writesJson() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(MS);
+        StringBuilder json = new StringBuilder();
+        histogram.snapshot().appendJson(json);
+        assertTrue(json.toString(), json.toString().startsWith("{\"count\":1,"));
+        assertTrue(json.toString(), json.toString().contains("\"buckets\":[1,0,"));
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.feeloscope.ui;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EmissionThrottleTest {
+
+    private static final long INTERVAL_MS = 66;
+
+    @Test
+    public void firstValueGoesOutRightAway() {
+        EmissionThrottle throttle = new EmissionThrottle(INTERVAL_MS);
+
+        assertEquals(EmissionThrottle.NOW, throttle.offer(1000));
+        assertFalse(throttle.isScheduled());
+    }
+
+    @Test
+    public void burstSharesOneTrailingEmission() {
+        EmissionThrottle throttle = new EmissionThrottle(INTERVAL_MS);
+        throttle.offer(1000);
+        throttle.onEmitted(1000);
+
+        assertEquals(56, throttle.offer(1010));
+        assertTrue(throttle.isScheduled());
+        assertEquals(EmissionThrottle.SCHEDULED, throttle.offer(1020));
+        assertEquals(EmissionThrottle.SCHEDULED, throttle.offer(1060));
+
+        throttle.onEmitted(1066);
+        assertFalse(throttle.isScheduled());
+        assertEquals(66, throttle.offer(1066));
+    }
+
+    @Test
+    public void valueAfterQuietPeriodIsNotDelayed() {
+        EmissionThrottle throttle = new EmissionThrottle(INTERVAL_MS);
+        throttle.offer(1000);
+        throttle.onEmitted(1000);
+
+        assertEquals(EmissionThrottle.NOW, throttle.offer(1066));
+        assertEquals(EmissionThrottle.NOW, throttle.offer(5000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveInterval() {
+        new EmissionThrottle(0);
+    }
+}
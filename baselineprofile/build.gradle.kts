@@ -0,0 +1,39 @@
+plugins {
+    alias(libs.plugins.android.test)
+    alias(libs.plugins.baselineprofile)
+}
+
+// Generates the app's baseline profile and measures its cold start on a device.
+// ./gradlew :app:generateBaselineProfile writes app/src/release/generated/baselineProfiles/,
+// ./gradlew :baselineprofile:connectedBenchmarkReleaseAndroidTest runs StartupBenchmarks.
+android {
+    namespace = "com.example.feeloscope.baselineprofile"
+    compileSdk = 36
+
+    defaultConfig {
+        // Profiles can only be captured from API 28 on.
+        minSdk = 28
+        targetSdk = 36
+
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+    }
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_11
+        targetCompatibility = JavaVersion.VERSION_11
+    }
+
+    targetProjectPath = ":app"
+}
+
+baselineProfile {
+    // Emulators have no real camera; the first-detection path needs one.
+    useConnectedDevices = true
+}
+
+dependencies {
+    implementation(libs.ext.junit)
+    implementation(libs.espresso.core)
+    implementation(libs.uiautomator)
+    implementation(libs.benchmark.macro.junit4)
+}
@@ -0,0 +1,45 @@
+package com.example.feeloscope.baselineprofile;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import kotlin.Unit;
+
+/**
+ * Records the classes and methods used from launch to the first detection, so they are compiled
+ * ahead of time on install instead of being interpreted on every cold start.
+ * <p>
+ * Run with {@code ./gradlew :app:generateBaselineProfile} on a device with a camera.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class BaselineProfileGenerator {
+
+    @Rule
+    public BaselineProfileRule baselineProfileRule = new BaselineProfileRule();
+
+    @Test
+    public void generate() {
+        baselineProfileRule.collect(
+                LiveCameraJourney.PACKAGE_NAME,
+                /* maxIterations */ 15,
+                /* stableIterations */ 3,
+                /* outputFilePrefix */ null,
+                /* includeInStartupProfile */ true,
+                /* strictStability */ false,
+                /* filterPredicate */ name -> true,
+                scope -> {
+                    LiveCameraJourney.grantCamera(scope);
+                    scope.pressHome();
+                    scope.startActivityAndWait();
+                    LiveCameraJourney.awaitPreview(scope);
+                    LiveCameraJourney.awaitFirstDetection(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.feeloscope.baselineprofile;
+
+import androidx.annotation.NonNull;
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+import java.io.IOException;
+
+/**
+ * The steps of a launch into the live camera, shared by profile generation and the benchmarks.
+ */
+final class LiveCameraJourney {
+    static final String PACKAGE_NAME = "com.example.feeloscope";
+    private static final long PREVIEW_TIMEOUT_MS = 10_000;
+    private static final long DETECTION_TIMEOUT_MS = 15_000;
+
+    private LiveCameraJourney() {
+    }
+
+    /**
+     * Grants the camera permission up front, so no dialog covers the preview.
+     */
+    static void grantCamera(@NonNull MacrobenchmarkScope scope) {
+        try {
+            scope.getDevice().executeShellCommand("pm grant " + PACKAGE_NAME + " android.permission.CAMERA");
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not grant the camera permission.", e);
+        }
+    }
+
+    /**
+     * Waits for the first preview frame; the app shows the lens switch and reports itself fully
+     * drawn at that point.
+     */
+    static void awaitPreview(@NonNull MacrobenchmarkScope scope) {
+        if (!scope.getDevice().wait(Until.hasObject(By.res(PACKAGE_NAME, "switch_camera_button")), PREVIEW_TIMEOUT_MS)) {
+            throw new IllegalStateException("The camera preview did not start.");
+        }
+    }
+
+    /**
+     * Switches analysis on and waits for the first detection summary.
+     */
+    static void awaitFirstDetection(@NonNull MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        UiObject2 toggle = device.findObject(By.res(PACKAGE_NAME, "ai_toggle_switch"));
+        if (toggle == null) {
+            throw new IllegalStateException("The analysis switch is missing.");
+        }
+        toggle.click();
+        // The summary only appears with a result; while the model loads, a separate status shows instead.
+        if (!device.wait(Until.hasObject(By.res(PACKAGE_NAME, "live_summary")), DETECTION_TIMEOUT_MS)) {
+            throw new IllegalStateException("No detection result arrived.");
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.feeloscope.baselineprofile;
+
+import androidx.annotation.NonNull;
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Cold start up to the first preview frame, with and without the baseline profile.
+ * <p>
+ * {@code timeToInitialDisplayMs} is the first frame of the activity, {@code timeToFullDisplayMs}
+ * the first camera frame. Run with
+ * {@code ./gradlew :baselineprofile:connectedBenchmarkReleaseAndroidTest}; results end up in
+ * {@code baselineprofile/build/outputs/connected_android_test_additional_output/}.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class StartupBenchmarks {
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void startupWithoutCompilation() {
+        measureColdStart(new CompilationMode.None());
+    }
+
+    @Test
+    public void startupWithBaselineProfile() {
+        measureColdStart(new CompilationMode.Partial(BaselineProfileMode.Require));
+    }
+
+    private void measureColdStart(@NonNull CompilationMode compilationMode) {
+        benchmarkRule.measureRepeated(
+                LiveCameraJourney.PACKAGE_NAME,
+                Collections.singletonList(new StartupTimingMetric()),
+                compilationMode,
+                StartupMode.COLD,
+                ITERATIONS,
+                scope -> {
+                    LiveCameraJourney.grantCamera(scope);
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    LiveCameraJourney.awaitPreview(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
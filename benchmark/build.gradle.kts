@@ -0,0 +1,41 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+// JVM-only benchmarks for the app's hot paths that do not touch Android or ML Kit.
+// Run with ./gradlew :benchmark:jmh; results end up in build/results/jmh/.
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("../app/src/main/java"))
+            include(
+                "com/example/feeloscope/services/FaceFrame.java",
+                "com/example/feeloscope/services/FaceStateClassifier.java",
+                "com/example/feeloscope/services/FaceTracker.java",
+                "com/example/feeloscope/services/RoiPlanner.java",
+                "com/example/feeloscope/services/frame/Nv21Packer.java",
+                "com/example/feeloscope/services/metrics/LatencyHistogram.java"
+            )
+        }
+    }
+}
+
+dependencies {
+    implementation(libs.annotation)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    // Reports bytes allocated per operation next to the timings.
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
@@ -0,0 +1,151 @@
+package com.example.feeloscope.services;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Detector results of a recorded session, loaded from a fixture under {@code fixtures/}.
+ * <p>
+ * Faces are kept as the plain values ML Kit hands to {@code FaceDetectionHelper}, and
+ * {@link #fill} replays them into a {@link FaceFrame} the same way the helper's post-processing
+ * does, so benchmarks measure our code without a device or the detector.
+ */
+final class FaceRecording {
+    // Bounds, tracking id, two head angles, three probabilities and the landmark pairs.
+    static final int FACE_VALUES = 10 + FaceFrame.LANDMARK_COUNT * 2;
+
+    private final int imageWidth;
+    private final int imageHeight;
+    private final int rotationDegrees;
+    private final long[] timestampsNanos;
+    private final boolean[] classified;
+    private final float[][] faces;
+
+    private FaceRecording(int imageWidth, int imageHeight, int rotationDegrees, @NonNull long[] timestampsNanos,
+                          @NonNull boolean[] classified, @NonNull float[][] faces) {
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.rotationDegrees = rotationDegrees;
+        this.timestampsNanos = timestampsNanos;
+        this.classified = classified;
+        this.faces = faces;
+    }
+
+    @NonNull
+    static FaceRecording load(@NonNull String fixture) throws IOException {
+        String resource = "/fixtures/" + fixture + ".csv";
+        InputStream in = FaceRecording.class.getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("Missing fixture " + resource);
+        }
+        int[] size = null;
+        List<Long> timestamps = new ArrayList<>();
+        List<Boolean> classifiedFrames = new ArrayList<>();
+        List<List<float[]>> frames = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                switch (fields[0]) {
+                    case "size":
+                        size = new int[]{Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                                Integer.parseInt(fields[3])};
+                        break;
+                    case "frame":
+                        timestamps.add(Long.parseLong(fields[1]) * 1_000_000L);
+                        classifiedFrames.add("1".equals(fields[2]));
+                        frames.add(new ArrayList<>());
+                        break;
+                    case "face":
+                        if (frames.isEmpty() || fields.length != FACE_VALUES + 1) {
+                            throw new IOException(resource + ":" + lineNumber + ": malformed face");
+                        }
+                        float[] face = new float[FACE_VALUES];
+                        for (int i = 0; i < FACE_VALUES; i++) {
+                            face[i] = Float.parseFloat(fields[i + 1]);
+                        }
+                        frames.get(frames.size() - 1).add(face);
+                        break;
+                    default:
+                        throw new IOException(resource + ":" + lineNumber + ": unknown record " + fields[0]);
+                }
+            }
+        }
+        if (size == null || frames.isEmpty()) {
+            throw new IOException(resource + " holds no frames");
+        }
+
+        int count = frames.size();
+        long[] timestampsNanos = new long[count];
+        boolean[] classified = new boolean[count];
+        float[][] faces = new float[count][];
+        for (int i = 0; i < count; i++) {
+            timestampsNanos[i] = timestamps.get(i);
+            classified[i] = classifiedFrames.get(i);
+            List<float[]> frameFaces = frames.get(i);
+            faces[i] = new float[frameFaces.size() * FACE_VALUES];
+            for (int f = 0; f < frameFaces.size(); f++) {
+                System.arraycopy(frameFaces.get(f), 0, faces[i], f * FACE_VALUES, FACE_VALUES);
+            }
+        }
+        return new FaceRecording(size[0], size[1], size[2], timestampsNanos, classified, faces);
+    }
+
+    int getFrameCount() {
+        return faces.length;
+    }
+
+    int getImageWidth() {
+        return imageWidth;
+    }
+
+    int getImageHeight() {
+        return imageHeight;
+    }
+
+    int getRotationDegrees() {
+        return rotationDegrees;
+    }
+
+    boolean isClassified(int index) {
+        return classified[index];
+    }
+
+    /**
+     * Fills {@code frame} with recorded frame {@code index % frameCount}. Each pass over the
+     * recording continues the timeline, so trackers see time move forward when it wraps around.
+     */
+    void fill(@NonNull FaceFrame frame, long index, float offsetX, float offsetY) {
+        int count = faces.length;
+        int recorded = (int) (index % count);
+        long pass = index / count;
+        // One frame interval between the end of a pass and the start of the next.
+        long passNanos = timestampsNanos[count - 1] + timestampsNanos[Math.min(1, count - 1)];
+        frame.reset(index, pass * passNanos + timestampsNanos[recorded], imageWidth, imageHeight, rotationDegrees);
+        float[] values = faces[recorded];
+        for (int offset = 0; offset < values.length; offset += FACE_VALUES) {
+            int face = frame.addFace(values[offset] + offsetX, values[offset + 1] + offsetY,
+                    values[offset + 2] + offsetX, values[offset + 3] + offsetY,
+                    (int) values[offset + 4], values[offset + 5], values[offset + 6],
+                    values[offset + 7], values[offset + 8], values[offset + 9]);
+            for (int landmark = 0; landmark < FaceFrame.LANDMARK_COUNT; landmark++) {
+                float x = values[offset + 10 + landmark * 2];
+                if (!Float.isNaN(x)) {
+                    frame.setLandmark(face, landmark, x + offsetX, values[offset + 11 + landmark * 2] + offsetY);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.feeloscope.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching and smoothing in {@link FaceTracker} over a recorded session, including the frames
+ * without classification that the tracker fills in. Compare against
+ * {@link PostProcessBenchmark#fill()} for the cost of the tracker alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FaceTrackerBenchmark {
+
+    @Param({"live_session", "crowd"})
+    public String fixture;
+
+    private FaceRecording recording;
+    private FaceTracker tracker;
+    private final FaceFrame frame = new FaceFrame();
+    private long frameIndex;
+
+    @Setup
+    public void setUp() throws IOException {
+        recording = FaceRecording.load(fixture);
+        tracker = new FaceTracker();
+        frameIndex = 0;
+    }
+
+    @Benchmark
+    public int update() {
+        long index = frameIndex++;
+        recording.fill(frame, index, 0f, 0f);
+        tracker.update(frame, recording.isClassified((int) (index % recording.getFrameCount())));
+        return tracker.getActiveTrackCount();
+    }
+}
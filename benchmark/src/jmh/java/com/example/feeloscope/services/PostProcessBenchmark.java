@@ -0,0 +1,75 @@
+package com.example.feeloscope.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What {@code FaceDetectionHelper} does with every detector result: filling the reused
+ * {@link FaceFrame}, deciding the faces' states with the {@link FaceStateClassifier}, copying the
+ * frame and counting its states as {@code DetectionResult} does. Only the copy is expected to allocate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PostProcessBenchmark {
+    @Param({"live_session", "crowd"})
+    public String fixture;
+
+    private FaceRecording recording;
+    private final FaceFrame frame = new FaceFrame();
+    private final FaceStateClassifier stateClassifier = new FaceStateClassifier();
+    private long frameIndex;
+
+    @Setup
+    public void load() throws IOException {
+        recording = FaceRecording.load(fixture);
+    }
+
+    @Benchmark
+    public int fill() {
+        recording.fill(frame, frameIndex++, 0f, 0f);
+        return frame.getFaceCount();
+    }
+
+    @Benchmark
+    public int fillCropped() {
+        // Crops shift every coordinate back into the full frame.
+        recording.fill(frame, frameIndex++, 64f, 32f);
+        return frame.getFaceCount();
+    }
+
+    @Benchmark
+    public int fillAndClassify() {
+        recording.fill(frame, frameIndex++, 0f, 0f);
+        // The recordings carry the tracker's ids, so states are kept per track as in the live path.
+        stateClassifier.classify(frame, true);
+        int states = 0;
+        for (int i = 0; i < frame.getFaceCount(); i++) {
+            states = states * 31 + frame.getSmilingState(i) * 3 + frame.getEyesOpenState(i);
+        }
+        return states;
+    }
+
+    @Benchmark
+    public int fillClassifyAndPublish() {
+        recording.fill(frame, frameIndex++, 0f, 0f);
+        stateClassifier.classify(frame, true);
+        FaceFrame published = frame.copy();
+        return published.countSmilingFaces() * 31 + published.countEyesOpenFaces();
+    }
+
+    @Benchmark
+    public FaceFrame fillAndCopy() {
+        recording.fill(frame, frameIndex++, 0f, 0f);
+        return frame.copy();
+    }
+}
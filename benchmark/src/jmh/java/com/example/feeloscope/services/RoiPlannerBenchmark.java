@@ -0,0 +1,47 @@
+package com.example.feeloscope.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame bookkeeping of the {@link RoiPlanner}: taking in a result and planning the next crop.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RoiPlannerBenchmark {
+
+    @Param({"live_session", "crowd"})
+    public String fixture;
+
+    private FaceRecording recording;
+    private RoiPlanner planner;
+    private final FaceFrame frame = new FaceFrame();
+    private final int[] cropRect = new int[4];
+    private boolean cropped;
+    private long frameIndex;
+
+    @Setup
+    public void setUp() throws IOException {
+        recording = FaceRecording.load(fixture);
+        planner = new RoiPlanner();
+    }
+
+    @Benchmark
+    public boolean onFrameAndPlan() {
+        recording.fill(frame, frameIndex++, 0f, 0f);
+        planner.onFrame(frame, cropped);
+        cropped = planner.planCrop(recording.getImageWidth(), recording.getImageHeight(),
+                recording.getRotationDegrees(), cropRect);
+        return cropped;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.feeloscope.services.frame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * YUV_420_888 to NV21 packing for full frames and for the crops the ROI planner asks for, with
+ * the two chroma layouts cameras deliver. The planes are direct buffers with padded rows like
+ * the ones CameraX hands out; packing itself must not allocate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class Nv21PackerBenchmark {
+    // Cameras commonly align rows to 64 bytes.
+    private static final int ROW_ALIGNMENT = 64;
+
+    public enum ChromaLayout {
+        /** Separate U and V planes, one byte per sample. */
+        PLANAR,
+        /** U and V interleaved in the same memory in NV21 order, as most devices deliver them. */
+        INTERLEAVED
+    }
+
+    @Param({"640x480", "1280x720"})
+    public String size;
+
+    @Param({"PLANAR", "INTERLEAVED"})
+    public ChromaLayout layout;
+
+    private int width;
+    private int height;
+    private ByteBuffer yPlane;
+    private ByteBuffer uPlane;
+    private ByteBuffer vPlane;
+    private int yRowStride;
+    private int uvRowStride;
+    private int uvPixelStride;
+    private byte[] out;
+
+    @Setup
+    public void setUp() {
+        String[] dimensions = size.split("x");
+        width = Integer.parseInt(dimensions[0]);
+        height = Integer.parseInt(dimensions[1]);
+        Random random = new Random(12);
+
+        yRowStride = align(width);
+        yPlane = filled(yRowStride * height, random);
+        if (layout == ChromaLayout.INTERLEAVED) {
+            uvRowStride = align(width);
+            uvPixelStride = 2;
+            ByteBuffer chroma = filled(uvRowStride * height / 2, random);
+            chroma.limit(chroma.capacity() - 1);
+            vPlane = chroma.slice();
+            chroma.limit(chroma.capacity()).position(1);
+            uPlane = chroma.slice();
+        } else {
+            uvRowStride = align(width / 2);
+            uvPixelStride = 1;
+            uPlane = filled(uvRowStride * height / 2, random);
+            vPlane = filled(uvRowStride * height / 2, random);
+        }
+        out = new byte[Nv21Packer.packedSize(width, height)];
+    }
+
+    private static int align(int bytes) {
+        return (bytes + ROW_ALIGNMENT - 1) / ROW_ALIGNMENT * ROW_ALIGNMENT;
+    }
+
+    private static ByteBuffer filled(int capacity, Random random) {
+        byte[] bytes = new byte[capacity];
+        random.nextBytes(bytes);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(capacity);
+        buffer.put(bytes).clear();
+        return buffer;
+    }
+
+    @Benchmark
+    public byte[] fullFrame() {
+        Nv21Packer.pack(yPlane, yRowStride, 1, uPlane, vPlane, uvRowStride, uvPixelStride,
+                0, 0, width, height, out);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] centerCrop() {
+        // A quarter of the frame, about what the ROI planner crops to around a single face.
+        int cropWidth = width / 2 & ~1;
+        int cropHeight = height / 2 & ~1;
+        int left = (width - cropWidth) / 2 & ~1;
+        int top = (height - cropHeight) / 2 & ~1;
+        Nv21Packer.pack(yPlane, yRowStride, 1, uPlane, vPlane, uvRowStride, uvPixelStride,
+                left, top, cropWidth, cropHeight, out);
+        return out;
+    }
+}
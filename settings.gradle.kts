@@ -21,4 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "FeelOScope"
 include(":app")
+include(":benchmark")
+include(":baselineprofile")
  
\ No newline at end of file